@@ -0,0 +1,221 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TMemoryBuffer;
+import veil.hdp.hive.jdbc.bindings.*;
+import veil.hdp.hive.jdbc.data.ColumnBasedSet;
+import veil.hdp.hive.jdbc.metadata.Schema;
+import veil.hdp.hive.jdbc.thrift.ThriftClient;
+
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates the synthetic payloads used by the benchmarks.  Everything is seeded so runs are comparable.
+ */
+final class BenchmarkData {
+
+    static final TTypeId[] TYPES = {TTypeId.BOOLEAN_TYPE, TTypeId.TINYINT_TYPE, TTypeId.SMALLINT_TYPE, TTypeId.INT_TYPE, TTypeId.BIGINT_TYPE, TTypeId.DOUBLE_TYPE, TTypeId.STRING_TYPE, TTypeId.BINARY_TYPE};
+
+    private BenchmarkData() {
+    }
+
+    static TTableSchema tableSchema(TTypeId... types) {
+        TTableSchema tableSchema = new TTableSchema(new ArrayList<>(types.length));
+
+        for (int i = 0; i < types.length; i++) {
+            TTypeDesc typeDesc = new TTypeDesc(new ArrayList<>(1));
+            typeDesc.addToTypes(TTypeEntry.primitiveEntry(new TPrimitiveTypeEntry(types[i])));
+
+            tableSchema.addToColumns(new TColumnDesc("col_" + i, typeDesc, i + 1));
+        }
+
+        return tableSchema;
+    }
+
+    /**
+     * @param nullEvery every n-th row is null; 0 for no nulls
+     */
+    static TRowSet rowSet(int rows, int nullEvery, TTypeId... types) {
+
+        Random random = new Random(rows);
+
+        TRowSet rowSet = new TRowSet(0, new ArrayList<>(0));
+
+        for (TTypeId type : types) {
+            rowSet.addToColumns(column(type, rows, nullEvery, random));
+        }
+
+        return rowSet;
+    }
+
+    private static TColumn column(TTypeId type, int rows, int nullEvery, Random random) {
+
+        ByteBuffer nulls = nulls(rows, nullEvery);
+
+        switch (type) {
+            case BOOLEAN_TYPE: {
+                List<Boolean> values = new ArrayList<>(rows);
+                for (int i = 0; i < rows; i++) {
+                    values.add(random.nextBoolean());
+                }
+                return TColumn.boolVal(new TBoolColumn(values, nulls));
+            }
+            case TINYINT_TYPE: {
+                List<Byte> values = new ArrayList<>(rows);
+                for (int i = 0; i < rows; i++) {
+                    values.add((byte) random.nextInt());
+                }
+                return TColumn.byteVal(new TByteColumn(values, nulls));
+            }
+            case SMALLINT_TYPE: {
+                List<Short> values = new ArrayList<>(rows);
+                for (int i = 0; i < rows; i++) {
+                    values.add((short) random.nextInt());
+                }
+                return TColumn.i16Val(new TI16Column(values, nulls));
+            }
+            case INT_TYPE: {
+                List<Integer> values = new ArrayList<>(rows);
+                for (int i = 0; i < rows; i++) {
+                    values.add(random.nextInt());
+                }
+                return TColumn.i32Val(new TI32Column(values, nulls));
+            }
+            case BIGINT_TYPE: {
+                List<Long> values = new ArrayList<>(rows);
+                for (int i = 0; i < rows; i++) {
+                    values.add(random.nextLong());
+                }
+                return TColumn.i64Val(new TI64Column(values, nulls));
+            }
+            case DOUBLE_TYPE: {
+                List<Double> values = new ArrayList<>(rows);
+                for (int i = 0; i < rows; i++) {
+                    values.add(random.nextDouble());
+                }
+                return TColumn.doubleVal(new TDoubleColumn(values, nulls));
+            }
+            case STRING_TYPE: {
+                List<String> values = new ArrayList<>(rows);
+                for (int i = 0; i < rows; i++) {
+                    values.add("value-" + random.nextInt(1000000));
+                }
+                return TColumn.stringVal(new TStringColumn(values, nulls));
+            }
+            case BINARY_TYPE: {
+                List<ByteBuffer> values = new ArrayList<>(rows);
+                for (int i = 0; i < rows; i++) {
+                    byte[] bytes = new byte[16];
+                    random.nextBytes(bytes);
+                    values.add(ByteBuffer.wrap(bytes));
+                }
+                return TColumn.binaryVal(new TBinaryColumn(values, nulls));
+            }
+            default:
+                throw new IllegalArgumentException("unsupported type " + type);
+        }
+    }
+
+    private static ByteBuffer nulls(int rows, int nullEvery) {
+        if (nullEvery <= 0) {
+            return ByteBuffer.wrap(new byte[0]);
+        }
+
+        byte[] bytes = new byte[(rows + 7) / 8];
+
+        for (int row = 0; row < rows; row += nullEvery) {
+            bytes[row / 8] |= 1 << (row % 8);
+        }
+
+        return ByteBuffer.wrap(bytes);
+    }
+
+    static Schema schema(TTypeId... types) {
+        return Schema.builder().client(pagingClient(tableSchema(types), null, 0)).handle(operationHandle()).build();
+    }
+
+    static TOperationHandle operationHandle() {
+        return new TOperationHandle(new THandleIdentifier(ByteBuffer.allocate(16), ByteBuffer.allocate(16)), TOperationType.EXECUTE_STATEMENT, true);
+    }
+
+    /**
+     * @return a serialized FetchResults reply carrying the row set, as HS2 would write it for the first call on a client
+     */
+    static byte[] fetchResultsReply(TRowSet rowSet) throws TException {
+
+        TFetchResultsResp resp = new TFetchResultsResp(new TStatus(TStatusCode.SUCCESS_STATUS));
+        resp.setHasMoreRows(false);
+        resp.setResults(rowSet);
+
+        TCLIService.FetchResults_result result = new TCLIService.FetchResults_result();
+        result.setSuccess(resp);
+
+        TMemoryBuffer buffer = new TMemoryBuffer(1024);
+        TProtocol protocol = new TBinaryProtocol(buffer);
+
+        protocol.writeMessageBegin(new TMessage("FetchResults", TMessageType.REPLY, 1));
+        result.write(protocol);
+        protocol.writeMessageEnd();
+
+        return Arrays.copyOf(buffer.getArray(), buffer.length());
+    }
+
+    /**
+     * A client that answers the calls a ResultSet makes: result set metadata, {@code pages} fetches of the given row
+     * set followed by an empty fetch, and close.  The page is decoded once and handed out again on every fetch so only
+     * the ResultSet side is measured.
+     */
+    static ThriftClient pagingClient(TTableSchema tableSchema, TRowSet rowSet, int pages) {
+
+        int[] fetched = {0};
+        ColumnBasedSet[] page = {null};
+
+        return (ThriftClient) Proxy.newProxyInstance(BenchmarkData.class.getClassLoader(), new Class<?>[]{ThriftClient.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "GetResultSetMetadata": {
+                    TGetResultSetMetadataResp resp = new TGetResultSetMetadataResp(new TStatus(TStatusCode.SUCCESS_STATUS));
+                    resp.setSchema(tableSchema);
+                    return resp;
+                }
+                case "fetchColumnBasedSet": {
+                    if (fetched[0]++ < pages) {
+                        if (page[0] == null) {
+                            page[0] = ColumnBasedSet.builder().rowSet(rowSet).schema((Schema) args[1]).build();
+                        }
+                        return page[0];
+                    }
+                    return null;
+                }
+                case "CloseOperation":
+                    return new TCloseOperationResp(new TStatus(TStatusCode.SUCCESS_STATUS));
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+}
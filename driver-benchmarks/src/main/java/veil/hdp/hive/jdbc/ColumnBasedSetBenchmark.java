@@ -0,0 +1,62 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc;
+
+import org.openjdk.jmh.annotations.*;
+import veil.hdp.hive.jdbc.bindings.TRowSet;
+import veil.hdp.hive.jdbc.bindings.TTypeId;
+import veil.hdp.hive.jdbc.data.ColumnBasedSet;
+import veil.hdp.hive.jdbc.metadata.Schema;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds a ColumnBasedSet from an already deserialized TRowSet holding a single column of each type.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ColumnBasedSetBenchmark {
+
+    @Param({"BOOLEAN_TYPE", "TINYINT_TYPE", "SMALLINT_TYPE", "INT_TYPE", "BIGINT_TYPE", "DOUBLE_TYPE", "STRING_TYPE", "BINARY_TYPE"})
+    public TTypeId type;
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    // every n-th row is null; 0 for no nulls
+    @Param({"0", "10"})
+    public int nullEvery;
+
+    private TRowSet rowSet;
+    private Schema schema;
+
+    @Setup
+    public void setUp() {
+        rowSet = BenchmarkData.rowSet(rows, nullEvery, type);
+
+        schema = BenchmarkData.schema(type);
+    }
+
+    @Benchmark
+    public ColumnBasedSet build() {
+        return ColumnBasedSet.builder().rowSet(rowSet).schema(schema).build();
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.apache.thrift.transport.TMemoryInputTransport;
+import org.openjdk.jmh.annotations.*;
+import veil.hdp.hive.jdbc.bindings.*;
+import veil.hdp.hive.jdbc.data.ColumnBasedSet;
+import veil.hdp.hive.jdbc.metadata.Schema;
+import veil.hdp.hive.jdbc.thrift.StreamingThriftClient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes a serialized FetchResults reply holding one column of every type.  {@code generated} is the stock Thrift
+ * client followed by ColumnBasedSet construction; {@code streaming} is the driver's client that decodes straight into
+ * column buffers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FetchResultsDecodeBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private byte[] reply;
+    private Schema schema;
+    private TFetchResultsReq request;
+
+    private final TMemoryInputTransport in = new TMemoryInputTransport();
+
+    @Setup
+    public void setUp() throws TException {
+        reply = BenchmarkData.fetchResultsReply(BenchmarkData.rowSet(rows, 10, BenchmarkData.TYPES));
+
+        schema = BenchmarkData.schema(BenchmarkData.TYPES);
+
+        request = new TFetchResultsReq(BenchmarkData.operationHandle(), TFetchOrientation.FETCH_NEXT, rows);
+    }
+
+    @Benchmark
+    public ColumnBasedSet generated() throws TException {
+        in.reset(reply);
+
+        // new client per call so the reply's sequence id always matches
+        TCLIService.Client client = new TCLIService.Client(new TBinaryProtocol(in), new TBinaryProtocol(new TMemoryBuffer(256)));
+
+        TFetchResultsResp resp = client.FetchResults(request);
+
+        return ColumnBasedSet.builder().rowSet(resp.getResults()).schema(schema).build();
+    }
+
+    @Benchmark
+    public ColumnBasedSet streaming() throws TException {
+        in.reset(reply);
+
+        StreamingThriftClient client = new StreamingThriftClient(new TBinaryProtocol(in), new TBinaryProtocol(new TMemoryBuffer(256)));
+
+        return client.fetchColumnBasedSet(request, schema);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Substitutes parameters into a prepared statement's sql, including placeholders inside quoted literals that must be
+ * left alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PreparedStatementBenchmark {
+
+    @Param({"1", "10", "100"})
+    public int parameters;
+
+    private String sql;
+    private Map<Integer, String> parameterValues;
+
+    @Setup
+    public void setUp() {
+        StringBuilder builder = new StringBuilder("select * from fact_table where note <> 'why?' ");
+
+        parameterValues = new HashMap<>(parameters);
+
+        for (int i = 1; i <= parameters; i++) {
+            builder.append(" and col_").append(i).append(" = ?");
+            parameterValues.put(i, i % 2 == 0 ? Integer.toString(i) : "'value " + i + '\'');
+        }
+
+        sql = builder.toString();
+    }
+
+    @Benchmark
+    public String updateSql() {
+        return HivePreparedStatement.updateSql(sql, parameterValues);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import veil.hdp.hive.jdbc.bindings.TRowSet;
+import veil.hdp.hive.jdbc.bindings.TTableSchema;
+import veil.hdp.hive.jdbc.bindings.TTypeId;
+import veil.hdp.hive.jdbc.thrift.ThriftOperation;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads every row of a result set with the typed getters.  Pages come from an in-memory client so the measurement
+ * covers HiveResultSet.next() and the getters, not the network or decoding.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultSetBenchmark {
+
+    private static final TTypeId[] TYPES = {TTypeId.BOOLEAN_TYPE, TTypeId.INT_TYPE, TTypeId.BIGINT_TYPE, TTypeId.DOUBLE_TYPE, TTypeId.STRING_TYPE};
+
+    @Param({"1000", "10000"})
+    public int fetchSize;
+
+    @Param({"100000"})
+    public int rows;
+
+    private TTableSchema tableSchema;
+    private TRowSet rowSet;
+
+    @Setup
+    public void setUp() {
+        tableSchema = BenchmarkData.tableSchema(TYPES);
+        rowSet = BenchmarkData.rowSet(fetchSize, 10, TYPES);
+    }
+
+    @Benchmark
+    public void typedGetters(Blackhole blackhole) throws SQLException {
+
+        try (HiveResultSet resultSet = resultSet()) {
+            while (resultSet.next()) {
+                blackhole.consume(resultSet.getBoolean(1));
+                blackhole.consume(resultSet.getInt(2));
+                blackhole.consume(resultSet.getLong(3));
+                blackhole.consume(resultSet.getDouble(4));
+                blackhole.consume(resultSet.getString(5));
+                blackhole.consume(resultSet.wasNull());
+            }
+        }
+    }
+
+    @Benchmark
+    public void objectGetters(Blackhole blackhole) throws SQLException {
+
+        try (HiveResultSet resultSet = resultSet()) {
+            while (resultSet.next()) {
+                for (int i = 1; i <= TYPES.length; i++) {
+                    blackhole.consume(resultSet.getObject(i));
+                }
+            }
+        }
+    }
+
+    private HiveResultSet resultSet() {
+
+        ThriftOperation operation = ThriftOperation.builder()
+                .client(BenchmarkData.pagingClient(tableSchema, rowSet, rows / fetchSize))
+                .handle(BenchmarkData.operationHandle())
+                .build();
+
+        return HiveResultSet.builder().thriftOperation(operation).fetchSize(fetchSize).build();
+    }
+}
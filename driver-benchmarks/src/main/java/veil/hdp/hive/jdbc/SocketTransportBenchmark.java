@@ -0,0 +1,98 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import veil.hdp.hive.jdbc.bindings.TTypeId;
+import veil.hdp.hive.jdbc.test.server.MockCliService;
+import veil.hdp.hive.jdbc.test.server.MockHiveServer;
+import veil.hdp.hive.jdbc.test.server.MockHiveServer.MockTransport;
+import veil.hdp.hive.jdbc.test.server.ResultShape;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reads a large result over a real socket from the in process mock HS2, varying the transport buffer and socket
+ * receive buffer.  Large fetch sizes make each FetchResults response several megabytes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SocketTransportBenchmark {
+
+    private static final ResultShape SHAPE = ResultShape.builder()
+            .types(TTypeId.INT_TYPE, TTypeId.BIGINT_TYPE, TTypeId.DOUBLE_TYPE, TTypeId.STRING_TYPE)
+            .rows(200000)
+            .build();
+
+    @Param({"BINARY", "BINARY_NOSASL"})
+    public MockTransport transport;
+
+    @Param({"8192", "65536"})
+    public int transportBufferSize;
+
+    @Param({"0", "1048576"})
+    public int receiveBufferSize;
+
+    @Param({"20000"})
+    public int fetchSize;
+
+    private MockHiveServer server;
+    private Connection connection;
+
+    @Setup
+    public void setUp() throws SQLException {
+        server = MockHiveServer.builder().transport(transport).service(MockCliService.builder().shape(SHAPE).build()).build();
+
+        Properties properties = new Properties();
+        properties.setProperty(HiveDriverProperty.FETCH_SIZE.getKey(), Integer.toString(fetchSize));
+        properties.setProperty(HiveDriverProperty.THRIFT_TRANSPORT_BUFFER_SIZE.getKey(), Integer.toString(transportBufferSize));
+        properties.setProperty(HiveDriverProperty.THRIFT_SOCKET_RECEIVE_BUFFER_SIZE.getKey(), Integer.toString(receiveBufferSize));
+
+        connection = new HiveDriver().connect(server.getUrl(), properties);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        connection.close();
+        server.close();
+    }
+
+    @Benchmark
+    public void readAll(Blackhole blackhole) throws SQLException {
+
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("select * from mock")) {
+
+            while (resultSet.next()) {
+                blackhole.consume(resultSet.getInt(1));
+                blackhole.consume(resultSet.getLong(2));
+                blackhole.consume(resultSet.getDouble(3));
+                blackhole.consume(resultSet.getString(4));
+            }
+        }
+    }
+}
@@ -0,0 +1,670 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package veil.hdp.hive.jdbc.test.server;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.thrift.TApplicationException;
+import org.apache.thrift.TException;
+import veil.hdp.hive.jdbc.bindings.*;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In memory implementation of the HS2 {@link TCLIService.Iface}.  Every query returns a synthesized result set (see
+ * {@link ResultShape}); statements that don't produce rows in Hive (USE, CREATE, INSERT, ...) return no result set.
+ * Latency and failures can be injected so fetch throughput, status polling and session setup can be exercised without
+ * a cluster.  Every call is counted; see {@link #getCallCount(String)}.
+ */
+public class MockCliService implements TCLIService.Iface {
+
+    private static final Logger log = LogManager.getLogger(MockCliService.class);
+
+    private static final int FETCH_TYPE_LOG = 1;
+
+    private static final Set<String> NO_RESULT_SET = new HashSet<>(Arrays.asList("use", "create", "drop", "alter", "insert", "load", "truncate", "grant", "revoke", "msck", "analyze"));
+
+    private static final Pattern CREATE_TEMPORARY = Pattern.compile("^\\s*create\\s+temporary\\s+(?:external\\s+)?(?:table|function|macro)\\s+(\\S+)", Pattern.CASE_INSENSITIVE);
+
+    private static final ResultShape EMPTY = ResultShape.builder().types(TTypeId.STRING_TYPE).rows(0).build();
+
+    private final ResultShape shape;
+    private final Map<String, ResultShape> queries;
+    private final long sessionLatency;
+    private final long executeLatency;
+    private final int runningPolls;
+    private final long statusLatency;
+    private final long pageLatency;
+    private final int maxFetchSize;
+    private final double sessionFailureRate;
+    private final double executeFailureRate;
+    private final double fetchFailureRate;
+    private final TProtocolVersion protocolVersion;
+    private final boolean strictProtocol;
+    private final Random random;
+
+    private final Set<ByteBuffer> sessions = ConcurrentHashMap.newKeySet();
+    private final Map<ByteBuffer, Set<String>> temporaries = new ConcurrentHashMap<>();
+    private final Map<ByteBuffer, MockOperation> operations = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> calls = new ConcurrentHashMap<>();
+
+    private MockCliService(ResultShape shape, Map<String, ResultShape> queries, long sessionLatency, long executeLatency, int runningPolls, long statusLatency, long pageLatency, int maxFetchSize, double sessionFailureRate, double executeFailureRate, double fetchFailureRate, TProtocolVersion protocolVersion, boolean strictProtocol, long seed) {
+        this.shape = shape;
+        this.queries = queries;
+        this.sessionLatency = sessionLatency;
+        this.executeLatency = executeLatency;
+        this.runningPolls = runningPolls;
+        this.statusLatency = statusLatency;
+        this.pageLatency = pageLatency;
+        this.maxFetchSize = maxFetchSize;
+        this.sessionFailureRate = sessionFailureRate;
+        this.executeFailureRate = executeFailureRate;
+        this.fetchFailureRate = fetchFailureRate;
+        this.protocolVersion = protocolVersion;
+        this.strictProtocol = strictProtocol;
+        this.random = new Random(seed);
+    }
+
+    public static MockCliServiceBuilder builder() {
+        return new MockCliServiceBuilder();
+    }
+
+    private static TStatus success() {
+        return new TStatus(TStatusCode.SUCCESS_STATUS);
+    }
+
+    private static TStatus error(String message) {
+        TStatus status = new TStatus(TStatusCode.ERROR_STATUS);
+        status.setErrorMessage(message);
+        status.setSqlState("HY000");
+        return status;
+    }
+
+    private static THandleIdentifier newHandle() {
+        UUID guid = UUID.randomUUID();
+        UUID secret = UUID.randomUUID();
+
+        ByteBuffer guidBuffer = ByteBuffer.allocate(16).putLong(guid.getMostSignificantBits()).putLong(guid.getLeastSignificantBits());
+        ByteBuffer secretBuffer = ByteBuffer.allocate(16).putLong(secret.getMostSignificantBits()).putLong(secret.getLeastSignificantBits());
+
+        guidBuffer.flip();
+        secretBuffer.flip();
+
+        return new THandleIdentifier(guidBuffer, secretBuffer);
+    }
+
+    // handles arrive as slices of the request buffer; copy so the key doesn't depend on it
+    private static ByteBuffer key(THandleIdentifier identifier) {
+        return ByteBuffer.wrap(identifier.getGuid());
+    }
+
+    private static void sleep(long millis) {
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static boolean hasResultSet(String sql) {
+        String trimmed = sql.trim();
+
+        int end = 0;
+
+        while (end < trimmed.length() && Character.isLetter(trimmed.charAt(end))) {
+            end++;
+        }
+
+        return !NO_RESULT_SET.contains(trimmed.substring(0, end).toLowerCase(Locale.ROOT));
+    }
+
+    public long getCallCount(String method) {
+        AtomicLong count = calls.get(method);
+
+        return count != null ? count.get() : 0;
+    }
+
+    public void resetCallCounts() {
+        calls.clear();
+    }
+
+    public int getOpenSessionCount() {
+        return sessions.size();
+    }
+
+    public int getOpenOperationCount() {
+        return operations.size();
+    }
+
+    /**
+     * @return names of the temporary tables, functions and macros created in sessions that are still open; like HS2
+     * they are dropped with their session
+     */
+    public Set<String> getTemporaryObjects() {
+        Set<String> names = new HashSet<>();
+        temporaries.values().forEach(names::addAll);
+        return names;
+    }
+
+    private void count(String method) {
+        calls.computeIfAbsent(method, k -> new AtomicLong()).incrementAndGet();
+    }
+
+    private boolean inject(double rate) {
+        return rate > 0 && random.nextDouble() < rate;
+    }
+
+    private boolean isValid(TSessionHandle sessionHandle) {
+        return sessionHandle != null && sessions.contains(key(sessionHandle.getSessionId()));
+    }
+
+    private MockOperation operation(TOperationHandle operationHandle) {
+        return operationHandle != null ? operations.get(key(operationHandle.getOperationId())) : null;
+    }
+
+    private TOperationHandle addOperation(TSessionHandle sessionHandle, TOperationType type, ResultShape resultShape, boolean finished) {
+
+        TOperationHandle operationHandle = new TOperationHandle(newHandle(), type, resultShape != null);
+
+        MockOperation operation = new MockOperation(key(sessionHandle.getSessionId()), resultShape, finished);
+
+        operations.put(key(operationHandle.getOperationId()), operation);
+
+        return operationHandle;
+    }
+
+    private TOperationHandle metadataOperation(TSessionHandle sessionHandle, TOperationType type) {
+        return addOperation(sessionHandle, type, EMPTY, true);
+    }
+
+    @Override
+    public TOpenSessionResp OpenSession(TOpenSessionReq req) throws TException {
+        count("OpenSession");
+
+        if (strictProtocol && req.getClient_protocol().getValue() > protocolVersion.getValue()) {
+            // what a server older than the client reports; it can't read the newer enum value
+            throw new TApplicationException(TApplicationException.PROTOCOL_ERROR, "Required field 'client_protocol' is unset! Struct:" + req);
+        }
+
+        sleep(sessionLatency);
+
+        if (inject(sessionFailureRate)) {
+            return new TOpenSessionResp(error("injected failure opening session"), protocolVersion);
+        }
+
+        TSessionHandle sessionHandle = new TSessionHandle(newHandle());
+
+        sessions.add(key(sessionHandle.getSessionId()));
+
+        TProtocolVersion serverProtocolVersion = req.getClient_protocol().getValue() < protocolVersion.getValue() ? req.getClient_protocol() : protocolVersion;
+
+        TOpenSessionResp resp = new TOpenSessionResp(success(), serverProtocolVersion);
+        resp.setSessionHandle(sessionHandle);
+        resp.setConfiguration(new HashMap<>(0));
+
+        log.debug("opened session with protocol {}", serverProtocolVersion);
+
+        return resp;
+    }
+
+    @Override
+    public TCloseSessionResp CloseSession(TCloseSessionReq req) {
+        count("CloseSession");
+
+        ByteBuffer sessionKey = key(req.getSessionHandle().getSessionId());
+
+        if (!sessions.remove(sessionKey)) {
+            return new TCloseSessionResp(error("invalid session handle"));
+        }
+
+        operations.values().removeIf(operation -> operation.session.equals(sessionKey));
+        temporaries.remove(sessionKey);
+
+        return new TCloseSessionResp(success());
+    }
+
+    @Override
+    public TGetInfoResp GetInfo(TGetInfoReq req) {
+        count("GetInfo");
+
+        String value;
+
+        switch (req.getInfoType()) {
+            case CLI_DBMS_NAME:
+                value = "Apache Hive";
+                break;
+            case CLI_DBMS_VER:
+                value = "mock";
+                break;
+            case CLI_SERVER_NAME:
+                value = "Hive";
+                break;
+            default:
+                value = "";
+        }
+
+        return new TGetInfoResp(success(), TGetInfoValue.stringValue(value));
+    }
+
+    @Override
+    public TExecuteStatementResp ExecuteStatement(TExecuteStatementReq req) {
+        count("ExecuteStatement");
+
+        if (!isValid(req.getSessionHandle())) {
+            return new TExecuteStatementResp(error("invalid session handle"));
+        }
+
+        if (inject(executeFailureRate)) {
+            return new TExecuteStatementResp(error("injected failure executing [" + req.getStatement() + ']'));
+        }
+
+        String sql = req.getStatement();
+
+        Matcher temporary = CREATE_TEMPORARY.matcher(sql);
+
+        if (temporary.find()) {
+            temporaries.computeIfAbsent(key(req.getSessionHandle().getSessionId()), k -> ConcurrentHashMap.newKeySet()).add(temporary.group(1));
+        }
+
+        ResultShape resultShape = null;
+
+        if (hasResultSet(sql)) {
+            resultShape = queries.getOrDefault(sql.trim().toLowerCase(Locale.ROOT), shape);
+        }
+
+        if (!req.isRunAsync()) {
+            sleep(executeLatency);
+        }
+
+        TExecuteStatementResp resp = new TExecuteStatementResp(success());
+        resp.setOperationHandle(addOperation(req.getSessionHandle(), TOperationType.EXECUTE_STATEMENT, resultShape, !req.isRunAsync()));
+
+        return resp;
+    }
+
+    @Override
+    public TGetTypeInfoResp GetTypeInfo(TGetTypeInfoReq req) {
+        count("GetTypeInfo");
+
+        TGetTypeInfoResp resp = new TGetTypeInfoResp(success());
+        resp.setOperationHandle(metadataOperation(req.getSessionHandle(), TOperationType.GET_TYPE_INFO));
+        return resp;
+    }
+
+    @Override
+    public TGetCatalogsResp GetCatalogs(TGetCatalogsReq req) {
+        count("GetCatalogs");
+
+        TGetCatalogsResp resp = new TGetCatalogsResp(success());
+        resp.setOperationHandle(metadataOperation(req.getSessionHandle(), TOperationType.GET_CATALOGS));
+        return resp;
+    }
+
+    @Override
+    public TGetSchemasResp GetSchemas(TGetSchemasReq req) {
+        count("GetSchemas");
+
+        TGetSchemasResp resp = new TGetSchemasResp(success());
+        resp.setOperationHandle(metadataOperation(req.getSessionHandle(), TOperationType.GET_SCHEMAS));
+        return resp;
+    }
+
+    @Override
+    public TGetTablesResp GetTables(TGetTablesReq req) {
+        count("GetTables");
+
+        TGetTablesResp resp = new TGetTablesResp(success());
+        resp.setOperationHandle(metadataOperation(req.getSessionHandle(), TOperationType.GET_TABLES));
+        return resp;
+    }
+
+    @Override
+    public TGetTableTypesResp GetTableTypes(TGetTableTypesReq req) {
+        count("GetTableTypes");
+
+        TGetTableTypesResp resp = new TGetTableTypesResp(success());
+        resp.setOperationHandle(metadataOperation(req.getSessionHandle(), TOperationType.GET_TABLE_TYPES));
+        return resp;
+    }
+
+    @Override
+    public TGetColumnsResp GetColumns(TGetColumnsReq req) {
+        count("GetColumns");
+
+        TGetColumnsResp resp = new TGetColumnsResp(success());
+        resp.setOperationHandle(metadataOperation(req.getSessionHandle(), TOperationType.GET_COLUMNS));
+        return resp;
+    }
+
+    @Override
+    public TGetFunctionsResp GetFunctions(TGetFunctionsReq req) {
+        count("GetFunctions");
+
+        TGetFunctionsResp resp = new TGetFunctionsResp(success());
+        resp.setOperationHandle(metadataOperation(req.getSessionHandle(), TOperationType.GET_FUNCTIONS));
+        return resp;
+    }
+
+    @Override
+    public TGetPrimaryKeysResp GetPrimaryKeys(TGetPrimaryKeysReq req) {
+        count("GetPrimaryKeys");
+
+        TGetPrimaryKeysResp resp = new TGetPrimaryKeysResp(success());
+        resp.setOperationHandle(metadataOperation(req.getSessionHandle(), TOperationType.UNKNOWN));
+        return resp;
+    }
+
+    @Override
+    public TGetCrossReferenceResp GetCrossReference(TGetCrossReferenceReq req) {
+        count("GetCrossReference");
+
+        TGetCrossReferenceResp resp = new TGetCrossReferenceResp(success());
+        resp.setOperationHandle(metadataOperation(req.getSessionHandle(), TOperationType.UNKNOWN));
+        return resp;
+    }
+
+    @Override
+    public TGetOperationStatusResp GetOperationStatus(TGetOperationStatusReq req) {
+        count("GetOperationStatus");
+
+        MockOperation operation = operation(req.getOperationHandle());
+
+        if (operation == null) {
+            return new TGetOperationStatusResp(error("invalid operation handle"));
+        }
+
+        // long poll like HS2: hold the call while the statement runs, returning early once it can finish
+        sleep(Math.min(statusLatency, operation.remaining()));
+
+        TGetOperationStatusResp resp = new TGetOperationStatusResp(success());
+        resp.setOperationState(operation.poll());
+        return resp;
+    }
+
+    @Override
+    public TCancelOperationResp CancelOperation(TCancelOperationReq req) {
+        count("CancelOperation");
+
+        MockOperation operation = operation(req.getOperationHandle());
+
+        if (operation == null) {
+            return new TCancelOperationResp(error("invalid operation handle"));
+        }
+
+        operation.cancelled = true;
+
+        return new TCancelOperationResp(success());
+    }
+
+    @Override
+    public TCloseOperationResp CloseOperation(TCloseOperationReq req) {
+        count("CloseOperation");
+
+        if (operations.remove(key(req.getOperationHandle().getOperationId())) == null) {
+            return new TCloseOperationResp(error("invalid operation handle"));
+        }
+
+        return new TCloseOperationResp(success());
+    }
+
+    @Override
+    public TGetResultSetMetadataResp GetResultSetMetadata(TGetResultSetMetadataReq req) {
+        count("GetResultSetMetadata");
+
+        MockOperation operation = operation(req.getOperationHandle());
+
+        if (operation == null || operation.shape == null) {
+            return new TGetResultSetMetadataResp(error("no result set for operation"));
+        }
+
+        TGetResultSetMetadataResp resp = new TGetResultSetMetadataResp(success());
+        resp.setSchema(operation.shape.tableSchema());
+        return resp;
+    }
+
+    @Override
+    public TFetchResultsResp FetchResults(TFetchResultsReq req) {
+        count("FetchResults");
+
+        MockOperation operation = operation(req.getOperationHandle());
+
+        if (operation == null || operation.shape == null) {
+            return new TFetchResultsResp(error("no result set for operation"));
+        }
+
+        if (req.getFetchType() == FETCH_TYPE_LOG) {
+            TFetchResultsResp resp = new TFetchResultsResp(success());
+            resp.setHasMoreRows(false);
+            resp.setResults(EMPTY.rowSet(0, 0));
+            return resp;
+        }
+
+        sleep(pageLatency);
+
+        if (inject(fetchFailureRate)) {
+            return new TFetchResultsResp(error("injected failure fetching results"));
+        }
+
+        TFetchResultsResp resp = new TFetchResultsResp(success());
+
+        synchronized (operation) {
+            if (req.getOrientation() == TFetchOrientation.FETCH_FIRST) {
+                operation.offset = 0;
+            }
+
+            long requested = maxFetchSize > 0 ? Math.min(req.getMaxRows(), maxFetchSize) : req.getMaxRows();
+
+            int count = (int) Math.max(0, Math.min(requested, operation.shape.getRows() - operation.offset));
+
+            resp.setResults(operation.shape.rowSet(operation.offset, count));
+
+            operation.offset += count;
+
+            resp.setHasMoreRows(operation.offset < operation.shape.getRows());
+        }
+
+        return resp;
+    }
+
+    @Override
+    public TGetDelegationTokenResp GetDelegationToken(TGetDelegationTokenReq req) {
+        count("GetDelegationToken");
+
+        return new TGetDelegationTokenResp(error("delegation tokens are not supported"));
+    }
+
+    @Override
+    public TCancelDelegationTokenResp CancelDelegationToken(TCancelDelegationTokenReq req) {
+        count("CancelDelegationToken");
+
+        return new TCancelDelegationTokenResp(error("delegation tokens are not supported"));
+    }
+
+    @Override
+    public TRenewDelegationTokenResp RenewDelegationToken(TRenewDelegationTokenReq req) {
+        count("RenewDelegationToken");
+
+        return new TRenewDelegationTokenResp(error("delegation tokens are not supported"));
+    }
+
+    @Override
+    public TGetQueryIdResp GetQueryId(TGetQueryIdReq req) {
+        count("GetQueryId");
+
+        return new TGetQueryIdResp("mock_" + UUID.nameUUIDFromBytes(req.getOperationHandle().getOperationId().getGuid()));
+    }
+
+    @Override
+    public TSetClientInfoResp SetClientInfo(TSetClientInfoReq req) {
+        count("SetClientInfo");
+
+        return new TSetClientInfoResp(success());
+    }
+
+    private class MockOperation {
+
+        private final ByteBuffer session;
+        private final ResultShape shape;
+        private final long started = System.currentTimeMillis();
+
+        private volatile boolean finished;
+        private volatile boolean cancelled;
+        private int polls;
+        private long offset;
+
+        MockOperation(ByteBuffer session, ResultShape shape, boolean finished) {
+            this.session = session;
+            this.shape = shape;
+            this.finished = finished;
+        }
+
+        synchronized TOperationState poll() {
+            if (cancelled) {
+                return TOperationState.CANCELED_STATE;
+            }
+
+            if (!finished && ++polls > runningPolls && System.currentTimeMillis() - started >= executeLatency) {
+                finished = true;
+            }
+
+            return finished ? TOperationState.FINISHED_STATE : TOperationState.RUNNING_STATE;
+        }
+
+        // time, in milliseconds, until executeLatency has passed
+        long remaining() {
+            return finished || cancelled ? 0 : Math.max(0, executeLatency - (System.currentTimeMillis() - started));
+        }
+    }
+
+    public static class MockCliServiceBuilder {
+
+        private final Map<String, ResultShape> queries = new HashMap<>();
+
+        private ResultShape shape = ResultShape.builder().build();
+        private long sessionLatency;
+        private long executeLatency;
+        private int runningPolls;
+        private long statusLatency;
+        private long pageLatency;
+        private int maxFetchSize;
+        private double sessionFailureRate;
+        private double executeFailureRate;
+        private double fetchFailureRate;
+        private TProtocolVersion protocolVersion = TProtocolVersion.HIVE_CLI_SERVICE_PROTOCOL_V10;
+        private boolean strictProtocol;
+        private long seed = 42;
+
+        private MockCliServiceBuilder() {
+        }
+
+        // result set returned for any query without its own shape
+        public MockCliServiceBuilder shape(ResultShape shape) {
+            this.shape = shape;
+            return this;
+        }
+
+        // result set returned for this exact statement; matching ignores case and surrounding whitespace
+        public MockCliServiceBuilder query(String sql, ResultShape shape) {
+            this.queries.put(sql.trim().toLowerCase(Locale.ROOT), shape);
+            return this;
+        }
+
+        // time spent in OpenSession, in milliseconds
+        public MockCliServiceBuilder sessionLatency(long sessionLatency) {
+            this.sessionLatency = sessionLatency;
+            return this;
+        }
+
+        // minimum time, in milliseconds, before a statement reports FINISHED
+        public MockCliServiceBuilder executeLatency(long executeLatency) {
+            this.executeLatency = executeLatency;
+            return this;
+        }
+
+        // number of status calls answered with RUNNING before a statement reports FINISHED
+        public MockCliServiceBuilder runningPolls(int runningPolls) {
+            this.runningPolls = runningPolls;
+            return this;
+        }
+
+        // longest time, in milliseconds, a status call is held open while the statement runs, like hive.server2.long.polling.timeout
+        public MockCliServiceBuilder statusLatency(long statusLatency) {
+            this.statusLatency = statusLatency;
+            return this;
+        }
+
+        // time spent in every FetchResults call, in milliseconds
+        public MockCliServiceBuilder pageLatency(long pageLatency) {
+            this.pageLatency = pageLatency;
+            return this;
+        }
+
+        // most rows returned by one FetchResults call, like hive.server2.thrift.resultset.max.fetch.size; 0 is unlimited
+        public MockCliServiceBuilder maxFetchSize(int maxFetchSize) {
+            this.maxFetchSize = maxFetchSize;
+            return this;
+        }
+
+        // fraction of OpenSession calls answered with an error status
+        public MockCliServiceBuilder sessionFailureRate(double sessionFailureRate) {
+            this.sessionFailureRate = sessionFailureRate;
+            return this;
+        }
+
+        // fraction of ExecuteStatement calls answered with an error status
+        public MockCliServiceBuilder executeFailureRate(double executeFailureRate) {
+            this.executeFailureRate = executeFailureRate;
+            return this;
+        }
+
+        // fraction of FetchResults calls answered with an error status
+        public MockCliServiceBuilder fetchFailureRate(double fetchFailureRate) {
+            this.fetchFailureRate = fetchFailureRate;
+            return this;
+        }
+
+        // highest protocol version the server agrees to
+        public MockCliServiceBuilder protocolVersion(TProtocolVersion protocolVersion) {
+            this.protocolVersion = protocolVersion;
+            return this;
+        }
+
+        // reject sessions from clients newer than protocolVersion, as HS2 releases older than the client do
+        public MockCliServiceBuilder strictProtocol(boolean strictProtocol) {
+            this.strictProtocol = strictProtocol;
+            return this;
+        }
+
+        // seed for failure injection so runs are reproducible
+        public MockCliServiceBuilder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public MockCliService build() {
+            return new MockCliService(shape, new HashMap<>(queries), sessionLatency, executeLatency, runningPolls, statusLatency, pageLatency, maxFetchSize, sessionFailureRate, executeFailureRate, fetchFailureRate, protocolVersion, strictProtocol, seed);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package veil.hdp.hive.jdbc.test.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.thrift.TException;
+import org.apache.thrift.TProcessor;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.server.TServer;
+import org.apache.thrift.server.TThreadPoolServer;
+import org.apache.thrift.transport.*;
+import veil.hdp.hive.jdbc.bindings.TCLIService;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A HiveServer2 stand-in that serves a {@link MockCliService} over a real socket, either with the binary transport
+ * (SASL PLAIN or NOSASL) or over HTTP.  The server is listening when {@link MockHiveServerBuilder#build()} returns;
+ * port 0 picks a free port.  {@link #getUrl()} returns a JDBC URL for it.
+ * <pre>
+ * try (MockHiveServer server = MockHiveServer.builder().transport(MockTransport.HTTP).build()) {
+ *     Connection connection = DriverManager.getConnection(server.getUrl());
+ * }
+ * </pre>
+ */
+public class MockHiveServer implements AutoCloseable {
+
+    private static final Logger log = LogManager.getLogger(MockHiveServer.class);
+
+    private static final String SASL_PROTOCOL = "hive";
+    private static final String CONTENT_TYPE = "application/x-thrift";
+
+    private final MockTransport transport;
+    private final MockCliService service;
+    private final String host;
+    private final int port;
+    private final String httpEndpoint;
+    private final TServer thriftServer;
+    private final HttpServer httpServer;
+    private final ExecutorService executor;
+
+    private MockHiveServer(MockTransport transport, MockCliService service, String host, int port, String httpEndpoint, TServer thriftServer, HttpServer httpServer, ExecutorService executor) {
+        this.transport = transport;
+        this.service = service;
+        this.host = host;
+        this.port = port;
+        this.httpEndpoint = httpEndpoint;
+        this.thriftServer = thriftServer;
+        this.httpServer = httpServer;
+        this.executor = executor;
+    }
+
+    public static MockHiveServerBuilder builder() {
+        return new MockHiveServerBuilder();
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+
+        return r -> {
+            Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static byte[] readFully(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(1024);
+
+        byte[] buffer = new byte[8192];
+
+        int read;
+
+        while ((read = inputStream.read(buffer)) != -1) {
+            outputStream.write(buffer, 0, read);
+        }
+
+        return outputStream.toByteArray();
+    }
+
+    public MockCliService getService() {
+        return service;
+    }
+
+    public MockTransport getTransport() {
+        return transport;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * @return JDBC URL for the default database on this server, with the transport and authentication properties it
+     * needs
+     */
+    public String getUrl() {
+        String url = "jdbc:hive2://" + host + ':' + port + "/default";
+
+        switch (transport) {
+            case BINARY_NOSASL:
+                return url + "?authMode=NOSASL";
+            case HTTP:
+                return url + "?transportMode=http&httpEndpoint=" + httpEndpoint;
+            default:
+                return url;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (thriftServer != null) {
+            thriftServer.stop();
+        }
+
+        if (httpServer != null) {
+            httpServer.stop(0);
+        }
+
+        executor.shutdownNow();
+
+        log.debug("stopped mock {} server on port {}", transport, port);
+    }
+
+    public enum MockTransport {
+        BINARY, BINARY_NOSASL, HTTP
+    }
+
+    /*
+        one POST carries one thrift call; the request body is run through the processor and the reply becomes the
+        response body, as THttpClient expects.
+     */
+    private static class ThriftHttpHandler implements com.sun.net.httpserver.HttpHandler {
+
+        private final TProcessor processor;
+
+        ThriftHttpHandler(TProcessor processor) {
+            this.processor = processor;
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+
+            try (InputStream inputStream = exchange.getRequestBody()) {
+
+                if (!"POST".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(405, -1);
+                    return;
+                }
+
+                TMemoryInputTransport in = new TMemoryInputTransport(readFully(inputStream));
+                TMemoryBuffer out = new TMemoryBuffer(1024);
+
+                processor.process(new TBinaryProtocol(in), new TBinaryProtocol(out));
+
+                exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+                exchange.sendResponseHeaders(200, out.length());
+
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(out.getArray(), 0, out.length());
+                }
+
+            } catch (TException e) {
+                log.warn(e.getMessage(), e);
+
+                exchange.sendResponseHeaders(500, -1);
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+
+    public static class MockHiveServerBuilder {
+
+        private MockTransport transport = MockTransport.BINARY;
+        private MockCliService service;
+        private String host = "localhost";
+        private int port;
+        private String httpEndpoint = "cliservice";
+        private int workerThreads = 32;
+
+        private MockHiveServerBuilder() {
+        }
+
+        public MockHiveServerBuilder transport(MockTransport transport) {
+            this.transport = transport;
+            return this;
+        }
+
+        public MockHiveServerBuilder service(MockCliService service) {
+            this.service = service;
+            return this;
+        }
+
+        public MockHiveServerBuilder host(String host) {
+            this.host = host;
+            return this;
+        }
+
+        // 0 picks a free port
+        public MockHiveServerBuilder port(int port) {
+            this.port = port;
+            return this;
+        }
+
+        public MockHiveServerBuilder httpEndpoint(String httpEndpoint) {
+            this.httpEndpoint = httpEndpoint;
+            return this;
+        }
+
+        // binary connections hold a worker for their lifetime, so this caps concurrent binary connections
+        public MockHiveServerBuilder workerThreads(int workerThreads) {
+            this.workerThreads = workerThreads;
+            return this;
+        }
+
+        public MockHiveServer build() {
+
+            if (service == null) {
+                service = MockCliService.builder().build();
+            }
+
+            TProcessor processor = new TCLIService.Processor<>(service);
+
+            ExecutorService executor = Executors.newFixedThreadPool(workerThreads, threadFactory("mock-hs2-" + transport.name().toLowerCase() + '-'));
+
+            try {
+                if (transport == MockTransport.HTTP) {
+                    return buildHttp(processor, executor);
+                } else {
+                    return buildBinary(processor, executor);
+                }
+            } catch (IOException | TTransportException | InterruptedException e) {
+                executor.shutdownNow();
+
+                throw new IllegalStateException("unable to start mock " + transport + " server on port " + port, e);
+            }
+        }
+
+        private MockHiveServer buildBinary(TProcessor processor, ExecutorService executor) throws TTransportException, InterruptedException {
+
+            TServerSocket serverSocket = new TServerSocket(new InetSocketAddress(host, port));
+
+            TTransportFactory transportFactory;
+
+            if (transport == MockTransport.BINARY) {
+                PlainSaslServer.register();
+
+                transportFactory = new TSaslServerTransport.Factory(PlainSaslServer.MECHANISM, SASL_PROTOCOL, host, Collections.emptyMap(), callbacks -> {
+                });
+            } else {
+                transportFactory = new TTransportFactory();
+            }
+
+            TThreadPoolServer.Args args = new TThreadPoolServer.Args(serverSocket)
+                    .processor(processor)
+                    .transportFactory(transportFactory)
+                    .protocolFactory(new TBinaryProtocol.Factory())
+                    .executorService(executor);
+
+            TServer server = new TThreadPoolServer(args);
+
+            Thread serveThread = threadFactory("mock-hs2-serve-").newThread(server::serve);
+            serveThread.start();
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+            while (!server.isServing() && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+
+            int boundPort = serverSocket.getServerSocket().getLocalPort();
+
+            log.debug("started mock {} server on port {}", transport, boundPort);
+
+            return new MockHiveServer(transport, service, host, boundPort, httpEndpoint, server, null, executor);
+        }
+
+        private MockHiveServer buildHttp(TProcessor processor, ExecutorService executor) throws IOException {
+
+            HttpServer server = HttpServer.create(new InetSocketAddress(host, port), 0);
+            server.createContext('/' + httpEndpoint, new ThriftHttpHandler(processor));
+            server.setExecutor(executor);
+            server.start();
+
+            int boundPort = server.getAddress().getPort();
+
+            log.debug("started mock {} server on port {}", transport, boundPort);
+
+            return new MockHiveServer(transport, service, host, boundPort, httpEndpoint, null, server, executor);
+        }
+    }
+}
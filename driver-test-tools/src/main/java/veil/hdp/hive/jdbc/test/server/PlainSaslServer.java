@@ -0,0 +1,123 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package veil.hdp.hive.jdbc.test.server;
+
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.sasl.SaslException;
+import javax.security.sasl.SaslServer;
+import javax.security.sasl.SaslServerFactory;
+import java.nio.charset.StandardCharsets;
+import java.security.Provider;
+import java.security.Security;
+import java.util.Map;
+
+/**
+ * Server side of the SASL PLAIN mechanism (RFC 4616).  The JDK only ships a PLAIN client, so HS2 registers its own
+ * server; this does the same for the mock.  Any user name and password are accepted, as HS2 does with
+ * hive.server2.authentication=NONE.
+ */
+final class PlainSaslServer implements SaslServer {
+
+    static final String MECHANISM = "PLAIN";
+
+    private String authorizationId;
+    private boolean complete;
+
+    private PlainSaslServer() {
+    }
+
+    static synchronized void register() {
+        if (Security.getProvider(PlainProvider.NAME) == null) {
+            Security.addProvider(new PlainProvider());
+        }
+    }
+
+    @Override
+    public String getMechanismName() {
+        return MECHANISM;
+    }
+
+    @Override
+    public byte[] evaluateResponse(byte[] response) throws SaslException {
+
+        // message = [authzid] NUL authcid NUL passwd
+        String[] parts = new String(response, StandardCharsets.UTF_8).split("\u0000", -1);
+
+        if (parts.length != 3 || parts[1].isEmpty()) {
+            throw new SaslException("invalid PLAIN message");
+        }
+
+        authorizationId = parts[0].isEmpty() ? parts[1] : parts[0];
+        complete = true;
+
+        return null;
+    }
+
+    @Override
+    public boolean isComplete() {
+        return complete;
+    }
+
+    @Override
+    public String getAuthorizationID() {
+        return authorizationId;
+    }
+
+    @Override
+    public byte[] unwrap(byte[] incoming, int offset, int len) {
+        throw new UnsupportedOperationException("PLAIN does not support a security layer");
+    }
+
+    @Override
+    public byte[] wrap(byte[] outgoing, int offset, int len) {
+        throw new UnsupportedOperationException("PLAIN does not support a security layer");
+    }
+
+    @Override
+    public Object getNegotiatedProperty(String propName) {
+        return null;
+    }
+
+    @Override
+    public void dispose() {
+        authorizationId = null;
+    }
+
+    public static class PlainServerFactory implements SaslServerFactory {
+
+        @Override
+        public SaslServer createSaslServer(String mechanism, String protocol, String serverName, Map<String, ?> props, CallbackHandler cbh) {
+            return MECHANISM.equals(mechanism) ? new PlainSaslServer() : null;
+        }
+
+        @Override
+        public String[] getMechanismNames(Map<String, ?> props) {
+            return new String[]{MECHANISM};
+        }
+    }
+
+    private static class PlainProvider extends Provider {
+
+        private static final String NAME = "MockHiveServerPlain";
+
+        PlainProvider() {
+            super(NAME, 1.0, "SASL PLAIN server for the mock HiveServer2");
+            put("SaslServerFactory." + MECHANISM, PlainServerFactory.class.getName());
+        }
+    }
+}
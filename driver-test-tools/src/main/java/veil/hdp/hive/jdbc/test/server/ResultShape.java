@@ -0,0 +1,278 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package veil.hdp.hive.jdbc.test.server;
+
+import veil.hdp.hive.jdbc.bindings.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Describes the result set the mock server synthesizes for a query: column types, row count and how often a cell is
+ * null.  Values are derived from the row number and column so every page is reproducible and can be checked by a test.
+ */
+public class ResultShape {
+
+    private static final String[] DEFAULT_NAMES = {};
+
+    private final TTypeId[] types;
+    private final String[] names;
+    private final long rows;
+    private final int nullEvery;
+
+    private ResultShape(TTypeId[] types, String[] names, long rows, int nullEvery) {
+        this.types = types;
+        this.names = names;
+        this.rows = rows;
+        this.nullEvery = nullEvery;
+    }
+
+    public static ResultShapeBuilder builder() {
+        return new ResultShapeBuilder();
+    }
+
+    /**
+     * @return the value the shape generates for the given cell, or null when the cell is null.  BINARY values are
+     * returned as byte[]; every other type as it is written on the wire.
+     */
+    public static Object value(TTypeId type, long row, int column, int nullEvery) {
+
+        if (nullEvery > 0 && row % nullEvery == nullEvery - 1) {
+            return null;
+        }
+
+        long seed = row * 31 + column;
+
+        switch (type) {
+            case BOOLEAN_TYPE:
+                return seed % 2 == 0;
+            case TINYINT_TYPE:
+                return (byte) seed;
+            case SMALLINT_TYPE:
+                return (short) seed;
+            case INT_TYPE:
+                return (int) seed;
+            case BIGINT_TYPE:
+                return seed * 1000003L;
+            case FLOAT_TYPE:
+            case DOUBLE_TYPE:
+                return seed / 4.0;
+            case BINARY_TYPE:
+                return ("bin-" + seed).getBytes(StandardCharsets.UTF_8);
+            case DECIMAL_TYPE:
+                return seed + ".25";
+            case DATE_TYPE:
+                return String.format("2018-%02d-%02d", seed % 12 + 1, seed % 28 + 1);
+            case TIMESTAMP_TYPE:
+                return String.format("2018-%02d-%02d %02d:%02d:%02d.0", seed % 12 + 1, seed % 28 + 1, seed % 24, seed % 60, row % 60);
+            default:
+                return "value-" + seed;
+        }
+    }
+
+    public TTypeId[] getTypes() {
+        return types;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public int getNullEvery() {
+        return nullEvery;
+    }
+
+    public Object value(long row, int column) {
+        return value(types[column], row, column, nullEvery);
+    }
+
+    TTableSchema tableSchema() {
+        TTableSchema tableSchema = new TTableSchema(new ArrayList<>(types.length));
+
+        for (int i = 0; i < types.length; i++) {
+            TTypeDesc typeDesc = new TTypeDesc(new ArrayList<>(1));
+            typeDesc.addToTypes(TTypeEntry.primitiveEntry(new TPrimitiveTypeEntry(types[i])));
+
+            String name = i < names.length ? names[i] : "col_" + (i + 1);
+
+            tableSchema.addToColumns(new TColumnDesc(name, typeDesc, i + 1));
+        }
+
+        return tableSchema;
+    }
+
+    /**
+     * Builds the column based page holding rows [offset, offset + count).
+     */
+    TRowSet rowSet(long offset, int count) {
+        TRowSet rowSet = new TRowSet(offset, new ArrayList<>(0));
+        rowSet.setColumns(new ArrayList<>(types.length));
+
+        for (int column = 0; column < types.length; column++) {
+            rowSet.addToColumns(column(column, offset, count));
+        }
+
+        return rowSet;
+    }
+
+    private TColumn column(int column, long offset, int count) {
+
+        TTypeId type = types[column];
+
+        byte[] nulls = new byte[nullEvery > 0 ? (count + 7) / 8 : 0];
+
+        List<Object> values = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            Object value = value(offset + i, column);
+
+            if (value == null) {
+                nulls[i / 8] |= 1 << (i % 8);
+                value = emptyValue(type);
+            } else if (value instanceof byte[]) {
+                value = ByteBuffer.wrap((byte[]) value);
+            } else if (value instanceof String || !isNative(type)) {
+                value = value.toString();
+            }
+
+            values.add(value);
+        }
+
+        ByteBuffer nullBuffer = ByteBuffer.wrap(nulls);
+
+        switch (type) {
+            case BOOLEAN_TYPE:
+                return TColumn.boolVal(new TBoolColumn(cast(values), nullBuffer));
+            case TINYINT_TYPE:
+                return TColumn.byteVal(new TByteColumn(cast(values), nullBuffer));
+            case SMALLINT_TYPE:
+                return TColumn.i16Val(new TI16Column(cast(values), nullBuffer));
+            case INT_TYPE:
+                return TColumn.i32Val(new TI32Column(cast(values), nullBuffer));
+            case BIGINT_TYPE:
+                return TColumn.i64Val(new TI64Column(cast(values), nullBuffer));
+            case FLOAT_TYPE:
+            case DOUBLE_TYPE:
+                return TColumn.doubleVal(new TDoubleColumn(cast(values), nullBuffer));
+            case BINARY_TYPE:
+                return TColumn.binaryVal(new TBinaryColumn(cast(values), nullBuffer));
+            default:
+                return TColumn.stringVal(new TStringColumn(cast(values), nullBuffer));
+        }
+    }
+
+    private static boolean isNative(TTypeId type) {
+        switch (type) {
+            case BOOLEAN_TYPE:
+            case TINYINT_TYPE:
+            case SMALLINT_TYPE:
+            case INT_TYPE:
+            case BIGINT_TYPE:
+            case FLOAT_TYPE:
+            case DOUBLE_TYPE:
+            case BINARY_TYPE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static Object emptyValue(TTypeId type) {
+        switch (type) {
+            case BOOLEAN_TYPE:
+                return Boolean.FALSE;
+            case TINYINT_TYPE:
+                return (byte) 0;
+            case SMALLINT_TYPE:
+                return (short) 0;
+            case INT_TYPE:
+                return 0;
+            case BIGINT_TYPE:
+                return 0L;
+            case FLOAT_TYPE:
+            case DOUBLE_TYPE:
+                return 0.0d;
+            case BINARY_TYPE:
+                return ByteBuffer.wrap(new byte[0]);
+            default:
+                return "";
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> cast(List<Object> values) {
+        return (List<T>) (List<?>) values;
+    }
+
+    @Override
+    public String toString() {
+        return "ResultShape{" +
+                "types=" + Arrays.toString(types) +
+                ", rows=" + rows +
+                ", nullEvery=" + nullEvery +
+                '}';
+    }
+
+    public static class ResultShapeBuilder {
+
+        private TTypeId[] types = {TTypeId.INT_TYPE, TTypeId.STRING_TYPE};
+        private String[] names = DEFAULT_NAMES;
+        private long rows = 1000;
+        private int nullEvery;
+
+        private ResultShapeBuilder() {
+        }
+
+        public ResultShapeBuilder types(TTypeId... types) {
+            this.types = types;
+            return this;
+        }
+
+        public ResultShapeBuilder names(String... names) {
+            this.names = names;
+            return this;
+        }
+
+        public ResultShapeBuilder rows(long rows) {
+            this.rows = rows;
+            return this;
+        }
+
+        // every n-th row is null; 0 for no nulls
+        public ResultShapeBuilder nullEvery(int nullEvery) {
+            this.nullEvery = nullEvery;
+            return this;
+        }
+
+        public ResultShape build() {
+
+            if (types == null || types.length == 0) {
+                throw new IllegalArgumentException("at least one column type is required");
+            }
+
+            if (rows < 0) {
+                throw new IllegalArgumentException("rows must not be negative");
+            }
+
+            return new ResultShape(types, names, rows, nullEvery);
+        }
+    }
+}
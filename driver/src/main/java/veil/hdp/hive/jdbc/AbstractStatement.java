@@ -71,12 +71,16 @@ abstract class AbstractStatement implements Statement {
 
     @Override
     public final <T> T unwrap(Class<T> iface) throws SQLException {
-        throw HiveDriver.notImplemented(this.getClass());
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+
+        throw new HiveSQLException("Statement is not a wrapper for [" + iface.getName() + ']');
     }
 
     @Override
     public final boolean isWrapperFor(Class<?> iface) throws SQLException {
-        throw HiveDriver.notImplemented(this.getClass());
+        return iface.isInstance(this);
     }
 
     @Override
@@ -0,0 +1,343 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package veil.hdp.hive.jdbc;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.PooledConnection;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pool of {@link HivePooledConnection}s backing {@link HivePooledDataSource}.  Idle sessions are reused most recently
+ * returned first so the rest age out; a background task evicts sessions that are invalid, past their lifetime or idle
+ * too long (down to {@code minIdle}) and opens sessions to keep {@code minIdle} ready.
+ */
+class ConnectionPool implements ConnectionEventListener, AutoCloseable {
+
+    private static final Logger log = LogManager.getLogger(ConnectionPool.class);
+
+    private static final ScheduledExecutorService EVICTOR = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("connection-pool-evictor-%d").build());
+
+    private final Properties properties;
+    private final int minIdle;
+    private final int maxIdle;
+    private final int maxTotal;
+    private final long idleTimeout;
+    private final long maxLifetime;
+    private final long borrowTimeout;
+
+    // one permit per connection that can be handed out
+    private final Semaphore permits;
+    private final BlockingDeque<Entry> idle = new LinkedBlockingDeque<>();
+    private final Map<PooledConnection, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicBoolean closed = new AtomicBoolean(true);
+    private final ScheduledFuture<?> evictionTask;
+
+    private ConnectionPool(Properties properties, int minIdle, int maxIdle, int maxTotal, long idleTimeout, long maxLifetime, long borrowTimeout, long evictionInterval) {
+        this.properties = properties;
+        this.minIdle = minIdle;
+        this.maxIdle = maxIdle;
+        this.maxTotal = maxTotal;
+        this.idleTimeout = idleTimeout;
+        this.maxLifetime = maxLifetime;
+        this.borrowTimeout = borrowTimeout;
+        this.permits = new Semaphore(maxTotal);
+
+        closed.set(false);
+
+        evictionTask = EVICTOR.scheduleWithFixedDelay(this::evict, 0, evictionInterval, TimeUnit.MILLISECONDS);
+    }
+
+    static ConnectionPoolBuilder builder() {
+        return new ConnectionPoolBuilder();
+    }
+
+    Connection getConnection() throws SQLException {
+
+        if (closed.get()) {
+            throw new HiveSQLException("Cannot 'getConnection' from pool.  Pool is closed.");
+        }
+
+        try {
+            if (!permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) {
+                throw new SQLTransientConnectionException("timed out after " + borrowTimeout + " ms waiting for a connection; all " + maxTotal + " are in use");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HiveSQLException("interrupted while waiting for a connection", e);
+        }
+
+        Entry entry = null;
+
+        try {
+            long now = System.currentTimeMillis();
+
+            while ((entry = idle.pollFirst()) != null && !isUsable(entry, now)) {
+                destroy(entry);
+            }
+
+            if (entry == null) {
+                entry = create();
+            }
+
+            entry.borrowed.set(true);
+
+            return entry.pooledConnection.getConnection();
+
+        } catch (SQLException | RuntimeException e) {
+            if (entry != null) {
+                entry.borrowed.set(false);
+                destroy(entry);
+            }
+
+            permits.release();
+
+            throw e;
+        }
+    }
+
+    int getIdleCount() {
+        return idle.size();
+    }
+
+    int getActiveCount() {
+        return maxTotal - permits.availablePermits();
+    }
+
+    @Override
+    public void connectionClosed(ConnectionEvent event) {
+
+        Entry entry = entries.get((PooledConnection) event.getSource());
+
+        if (entry == null || !entry.borrowed.compareAndSet(true, false)) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+
+        if (closed.get() || isExpired(entry, now) || idle.size() >= maxIdle) {
+            destroy(entry);
+        } else {
+            entry.lastUsed = now;
+            idle.offerFirst(entry);
+        }
+
+        permits.release();
+    }
+
+    @Override
+    public void connectionErrorOccurred(ConnectionEvent event) {
+
+        Entry entry = entries.get((PooledConnection) event.getSource());
+
+        if (entry == null) {
+            return;
+        }
+
+        log.debug("discarding pooled connection after error", event.getSQLException());
+
+        boolean borrowed = entry.borrowed.compareAndSet(true, false);
+
+        idle.remove(entry);
+
+        destroy(entry);
+
+        if (borrowed) {
+            permits.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+
+            log.trace("attempting to close {}", this.getClass().getName());
+
+            evictionTask.cancel(false);
+
+            drain();
+        }
+    }
+
+    private void drain() {
+        Entry entry;
+
+        while ((entry = idle.pollFirst()) != null) {
+            destroy(entry);
+        }
+    }
+
+    private Entry create() {
+
+        HivePooledConnection pooledConnection = HivePooledConnection.builder().properties(properties).build();
+
+        Entry entry = new Entry(pooledConnection);
+
+        pooledConnection.addConnectionEventListener(this);
+
+        entries.put(pooledConnection, entry);
+
+        return entry;
+    }
+
+    private void destroy(Entry entry) {
+        if (entries.remove(entry.pooledConnection) != null) {
+
+            entry.pooledConnection.removeConnectionEventListener(this);
+
+            try {
+                entry.pooledConnection.close();
+            } catch (SQLException e) {
+                log.warn(e.getMessage(), e);
+            }
+        }
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return maxLifetime > 0 && now - entry.created >= maxLifetime;
+    }
+
+    private boolean isUsable(Entry entry, long now) {
+        return !isExpired(entry, now) && entry.pooledConnection.isValid();
+    }
+
+    private void evict() {
+
+        try {
+            long now = System.currentTimeMillis();
+
+            for (Entry entry : idle) {
+
+                boolean idleTooLong = idleTimeout > 0 && now - entry.lastUsed >= idleTimeout && idle.size() > minIdle;
+
+                if ((idleTooLong || !isUsable(entry, now)) && idle.remove(entry)) {
+                    destroy(entry);
+                }
+            }
+
+            while (!closed.get() && idle.size() < minIdle && entries.size() < maxTotal) {
+                Entry entry = create();
+                entry.lastUsed = now;
+                idle.offerLast(entry);
+            }
+
+            // close may have run while the last one was being opened
+            if (closed.get()) {
+                drain();
+            }
+
+        } catch (RuntimeException e) {
+            log.warn("error maintaining connection pool", e);
+        }
+    }
+
+    private static class Entry {
+
+        private final HivePooledConnection pooledConnection;
+        private final long created = System.currentTimeMillis();
+        private final AtomicBoolean borrowed = new AtomicBoolean();
+
+        private volatile long lastUsed = created;
+
+        Entry(HivePooledConnection pooledConnection) {
+            this.pooledConnection = pooledConnection;
+        }
+    }
+
+    static class ConnectionPoolBuilder implements Builder<ConnectionPool> {
+
+        private Properties properties;
+        private int minIdle;
+        private int maxIdle;
+        private int maxTotal;
+        private long idleTimeout;
+        private long maxLifetime;
+        private long borrowTimeout;
+        private long evictionInterval;
+
+        private ConnectionPoolBuilder() {
+        }
+
+        ConnectionPoolBuilder properties(Properties properties) {
+            this.properties = properties;
+            return this;
+        }
+
+        ConnectionPoolBuilder minIdle(int minIdle) {
+            this.minIdle = minIdle;
+            return this;
+        }
+
+        ConnectionPoolBuilder maxIdle(int maxIdle) {
+            this.maxIdle = maxIdle;
+            return this;
+        }
+
+        ConnectionPoolBuilder maxTotal(int maxTotal) {
+            this.maxTotal = maxTotal;
+            return this;
+        }
+
+        ConnectionPoolBuilder idleTimeout(long idleTimeout) {
+            this.idleTimeout = idleTimeout;
+            return this;
+        }
+
+        ConnectionPoolBuilder maxLifetime(long maxLifetime) {
+            this.maxLifetime = maxLifetime;
+            return this;
+        }
+
+        ConnectionPoolBuilder borrowTimeout(long borrowTimeout) {
+            this.borrowTimeout = borrowTimeout;
+            return this;
+        }
+
+        ConnectionPoolBuilder evictionInterval(long evictionInterval) {
+            this.evictionInterval = evictionInterval;
+            return this;
+        }
+
+        public ConnectionPool build() {
+
+            if (maxTotal < 1) {
+                throw new IllegalArgumentException("maxTotal must be at least 1");
+            }
+
+            if (minIdle < 0 || minIdle > maxIdle || maxIdle > maxTotal) {
+                throw new IllegalArgumentException("expected 0 <= minIdle <= maxIdle <= maxTotal; got " + minIdle + ", " + maxIdle + ", " + maxTotal);
+            }
+
+            if (evictionInterval < 1) {
+                throw new IllegalArgumentException("evictionInterval must be positive");
+            }
+
+            return new ConnectionPool(properties, minIdle, maxIdle, maxTotal, idleTimeout, maxLifetime, borrowTimeout, evictionInterval);
+        }
+    }
+}
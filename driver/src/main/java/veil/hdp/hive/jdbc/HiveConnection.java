@@ -24,7 +24,12 @@ import veil.hdp.hive.jdbc.utils.QueryUtils;
 
 import java.sql.*;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -36,13 +41,17 @@ public class HiveConnection extends AbstractConnection {
 
     // constructor
     private final ThriftSession thriftSession;
+    private final HivePooledConnection pooledConnection;
     private final AtomicBoolean closed = new AtomicBoolean(true);
+    // statements and metadata result sets opened through a pooled handle; weak so abandoned ones can still be collected
+    private final Set<AutoCloseable> children = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
 
     // public getter & setter
     private SQLWarning sqlWarning;
 
-    private HiveConnection(ThriftSession thriftSession) {
+    private HiveConnection(ThriftSession thriftSession, HivePooledConnection pooledConnection) {
         this.thriftSession = thriftSession;
+        this.pooledConnection = pooledConnection;
 
         closed.set(false);
     }
@@ -58,8 +67,42 @@ public class HiveConnection extends AbstractConnection {
 
             log.trace("attempting to close {}", this.getClass().getName());
 
-            DriverUtils.close(thriftSession);
+            if (pooledConnection != null) {
+                // a handle on a pooled session; the session goes back to the pool instead of being closed, so nothing
+                // opened through this handle may outlive it
+                closeChildren();
 
+                pooledConnection.handleClosed(this);
+            } else {
+                DriverUtils.close(thriftSession);
+            }
+
+        }
+    }
+
+    /*
+        remembers a statement or result set opened through a pooled handle so it is closed along with the handle.
+        handles on unpooled sessions don't track anything; closing the session closes its operations.
+     */
+    <T extends AutoCloseable> T track(T child) {
+        if (pooledConnection != null) {
+            children.add(child);
+        }
+
+        return child;
+    }
+
+    private void closeChildren() {
+
+        List<AutoCloseable> open;
+
+        synchronized (children) {
+            open = new ArrayList<>(children);
+            children.clear();
+        }
+
+        for (AutoCloseable child : open) {
+            DriverUtils.close(child);
         }
     }
 
@@ -70,45 +113,45 @@ public class HiveConnection extends AbstractConnection {
 
     @Override
     public Statement createStatement() throws SQLException {
-        return HiveStatement.builder()
+        return track(HiveStatement.builder()
                 .connection(this)
                 .session(thriftSession)
                 .holdability(getHoldability())
-                .build();
+                .build());
     }
 
     @Override
     public PreparedStatement prepareStatement(String sql) throws SQLException {
-        return HivePreparedStatement.builder()
+        return track(HivePreparedStatement.builder()
                 .connection(this)
                 .session(thriftSession)
                 .sql(sql)
                 .holdability(getHoldability())
-                .build();
+                .build());
     }
 
     @Override
     public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency) throws SQLException {
-        return HivePreparedStatement.builder()
+        return track(HivePreparedStatement.builder()
                 .connection(this)
                 .session(thriftSession)
                 .sql(sql)
                 .type(resultSetType)
                 .concurrency(resultSetConcurrency)
                 .holdability(getHoldability())
-                .build();
+                .build());
     }
 
     @Override
     public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
-        return HivePreparedStatement.builder()
+        return track(HivePreparedStatement.builder()
                 .connection(this)
                 .session(thriftSession)
                 .sql(sql)
                 .type(resultSetType)
                 .concurrency(resultSetConcurrency)
                 .holdability(resultSetHoldability)
-                .build();
+                .build());
     }
 
     @Override
@@ -132,24 +175,24 @@ public class HiveConnection extends AbstractConnection {
 
     @Override
     public Statement createStatement(int resultSetType, int resultSetConcurrency) throws SQLException {
-        return HiveStatement.builder()
+        return track(HiveStatement.builder()
                 .connection(this)
                 .session(thriftSession)
                 .type(resultSetType)
                 .concurrency(resultSetConcurrency)
                 .holdability(getHoldability())
-                .build();
+                .build());
     }
 
     @Override
     public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability) throws SQLException {
-        return HiveStatement.builder()
+        return track(HiveStatement.builder()
                 .connection(this)
                 .session(thriftSession)
                 .type(resultSetType)
                 .concurrency(resultSetConcurrency)
                 .holdability(resultSetHoldability)
-                .build();
+                .build());
     }
 
     @Override
@@ -226,7 +269,7 @@ public class HiveConnection extends AbstractConnection {
             throw new SQLDataException(MessageFormat.format("timeout must be greater than or equal to 0.  Current value is {0}", timeout));
         }
 
-        return thriftSession != null && thriftSession.isValid();
+        return !closed.get() && thriftSession != null && thriftSession.isValid();
     }
 
     @Override
@@ -249,6 +292,8 @@ public class HiveConnection extends AbstractConnection {
     public static class HiveConnectionBuilder implements Builder<HiveConnection> {
 
         private Properties properties;
+        private ThriftSession thriftSession;
+        private HivePooledConnection pooledConnection;
 
         private HiveConnectionBuilder() {
         }
@@ -258,14 +303,25 @@ public class HiveConnection extends AbstractConnection {
             return this;
         }
 
+        // builds a handle on a pooled session rather than opening a new one
+        HiveConnectionBuilder pooledConnection(HivePooledConnection pooledConnection, ThriftSession thriftSession) {
+            this.pooledConnection = pooledConnection;
+            this.thriftSession = thriftSession;
+            return this;
+        }
+
 
         public HiveConnection build() {
 
+            if (pooledConnection != null) {
+                return new HiveConnection(thriftSession, pooledConnection);
+            }
+
             ThriftSession thriftSession = ThriftSession.builder()
                     .properties(properties)
                     .build();
 
-            return new HiveConnection(thriftSession);
+            return new HiveConnection(thriftSession, null);
         }
 
 
@@ -275,6 +331,12 @@ public class HiveConnection extends AbstractConnection {
         public void run() {
             try {
                 log.trace("attempting to close from abort command");
+
+                if (pooledConnection != null) {
+                    // an aborted session must not be reused
+                    pooledConnection.handleAborted(HiveConnection.this);
+                }
+
                 close();
             } catch (SQLException e) {
                 log.error(MessageFormat.format("error closing during abort: sql state [{0}]", e.getSQLState()), e);
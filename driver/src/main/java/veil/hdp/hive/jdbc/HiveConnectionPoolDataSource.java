@@ -0,0 +1,46 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package veil.hdp.hive.jdbc;
+
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.PooledConnection;
+import java.sql.SQLException;
+import java.util.Properties;
+
+/**
+ * {@link ConnectionPoolDataSource} for pools that manage {@link PooledConnection}s themselves.  It is configured the
+ * same way as {@link HiveDataSource}.  {@link HivePooledDataSource} is the built in pool.
+ */
+public class HiveConnectionPoolDataSource extends HiveDataSource implements ConnectionPoolDataSource {
+
+    @Override
+    public PooledConnection getPooledConnection() throws SQLException {
+        return HivePooledConnection.builder().properties(buildConnectionProperties()).build();
+    }
+
+    @Override
+    public PooledConnection getPooledConnection(String user, String password) throws SQLException {
+
+        Properties properties = buildConnectionProperties();
+
+        HiveDriverProperty.USER.set(properties, user);
+        HiveDriverProperty.PASSWORD.set(properties, password);
+
+        return HivePooledConnection.builder().properties(properties).build();
+    }
+}
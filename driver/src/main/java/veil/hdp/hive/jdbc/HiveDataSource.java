@@ -394,6 +394,15 @@ public class HiveDataSource extends AbstractDataSource {
         return driver.connect(url, properties);
     }
 
+    /**
+     * @return the complete connection properties, as the driver would build them from this data source's URL
+     */
+    Properties buildConnectionProperties() {
+        Properties properties = buildProperties();
+
+        return DriverUtils.buildProperties(DriverUtils.buildUrl(properties), properties);
+    }
+
     private Properties buildProperties() {
         Properties properties = new Properties();
 
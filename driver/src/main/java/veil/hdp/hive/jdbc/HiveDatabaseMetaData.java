@@ -114,7 +114,7 @@ public class HiveDatabaseMetaData extends AbstractDatabaseMetaData {
 
     @Override
     public ResultSet getCatalogs() throws SQLException {
-        return thriftSession.getCatalogs();
+        return connection.track(thriftSession.getCatalogs());
     }
 
     @Override
@@ -124,27 +124,27 @@ public class HiveDatabaseMetaData extends AbstractDatabaseMetaData {
 
     @Override
     public ResultSet getSchemas(String catalog, String schemaPattern) throws SQLException {
-        return thriftSession.getSchemas(catalog, schemaPattern);
+        return connection.track(thriftSession.getSchemas(catalog, schemaPattern));
     }
 
     @Override
     public ResultSet getTypeInfo() throws SQLException {
-        return thriftSession.getTypeInfo();
+        return connection.track(thriftSession.getTypeInfo());
     }
 
     @Override
     public ResultSet getTableTypes() throws SQLException {
-        return thriftSession.getTableTypes();
+        return connection.track(thriftSession.getTableTypes());
     }
 
     @Override
     public ResultSet getTables(String catalog, String schemaPattern, String tableNamePattern, String[] types) throws SQLException {
-        return thriftSession.getTables(catalog, schemaPattern, tableNamePattern, types);
+        return connection.track(thriftSession.getTables(catalog, schemaPattern, tableNamePattern, types));
     }
 
     @Override
     public ResultSet getColumns(String catalog, String schemaPattern, String tableNamePattern, String columnNamePattern) throws SQLException {
-        return thriftSession.getColumns(catalog, schemaPattern, tableNamePattern, columnNamePattern);
+        return connection.track(thriftSession.getColumns(catalog, schemaPattern, tableNamePattern, columnNamePattern));
     }
 
     @Override
@@ -184,97 +184,97 @@ public class HiveDatabaseMetaData extends AbstractDatabaseMetaData {
 
     @Override
     public ResultSet getPrimaryKeys(String catalog, String schema, String table) throws SQLException {
-        return thriftSession.getPrimaryKeys(catalog, schema, table);
+        return connection.track(thriftSession.getPrimaryKeys(catalog, schema, table));
     }
 
     @Override
     public ResultSet getProcedures(String catalog, String schemaPattern, String procedureNamePattern) throws SQLException {
-        return thriftSession.getProcedures(catalog, schemaPattern, procedureNamePattern);
+        return connection.track(thriftSession.getProcedures(catalog, schemaPattern, procedureNamePattern));
     }
 
     @Override
     public ResultSet getProcedureColumns(String catalog, String schemaPattern, String procedureNamePattern, String columnNamePattern) throws SQLException {
-        return thriftSession.getProcedureColumns(catalog, schemaPattern, procedureNamePattern, columnNamePattern);
+        return connection.track(thriftSession.getProcedureColumns(catalog, schemaPattern, procedureNamePattern, columnNamePattern));
     }
 
     @Override
     public ResultSet getColumnPrivileges(String catalog, String schema, String table, String columnNamePattern) throws SQLException {
-        return thriftSession.getColumnPrivileges(catalog, schema, table, columnNamePattern);
+        return connection.track(thriftSession.getColumnPrivileges(catalog, schema, table, columnNamePattern));
     }
 
     @Override
     public ResultSet getTablePrivileges(String catalog, String schemaPattern, String tableNamePattern) throws SQLException {
-        return thriftSession.getTablePrivileges(catalog, schemaPattern, tableNamePattern);
+        return connection.track(thriftSession.getTablePrivileges(catalog, schemaPattern, tableNamePattern));
     }
 
     @Override
     public ResultSet getBestRowIdentifier(String catalog, String schema, String table, int scope, boolean nullable) throws SQLException {
-        return thriftSession.getBestRowIdentifier(catalog, schema, table, scope, nullable);
+        return connection.track(thriftSession.getBestRowIdentifier(catalog, schema, table, scope, nullable));
     }
 
     @Override
     public ResultSet getVersionColumns(String catalog, String schema, String table) throws SQLException {
-        return thriftSession.getVersionColumns(catalog, schema, table);
+        return connection.track(thriftSession.getVersionColumns(catalog, schema, table));
     }
 
     @Override
     public ResultSet getImportedKeys(String catalog, String schema, String table) throws SQLException {
-        return thriftSession.getImportedKeys(catalog, schema, table);
+        return connection.track(thriftSession.getImportedKeys(catalog, schema, table));
     }
 
     @Override
     public ResultSet getExportedKeys(String catalog, String schema, String table) throws SQLException {
-        return thriftSession.getExportedKeys(catalog, schema, table);
+        return connection.track(thriftSession.getExportedKeys(catalog, schema, table));
     }
 
     @Override
     public ResultSet getCrossReference(String parentCatalog, String parentSchema, String parentTable, String foreignCatalog, String foreignSchema, String foreignTable) throws SQLException {
-        return thriftSession.getCrossReference(parentCatalog, parentSchema, parentTable, foreignCatalog, foreignSchema, foreignTable);
+        return connection.track(thriftSession.getCrossReference(parentCatalog, parentSchema, parentTable, foreignCatalog, foreignSchema, foreignTable));
     }
 
     @Override
     public ResultSet getIndexInfo(String catalog, String schema, String table, boolean unique, boolean approximate) throws SQLException {
-        return thriftSession.getIndexInfo(catalog, schema, table, unique, approximate);
+        return connection.track(thriftSession.getIndexInfo(catalog, schema, table, unique, approximate));
     }
 
     @Override
     public ResultSet getUDTs(String catalog, String schemaPattern, String typeNamePattern, int[] types) throws SQLException {
-        return thriftSession.getUDTs(catalog, schemaPattern, typeNamePattern, types);
+        return connection.track(thriftSession.getUDTs(catalog, schemaPattern, typeNamePattern, types));
     }
 
     @Override
     public ResultSet getSuperTypes(String catalog, String schemaPattern, String typeNamePattern) throws SQLException {
-        return thriftSession.getSuperTypes(catalog, schemaPattern, typeNamePattern);
+        return connection.track(thriftSession.getSuperTypes(catalog, schemaPattern, typeNamePattern));
     }
 
     @Override
     public ResultSet getSuperTables(String catalog, String schemaPattern, String tableNamePattern) throws SQLException {
-        return thriftSession.getSuperTables(catalog, schemaPattern, tableNamePattern);
+        return connection.track(thriftSession.getSuperTables(catalog, schemaPattern, tableNamePattern));
     }
 
     @Override
     public ResultSet getAttributes(String catalog, String schemaPattern, String typeNamePattern, String attributeNamePattern) throws SQLException {
-        return thriftSession.getAttributes(catalog, schemaPattern, typeNamePattern, attributeNamePattern);
+        return connection.track(thriftSession.getAttributes(catalog, schemaPattern, typeNamePattern, attributeNamePattern));
     }
 
     @Override
     public ResultSet getClientInfoProperties() throws SQLException {
-        return thriftSession.getClientInfoProperties();
+        return connection.track(thriftSession.getClientInfoProperties());
     }
 
     @Override
     public ResultSet getFunctions(String catalog, String schemaPattern, String functionNamePattern) throws SQLException {
-        return thriftSession.getFunctions(catalog, schemaPattern, functionNamePattern);
+        return connection.track(thriftSession.getFunctions(catalog, schemaPattern, functionNamePattern));
     }
 
     @Override
     public ResultSet getFunctionColumns(String catalog, String schemaPattern, String functionNamePattern, String columnNamePattern) throws SQLException {
-        return thriftSession.getFunctionColumns(catalog, schemaPattern, functionNamePattern, columnNamePattern);
+        return connection.track(thriftSession.getFunctionColumns(catalog, schemaPattern, functionNamePattern, columnNamePattern));
     }
 
     @Override
     public ResultSet getPseudoColumns(String catalog, String schemaPattern, String tableNamePattern, String columnNamePattern) throws SQLException {
-        return thriftSession.getPseudoColumns(catalog, schemaPattern, tableNamePattern, columnNamePattern);
+        return connection.track(thriftSession.getPseudoColumns(catalog, schemaPattern, tableNamePattern, columnNamePattern));
     }
 
     @Override
@@ -60,12 +60,17 @@ public class HiveDriver implements Driver {
 
     private static Connection connect(Properties properties) {
 
+        applySystemProperties(properties);
+
+        return HiveConnection.builder().properties(properties).build();
+    }
+
+    static void applySystemProperties(Properties properties) {
+
         PropertyUtils.printProperties(properties);
 
         System.setProperty(Constants.SUN_SECURITY_KRB5_DEBUG, HiveDriverProperty.KERBEROS_DEBUG_ENABLED.get(properties));
         System.setProperty(Constants.JAVAX_SECURITY_AUTH_USE_SUBJECT_CREDS_ONLY, HiveDriverProperty.KERBEROS_USE_SUBJECT_CREDENTIALS_ONLY.get(properties));
-
-        return HiveConnection.builder().properties(properties).build();
     }
 
 
@@ -55,13 +55,42 @@ public enum HiveDriverProperty {
     // make sure to spell out differences in readme; look at *.thrift
     THRIFT_PROTOCOL_VERSION("thriftVersion", PropertyUtils.getInstance().getValue("thrift.protocol.version.default"), null, null),
 
+    // in milliseconds. how long the protocol version negotiated with a server is reused for new sessions; 0 disables
+    THRIFT_PROTOCOL_VERSION_CACHE_TTL("thriftVersionCacheTtl", "3600000", null, null),
+
     // in milliseconds. time code will wait to open thrift transport
     THRIFT_TRANSPORT_TIMEOUT("thriftTransportTimeout", "10000", null, null),
 
     FETCH_SIZE("fetchSize", "1000", null, null),
 
+    // when enabled fetchSize is only the starting point; each fetch is sized from the bytes and latency of the last page
+    FETCH_SIZE_ADAPTIVE_ENABLED("fetchSizeAdaptive", Boolean.FALSE.toString(), null, null),
+    FETCH_SIZE_MIN("fetchSizeMin", "100", null, null),
+    // hs2 caps pages at hive.server2.thrift.resultset.max.fetch.size, 10000 by default
+    FETCH_SIZE_MAX("fetchSizeMax", "10000", null, null),
+    // in bytes
+    FETCH_TARGET_BYTES("fetchTargetBytes", "8388608", null, null),
+    // in milliseconds
+    FETCH_TARGET_LATENCY("fetchTargetLatency", "2000", null, null),
+
+    // number of pages fetched ahead of the ResultSet on a background thread; 0 disables prefetching
+    FETCH_PREFETCH_DEPTH("fetchPrefetchDepth", "0", null, null),
+
+    // in bytes. upper bound on the estimated size of pages held by prefetching
+    FETCH_PREFETCH_MAX_BYTES("fetchPrefetchMaxBytes", "67108864", null, null),
+
+    // metadata and first page are requested back to back instead of one round trip each; ignored over http
+    FETCH_PIPELINED("fetchPipelined", Boolean.TRUE.toString(), null, null),
+
     FETCH_SERVER_LOGS("fetchLogs", Boolean.FALSE.toString(), null, null),
 
+    // in milliseconds. backoff between GetOperationStatus calls while a statement runs; time spent in the call counts toward the wait
+    STATUS_POLL_INITIAL_DELAY("statusPollInitialDelay", "10", null, null),
+    STATUS_POLL_MULTIPLIER("statusPollMultiplier", "2", null, null),
+    STATUS_POLL_MAX_INTERVAL("statusPollMaxInterval", "1000", null, null),
+    // fraction of the interval; 0.2 spreads each wait by +/- 20%
+    STATUS_POLL_JITTER("statusPollJitter", "0.2", null, null),
+
 
     /***************************************************
      *  BINARY
@@ -71,6 +100,17 @@ public enum HiveDriverProperty {
 
     THRIFT_CONNECTION_TIMEOUT("thriftConnectionTimeout", "0", null, null),
 
+    THRIFT_SOCKET_TCP_NO_DELAY("thriftSocketTcpNoDelay", Boolean.TRUE.toString(), null, null),
+
+    THRIFT_SOCKET_KEEP_ALIVE("thriftSocketKeepAlive", Boolean.TRUE.toString(), null, null),
+
+    // in bytes. SO_RCVBUF / SO_SNDBUF; 0 leaves the operating system default
+    THRIFT_SOCKET_RECEIVE_BUFFER_SIZE("thriftSocketReceiveBufferSize", "0", null, null),
+    THRIFT_SOCKET_SEND_BUFFER_SIZE("thriftSocketSendBufferSize", "0", null, null),
+
+    // in bytes. read and write buffer between thrift and the socket
+    THRIFT_TRANSPORT_BUFFER_SIZE("thriftTransportBufferSize", "8192", null, null),
+
     /***************************************************
      *  SSL
      ***************************************************/
@@ -93,9 +133,13 @@ public enum HiveDriverProperty {
 
     HTTP_ENDPOINT("httpEndpoint", "cliservice", null, "hive.server2.thrift.http.path", null, new String[]{"httpPath"}),
 
-    HTTP_POOL_ENABLED("httpPoolEnabled", Boolean.FALSE.toString(), null, null),
+    // when enabled connections to the same endpoint share one http client and its connection pool
+    HTTP_POOL_ENABLED("httpPoolEnabled", Boolean.TRUE.toString(), null, null),
     HTTP_POOL_MAX_TOTAL("httpPoolMax", "100", null, null),
-    HTTP_POOL_MAX_PER_ROUTE("httpPoolMaxRoute", "20", null, null),
+    HTTP_POOL_MAX_PER_ROUTE("httpPoolMaxRoute", "100", null, null),
+
+    // in milliseconds. how long an idle connection is kept when the server does not send a Keep-Alive timeout
+    HTTP_KEEP_ALIVE_TIMEOUT("httpKeepAliveTimeout", "30000", null, null),
 
     // https://issues.apache.org/jira/browse/HIVE-9709
     HTTP_COOKIE_REPLAY_ENABLED("httpCookieReplayEnabled", Boolean.TRUE.toString(), null, null, null, new String[]{"cookieAuth"}),
@@ -112,6 +156,28 @@ public enum HiveDriverProperty {
 
     ZOOKEEPER_DISCOVERY_NAMESPACE("zkNamespace", "hiveserver2", null, null, null, new String[]{"zooKeeperNamespace"}),
     ZOOKEEPER_DISCOVERY_RETRY("zkRetry", "1000", null, null),
+    // keep a shared zookeeper client and the registered servers in memory; see ZookeeperDiscovery
+    ZOOKEEPER_DISCOVERY_CACHE_ENABLED("zkCacheEnabled", Boolean.TRUE.toString(), null, null),
+    // in milliseconds
+    ZOOKEEPER_DISCOVERY_MAX_STALENESS("zkMaxStaleness", "60000", null, null),
+    // how a discovered server is chosen; see ServerSelector
+    ZOOKEEPER_DISCOVERY_SELECTION("zkSelection", ServerSelection.LEAST_CONNECTIONS.name(), null, null,
+            new String[]{ServerSelection.RANDOM.name(),
+                    ServerSelection.LEAST_CONNECTIONS.name(),
+                    ServerSelection.LATENCY.name(),
+                    ServerSelection.STICKY.name()}, null),
+    // in milliseconds. how long a server that failed to open a session is skipped; doubles with each further failure
+    ZOOKEEPER_DISCOVERY_BLACKLIST_BACKOFF("zkBlacklistBackoff", "1000", null, null),
+    // in milliseconds
+    ZOOKEEPER_DISCOVERY_BLACKLIST_MAX_BACKOFF("zkBlacklistMaxBackoff", "300000", null, null),
+    // set by the driver from the url; the zookeeper ensemble servers were discovered from
+    ZOOKEEPER_DISCOVERY_CONNECT_STRING("zkConnectString", null, null, null),
+    // number of discovered servers tried before a connect fails; see ConnectFailover
+    ZOOKEEPER_DISCOVERY_FAILOVER_ATTEMPTS("zkFailoverAttempts", "3", null, null),
+    // in milliseconds. caps thriftTransportTimeout for each attempt; 0 leaves it as is
+    ZOOKEEPER_DISCOVERY_FAILOVER_ATTEMPT_TIMEOUT("zkFailoverAttemptTimeout", "0", null, null),
+    // in milliseconds. start another attempt when one hasn't finished by then; 0 tries servers one at a time
+    ZOOKEEPER_DISCOVERY_CONNECT_RACE_DELAY("zkConnectRaceDelay", "0", null, null),
 
     /***************************************************
      *  KERBEROS
@@ -126,6 +192,8 @@ public enum HiveDriverProperty {
     KERBEROS_DEBUG_ENABLED("krb5Debug", Boolean.FALSE.toString(), null, null),
     // javax.security.auth.useSubjectCredsOnly; todo: i really don't get this property; see http://docs.oracle.com/javase/7/docs/technotes/guides/security/jgss/tutorials/BasicClientServer.html
     KERBEROS_USE_SUBJECT_CREDENTIALS_ONLY("krb5SubjectOnly", Boolean.FALSE.toString(), null, null),
+    // share logged in subjects across connections and renew them before the TGT expires; see SubjectCache
+    KERBEROS_SUBJECT_CACHE_ENABLED("krb5SubjectCache", Boolean.TRUE.toString(), null, null),
 
     // Sasl.QOP
     SASL_QUALITY_OF_PROTECTION("saslQOP", SaslQop.AUTH.getValue(), null, "hive.server2.thrift.sasl.qop", new String[]{SaslQop.AUTH.getValue(), SaslQop.AUTH_INT.getValue(), SaslQop.AUTH_CONF.getValue()}, null),
@@ -221,6 +289,12 @@ public enum HiveDriverProperty {
         return Integer.parseInt(value);
     }
 
+    public double getDouble(Properties properties) {
+        String value = get(properties);
+
+        return Double.parseDouble(value);
+    }
+
     public DriverPropertyInfo toDriverPropertyInfo(Properties properties) {
         DriverPropertyInfo propertyInfo = new DriverPropertyInfo(key, get(properties));
         propertyInfo.required = false;
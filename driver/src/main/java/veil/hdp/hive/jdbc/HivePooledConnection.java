@@ -0,0 +1,206 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package veil.hdp.hive.jdbc;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import veil.hdp.hive.jdbc.thrift.ThriftSession;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.PooledConnection;
+import javax.sql.StatementEventListener;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A physical HS2 session that hands out {@link HiveConnection} handles.  Closing a handle leaves the session open,
+ * resets it (see {@link ThriftSession#reset()}) and notifies the registered {@link ConnectionEventListener}s so a pool
+ * can take it back.  If the reset fails, or a handle is aborted, listeners are told the session is unusable instead.
+ * The same happens once the session has run a statement a reset can't undo, such as creating a temporary table or
+ * function or adding a jar (see {@link ThriftSession#isResettable()}); such state would otherwise reach the next user.
+ */
+public class HivePooledConnection implements PooledConnection {
+
+    private static final Logger log = LogManager.getLogger(HivePooledConnection.class);
+
+    // constructor
+    private final ThriftSession thriftSession;
+    private final AtomicBoolean closed = new AtomicBoolean(true);
+    private final List<ConnectionEventListener> listeners = new CopyOnWriteArrayList<>();
+
+    // the open handle, if any
+    private volatile HiveConnection handle;
+
+    private HivePooledConnection(ThriftSession thriftSession) {
+        this.thriftSession = thriftSession;
+
+        closed.set(false);
+    }
+
+    public static HivePooledConnectionBuilder builder() {
+        return new HivePooledConnectionBuilder();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+
+        if (closed.get()) {
+            throw new HiveSQLException("Cannot 'getConnection' PooledConnection.  PooledConnection is closed.");
+        }
+
+        HiveConnection current = handle;
+
+        // per spec only one handle is open at a time; a new one closes the previous without it going back to the pool
+        if (current != null) {
+            handle = null;
+
+            current.close();
+
+            if (!thriftSession.isResettable()) {
+                throw new HiveSQLException("Cannot 'getConnection' PooledConnection.  Its session has state that can't be reset.");
+            }
+
+            thriftSession.reset();
+        }
+
+        handle = HiveConnection.builder().pooledConnection(this, thriftSession).build();
+
+        return handle;
+    }
+
+    /**
+     * @return true if the session can execute another call; does not go to the server
+     */
+    public boolean isValid() {
+        return !closed.get() && thriftSession.isValid();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (closed.compareAndSet(false, true)) {
+
+            log.trace("attempting to close {}", this.getClass().getName());
+
+            handle = null;
+
+            thriftSession.close();
+        }
+    }
+
+    @Override
+    public void addConnectionEventListener(ConnectionEventListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeConnectionEventListener(ConnectionEventListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void addStatementEventListener(StatementEventListener listener) {
+        // no-op; statements are not pooled
+    }
+
+    @Override
+    public void removeStatementEventListener(StatementEventListener listener) {
+        // no-op; statements are not pooled
+    }
+
+    void handleClosed(HiveConnection connection) {
+
+        if (connection != handle || closed.get()) {
+            return;
+        }
+
+        handle = null;
+
+        if (!thriftSession.isResettable()) {
+            log.debug("session has state that can't be reset; discarding it");
+
+            fireConnectionError(new HiveSQLException("session has state that can't be reset"));
+
+            return;
+        }
+
+        try {
+            thriftSession.reset();
+        } catch (RuntimeException e) {
+            log.warn("unable to reset session; discarding it", e);
+
+            fireConnectionError(new HiveSQLException("unable to reset session", e));
+
+            return;
+        }
+
+        ConnectionEvent event = new ConnectionEvent(this);
+
+        for (ConnectionEventListener listener : listeners) {
+            listener.connectionClosed(event);
+        }
+    }
+
+    void handleAborted(HiveConnection connection) {
+
+        if (connection != handle || closed.get()) {
+            return;
+        }
+
+        handle = null;
+
+        fireConnectionError(new HiveSQLException("connection was aborted"));
+    }
+
+    private void fireConnectionError(SQLException e) {
+
+        ConnectionEvent event = new ConnectionEvent(this, e);
+
+        for (ConnectionEventListener listener : listeners) {
+            listener.connectionErrorOccurred(event);
+        }
+    }
+
+    public static class HivePooledConnectionBuilder implements Builder<HivePooledConnection> {
+
+        private Properties properties;
+
+        private HivePooledConnectionBuilder() {
+        }
+
+        public HivePooledConnectionBuilder properties(Properties properties) {
+            this.properties = properties;
+            return this;
+        }
+
+        public HivePooledConnection build() {
+
+            HiveDriver.applySystemProperties(properties);
+
+            ThriftSession thriftSession = ThriftSession.builder()
+                    .properties(properties)
+                    .build();
+
+            return new HivePooledConnection(thriftSession);
+        }
+    }
+}
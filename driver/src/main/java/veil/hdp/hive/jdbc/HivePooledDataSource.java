@@ -0,0 +1,162 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package veil.hdp.hive.jdbc;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * {@link HiveDataSource} that keeps HS2 sessions open between uses.  Opening a session means a TCP connect, a SASL or
+ * Kerberos handshake and protocol negotiation; a pooled connection skips all of that.  When a connection is closed its
+ * session is reset (configuration, hiveconf overlay and database; see {@link veil.hdp.hive.jdbc.thrift.ThriftSession#reset()})
+ * before it is reused.  A session that ran a statement a reset can't undo, such as creating a temporary table, function or
+ * macro, adding a jar or file, or setting a hivevar, is closed instead of being reused.
+ * <p>
+ * Pool settings are read when the first connection is requested.  {@link #getConnection(String, String)} is not
+ * pooled; it always opens a new session for the given user.
+ */
+public class HivePooledDataSource extends HiveDataSource implements AutoCloseable {
+
+    private int minIdle = 0;
+    private int maxIdle = 8;
+    private int maxTotal = 8;
+    private long idleTimeout = 600000;
+    private long maxLifetime = 1800000;
+    private long borrowTimeout = 30000;
+    private long evictionInterval = 30000;
+
+    private volatile ConnectionPool pool;
+
+    // number of idle sessions the pool keeps open
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    public void setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    // idle sessions above this are closed when returned
+    public int getMaxIdle() {
+        return maxIdle;
+    }
+
+    public void setMaxIdle(int maxIdle) {
+        this.maxIdle = maxIdle;
+    }
+
+    // most sessions open at once; getConnection waits for one to be returned past this
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    public void setMaxTotal(int maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+
+    // milliseconds a session may sit idle before it is closed; 0 to never close idle sessions
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    // milliseconds after which a session is closed instead of reused; 0 for no limit
+    public long getMaxLifetime() {
+        return maxLifetime;
+    }
+
+    public void setMaxLifetime(long maxLifetime) {
+        this.maxLifetime = maxLifetime;
+    }
+
+    // milliseconds getConnection waits when all sessions are in use
+    public long getBorrowTimeout() {
+        return borrowTimeout;
+    }
+
+    public void setBorrowTimeout(long borrowTimeout) {
+        this.borrowTimeout = borrowTimeout;
+    }
+
+    // milliseconds between idle eviction runs
+    public long getEvictionInterval() {
+        return evictionInterval;
+    }
+
+    public void setEvictionInterval(long evictionInterval) {
+        this.evictionInterval = evictionInterval;
+    }
+
+    public int getIdleConnections() {
+        ConnectionPool current = pool;
+
+        return current != null ? current.getIdleCount() : 0;
+    }
+
+    public int getActiveConnections() {
+        ConnectionPool current = pool;
+
+        return current != null ? current.getActiveCount() : 0;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return getPool().getConnection();
+    }
+
+    /**
+     * Closes idle sessions and stops pooling; sessions in use are closed when they are returned.
+     */
+    @Override
+    public synchronized void close() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+    }
+
+    private ConnectionPool getPool() {
+        ConnectionPool current = pool;
+
+        if (current == null) {
+            synchronized (this) {
+                current = pool;
+
+                if (current == null) {
+                    current = ConnectionPool.builder()
+                            .properties(buildConnectionProperties())
+                            .minIdle(minIdle)
+                            .maxIdle(maxIdle)
+                            .maxTotal(maxTotal)
+                            .idleTimeout(idleTimeout)
+                            .maxLifetime(maxLifetime)
+                            .borrowTimeout(borrowTimeout)
+                            .evictionInterval(evictionInterval)
+                            .build();
+
+                    pool = current;
+                }
+            }
+        }
+
+        return current;
+    }
+}
@@ -61,17 +61,17 @@ public class HivePreparedStatement extends AbstractPreparedStatement {
 
     @Override
     public ResultSet executeQuery() throws SQLException {
-        return super.executeQuery(updateSql(sql));
+        return super.executeQuery(updateSql(sql, parameterValues));
     }
 
     @Override
     public int executeUpdate() throws SQLException {
-        return super.executeUpdate(updateSql(sql));
+        return super.executeUpdate(updateSql(sql, parameterValues));
     }
 
     @Override
     public boolean execute() throws SQLException {
-        return super.execute(updateSql(sql));
+        return super.execute(updateSql(sql, parameterValues));
     }
 
     @Override
@@ -185,7 +185,8 @@ public class HivePreparedStatement extends AbstractPreparedStatement {
 
     */
 
-    private String updateSql(String originalSql) {
+    // static and package-private so the substitution can be benchmarked without a session
+    static String updateSql(String originalSql, Map<Integer, String> parameterValues) {
 
         if (!originalSql.contains(String.valueOf(PLACEHOLDER))) {
             return originalSql;
@@ -197,7 +198,7 @@ public class HivePreparedStatement extends AbstractPreparedStatement {
         int parameterCount = 1;
 
         for (int i = 0; i < originalSql.length(); i++) {
-            char currentChar = sql.charAt(i);
+            char currentChar = originalSql.charAt(i);
 
             if (Arrays.binarySearch(ESCAPE_CHARS, currentChar) >= 0) {
                 builder.append(currentChar);
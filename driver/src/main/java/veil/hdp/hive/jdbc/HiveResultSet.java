@@ -19,18 +19,22 @@ package veil.hdp.hive.jdbc;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import veil.hdp.hive.jdbc.bindings.TFetchOrientation;
-import veil.hdp.hive.jdbc.data.Row;
+import veil.hdp.hive.jdbc.data.ColumnBasedSet;
+import veil.hdp.hive.jdbc.data.ColumnData;
 import veil.hdp.hive.jdbc.thrift.ThriftOperation;
 import veil.hdp.hive.jdbc.utils.FetchIterator;
-import veil.hdp.hive.jdbc.utils.ResultSetIterator;
+import veil.hdp.hive.jdbc.utils.FetchSizeTuner;
+import veil.hdp.hive.jdbc.utils.PrefetchIterator;
+import veil.hdp.hive.jdbc.utils.ResultSetCursor;
 import veil.hdp.hive.jdbc.utils.ResultSetUtils;
 
 import java.io.InputStream;
 import java.math.BigDecimal;
 import java.sql.*;
+import java.util.Iterator;
+import java.util.Properties;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
 
 
 public class HiveResultSet extends AbstractResultSet {
@@ -43,11 +47,10 @@ public class HiveResultSet extends AbstractResultSet {
     private final int resultSetHoldability;
     // atomic
     private final ThriftOperation thriftOperation;
-    private final ResultSetIterator iterator;
+    private final ResultSetCursor cursor;
     private final AtomicBoolean lastColumnNull = new AtomicBoolean(true);
     private final AtomicBoolean closed = new AtomicBoolean(true);
     private final AtomicInteger rowCount = new AtomicInteger(0);
-    private final AtomicReference<Row> currentRow = new AtomicReference<>();
     private final Statement statement;
     // constructor
     // public getter & setter
@@ -56,10 +59,10 @@ public class HiveResultSet extends AbstractResultSet {
     private SQLWarning sqlWarning;
 
 
-    private HiveResultSet(ThriftOperation thriftOperation, Statement statement, ResultSetIterator iterator, int maxRows, int fetchSize, int fetchDirection, int resultSetType, int resultSetConcurrency, int resultSetHoldability) {
+    private HiveResultSet(ThriftOperation thriftOperation, Statement statement, ResultSetCursor cursor, int maxRows, int fetchSize, int fetchDirection, int resultSetType, int resultSetConcurrency, int resultSetHoldability) {
         this.thriftOperation = thriftOperation;
         this.statement = statement;
-        this.iterator = iterator;
+        this.cursor = cursor;
         this.maxRows = maxRows;
         this.fetchSize = fetchSize;
         this.fetchDirection = fetchDirection;
@@ -85,6 +88,23 @@ public class HiveResultSet extends AbstractResultSet {
         return value;
     }
 
+    /*
+        returns the column data for the current row or null if the cell is null.  also records the outcome for
+        wasNull() so the typed getters below don't need to box the value to find out.
+     */
+    private ColumnData getColumnData(int columnIndex) {
+        ColumnData columnData = cursor.getColumnData(columnIndex);
+
+        if (columnData == null || columnData.isNull(cursor.getPageRow())) {
+            lastColumnNull.set(true);
+            return null;
+        }
+
+        lastColumnNull.set(false);
+
+        return columnData;
+    }
+
 
     @Override
     public boolean isClosed() {
@@ -98,14 +118,15 @@ public class HiveResultSet extends AbstractResultSet {
 
             log.trace("attempting to close {}", this.getClass().getName());
 
+            // stop prefetching before the operation goes away
+            cursor.close();
+
             try {
                 if (thriftOperation.isOpen()) {
                     thriftOperation.close();
                 }
             } catch (Exception e) {
                 log.warn(e.getMessage(), e);
-            } finally {
-                currentRow.set(null);
             }
 
 
@@ -143,10 +164,10 @@ public class HiveResultSet extends AbstractResultSet {
 
     @Override
     public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
-        Row row = currentRow.get();
+        ColumnData columnData = getColumnData(columnIndex);
 
-        if (row != null) {
-            return checkValue(row.getColumn(columnIndex).asBigDecimal());
+        if (columnData != null) {
+            return checkValue(columnData.getColumn(cursor.getPageRow()).asBigDecimal());
         }
 
         return null;
@@ -159,10 +180,10 @@ public class HiveResultSet extends AbstractResultSet {
 
     @Override
     public boolean getBoolean(int columnIndex) throws SQLException {
-        Row row = currentRow.get();
+        ColumnData columnData = getColumnData(columnIndex);
 
-        if (row != null) {
-            return checkValue(row.getColumn(columnIndex).asBoolean());
+        if (columnData != null) {
+            return columnData.getBoolean(cursor.getPageRow());
         }
 
         return false;
@@ -175,10 +196,10 @@ public class HiveResultSet extends AbstractResultSet {
 
     @Override
     public Date getDate(int columnIndex) throws SQLException {
-        Row row = currentRow.get();
+        ColumnData columnData = getColumnData(columnIndex);
 
-        if (row != null) {
-            return checkValue(row.getColumn(columnIndex).asDate());
+        if (columnData != null) {
+            return checkValue(columnData.getColumn(cursor.getPageRow()).asDate());
         }
 
         return null;
@@ -191,10 +212,10 @@ public class HiveResultSet extends AbstractResultSet {
 
     @Override
     public double getDouble(int columnIndex) throws SQLException {
-        Row row = currentRow.get();
+        ColumnData columnData = getColumnData(columnIndex);
 
-        if (row != null) {
-            return checkValue(row.getColumn(columnIndex).asDouble());
+        if (columnData != null) {
+            return columnData.getDouble(cursor.getPageRow());
         }
 
         return 0;
@@ -208,10 +229,10 @@ public class HiveResultSet extends AbstractResultSet {
 
     @Override
     public float getFloat(int columnIndex) throws SQLException {
-        Row row = currentRow.get();
+        ColumnData columnData = getColumnData(columnIndex);
 
-        if (row != null) {
-            return checkValue(row.getColumn(columnIndex).asFloat());
+        if (columnData != null) {
+            return columnData.getFloat(cursor.getPageRow());
         }
 
         return 0;
@@ -224,10 +245,10 @@ public class HiveResultSet extends AbstractResultSet {
 
     @Override
     public int getInt(int columnIndex) throws SQLException {
-        Row row = currentRow.get();
+        ColumnData columnData = getColumnData(columnIndex);
 
-        if (row != null) {
-            return checkValue(row.getColumn(columnIndex).asInt());
+        if (columnData != null) {
+            return columnData.getInt(cursor.getPageRow());
         }
 
         return 0;
@@ -240,10 +261,10 @@ public class HiveResultSet extends AbstractResultSet {
 
     @Override
     public long getLong(int columnIndex) throws SQLException {
-        Row row = currentRow.get();
+        ColumnData columnData = getColumnData(columnIndex);
 
-        if (row != null) {
-            return checkValue(row.getColumn(columnIndex).asLong());
+        if (columnData != null) {
+            return columnData.getLong(cursor.getPageRow());
         }
 
         return 0;
@@ -256,10 +277,10 @@ public class HiveResultSet extends AbstractResultSet {
 
     @Override
     public Object getObject(int columnIndex) throws SQLException {
-        Row row = currentRow.get();
+        ColumnData columnData = getColumnData(columnIndex);
 
-        if (row != null) {
-            return checkValue(row.getColumn(columnIndex).getValue());
+        if (columnData != null) {
+            return checkValue(columnData.getColumn(cursor.getPageRow()).getValue());
         }
 
         return null;
@@ -272,10 +293,10 @@ public class HiveResultSet extends AbstractResultSet {
 
     @Override
     public short getShort(int columnIndex) throws SQLException {
-        Row row = currentRow.get();
+        ColumnData columnData = getColumnData(columnIndex);
 
-        if (row != null) {
-            return checkValue(row.getColumn(columnIndex).asShort());
+        if (columnData != null) {
+            return columnData.getShort(cursor.getPageRow());
         }
 
         return 0;
@@ -289,10 +310,10 @@ public class HiveResultSet extends AbstractResultSet {
 
     @Override
     public String getString(int columnIndex) throws SQLException {
-        Row row = currentRow.get();
+        ColumnData columnData = getColumnData(columnIndex);
 
-        if (row != null) {
-            return checkValue(row.getColumn(columnIndex).asString());
+        if (columnData != null) {
+            return columnData.getString(cursor.getPageRow());
         }
 
         return null;
@@ -305,10 +326,10 @@ public class HiveResultSet extends AbstractResultSet {
 
     @Override
     public Timestamp getTimestamp(int columnIndex) throws SQLException {
-        Row row = currentRow.get();
+        ColumnData columnData = getColumnData(columnIndex);
 
-        if (row != null) {
-            return checkValue(row.getColumn(columnIndex).asTimestamp());
+        if (columnData != null) {
+            return checkValue(columnData.getColumn(cursor.getPageRow()).asTimestamp());
         }
 
         return null;
@@ -322,10 +343,10 @@ public class HiveResultSet extends AbstractResultSet {
 
     @Override
     public byte getByte(int columnIndex) throws SQLException {
-        Row row = currentRow.get();
+        ColumnData columnData = getColumnData(columnIndex);
 
-        if (row != null) {
-            return checkValue(row.getColumn(columnIndex).asByte());
+        if (columnData != null) {
+            return columnData.getByte(cursor.getPageRow());
         }
 
         return 0;
@@ -339,10 +360,10 @@ public class HiveResultSet extends AbstractResultSet {
 
     @Override
     public byte[] getBytes(int columnIndex) throws SQLException {
-        Row row = currentRow.get();
+        ColumnData columnData = getColumnData(columnIndex);
 
-        if (row != null) {
-            return checkValue(checkValue(row.getColumn(columnIndex).asByteArray()));
+        if (columnData != null) {
+            return checkValue(columnData.getColumn(cursor.getPageRow()).asByteArray());
         }
 
         return null;
@@ -356,10 +377,10 @@ public class HiveResultSet extends AbstractResultSet {
 
     @Override
     public InputStream getBinaryStream(int columnIndex) throws SQLException {
-        Row row = currentRow.get();
+        ColumnData columnData = getColumnData(columnIndex);
 
-        if (row != null) {
-            return checkValue(row.getColumn(columnIndex).asInputStream());
+        if (columnData != null) {
+            return checkValue(columnData.getColumn(cursor.getPageRow()).asInputStream());
         }
 
         return null;
@@ -373,10 +394,10 @@ public class HiveResultSet extends AbstractResultSet {
 
     @Override
     public Time getTime(int columnIndex) throws SQLException {
-        Row row = currentRow.get();
+        ColumnData columnData = getColumnData(columnIndex);
 
-        if (row != null) {
-            return checkValue(row.getColumn(columnIndex).asTime());
+        if (columnData != null) {
+            return checkValue(columnData.getColumn(cursor.getPageRow()).asTime());
         }
 
         return null;
@@ -389,13 +410,11 @@ public class HiveResultSet extends AbstractResultSet {
 
     @Override
     public boolean next() throws SQLException {
-        if (!iterator.hasNext() || (maxRows > 0 && rowCount.get() >= maxRows)) {
-            currentRow.set(null);
+        if ((maxRows > 0 && rowCount.get() >= maxRows) || !cursor.next()) {
+            cursor.close();
             return false;
         }
 
-        currentRow.set(iterator.next());
-
         rowCount.incrementAndGet();
 
         return true;
@@ -460,6 +479,9 @@ public class HiveResultSet extends AbstractResultSet {
         private int maxRows = -1;
         private int fetchSize = -1;
         private int fetchDirection = FETCH_FORWARD;
+        private int prefetchDepth = 0;
+        private int prefetchMaxBytes = -1;
+        private Properties properties;
         private int resultSetType = ResultSet.TYPE_FORWARD_ONLY;
         private int resultSetConcurrency = ResultSet.CONCUR_READ_ONLY;
         private int resultSetHoldability = ResultSet.CLOSE_CURSORS_AT_COMMIT;
@@ -479,6 +501,21 @@ public class HiveResultSet extends AbstractResultSet {
         }
 
 
+        public HiveResultSetBuilder properties(Properties properties) {
+            this.properties = properties;
+            return this;
+        }
+
+        public HiveResultSetBuilder prefetchDepth(int prefetchDepth) {
+            this.prefetchDepth = prefetchDepth;
+            return this;
+        }
+
+        public HiveResultSetBuilder prefetchMaxBytes(int prefetchMaxBytes) {
+            this.prefetchMaxBytes = prefetchMaxBytes;
+            return this;
+        }
+
         public HiveResultSetBuilder maxRows(int maxRows) {
             this.maxRows = maxRows;
             return this;
@@ -528,11 +565,23 @@ public class HiveResultSet extends AbstractResultSet {
                 fetchSize = maxRows;
             }
 
-            log.trace("maxRows {}, fetchSize {}, fetchDirection {}, resultSetType {}, resultSetConcurrency {}, resultSetHoldability {}", maxRows, fetchSize, fetchDirection, resultSetType, resultSetConcurrency, resultSetHoldability);
+            log.trace("maxRows {}, fetchSize {}, fetchDirection {}, resultSetType {}, resultSetConcurrency {}, resultSetHoldability {}, prefetchDepth {}", maxRows, fetchSize, fetchDirection, resultSetType, resultSetConcurrency, resultSetHoldability, prefetchDepth);
+
+            FetchSizeTuner fetchSizeTuner = null;
+
+            if (properties != null && HiveDriverProperty.FETCH_SIZE_ADAPTIVE_ENABLED.getBoolean(properties)) {
+                fetchSizeTuner = FetchSizeTuner.builder().properties(properties).fetchSize(fetchSize).maxRows(maxRows).build();
+            }
+
+            Iterator<ColumnBasedSet> pages = new FetchIterator(thriftOperation, TFetchOrientation.FETCH_NEXT, fetchSize, fetchSizeTuner);
+
+            if (prefetchDepth > 0) {
+                pages = new PrefetchIterator(pages, prefetchDepth, prefetchMaxBytes > 0 ? prefetchMaxBytes : Long.MAX_VALUE);
+            }
 
-            ResultSetIterator iterator = new ResultSetIterator(new FetchIterator(thriftOperation, TFetchOrientation.FETCH_NEXT, fetchSize), fetchSize);
+            ResultSetCursor cursor = new ResultSetCursor(pages);
 
-            return new HiveResultSet(thriftOperation, statement, iterator,
+            return new HiveResultSet(thriftOperation, statement, cursor,
                     maxRows,
                     fetchSize,
                     fetchDirection,
@@ -27,6 +27,9 @@ import veil.hdp.hive.jdbc.utils.DriverUtils;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLWarning;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class HiveStatement extends AbstractStatement {
@@ -40,16 +43,17 @@ public class HiveStatement extends AbstractStatement {
     private final int resultSetConcurrency;
     private final int resultSetHoldability;
     private final AtomicBoolean closed = new AtomicBoolean(true);
-    // private
-    private ThriftOperation thriftOperation = null;
+    // private; set from the status poll thread by executeAsync
+    private volatile ThriftOperation thriftOperation = null;
+    private volatile CompletableFuture<ThriftOperation> pendingOperation = null;
     // public getter & setter
     private int queryTimeout;
     private int maxRows;
     private int fetchSize;
     private int fetchDirection;
     private SQLWarning sqlWarning;
-    private int updateCount = -1;
-    private ResultSet resultSet;
+    private volatile int updateCount = -1;
+    private volatile ResultSet resultSet;
 
 
     HiveStatement(HiveConnection connection, ThriftSession thriftSession, int resultSetType, int resultSetConcurrency, int resultSetHoldability) {
@@ -81,16 +85,7 @@ public class HiveStatement extends AbstractStatement {
 
         if (thriftOperation.hasResultSet()) {
 
-            resultSet = HiveResultSet.builder()
-                    .thriftOperation(thriftOperation)
-                    .statement(this)
-                    .resultSetConcurrency(resultSetConcurrency)
-                    .resultSetHoldability(resultSetHoldability)
-                    .resultSetType(resultSetType)
-                    .fetchDirection(fetchDirection)
-                    .fetchSize(fetchSize)
-                    .maxRows(maxRows)
-                    .build();
+            resultSet = buildResultSet(thriftOperation);
 
             return true;
         } else {
@@ -102,6 +97,91 @@ public class HiveStatement extends AbstractStatement {
 
     }
 
+    /**
+     * Executes a query without blocking the caller while HS2 runs it.  The returned future completes with the ResultSet
+     * once the query finishes; waiting statements share a small pool of threads that poll HS2 for status.  The future
+     * completes exceptionally if the statement does not return a result set.  Cancelling the future cancels the query.
+     * Obtain this method with {@code statement.unwrap(HiveStatement.class)}.
+     *
+     * @param sql the query to execute
+     * @return future completed with the query's ResultSet
+     * @throws SQLException if the statement is closed
+     */
+    public CompletableFuture<ResultSet> executeAsync(String sql) throws SQLException {
+
+        if (isClosed()) {
+            throw new HiveSQLException("Cannot 'executeAsync' Statement.  Statement is closed.");
+        }
+
+        closeOperation();
+
+        CompletableFuture<ThriftOperation> operationFuture = thriftSession.executeSqlAsync(sql, queryTimeout);
+
+        pendingOperation = operationFuture;
+
+        CompletableFuture<ResultSet> future = operationFuture.thenApply(operation -> {
+
+            thriftOperation = operation;
+
+            if (!operation.hasResultSet()) {
+                updateCount = operation.getModifiedCount();
+
+                throw new CompletionException(new HiveSQLException("The query returned a modified count (update) when a result set (query) was expected"));
+            }
+
+            resultSet = buildResultSet(operation);
+
+            return resultSet;
+        });
+
+        future.whenComplete((rs, throwable) -> {
+            if (throwable instanceof CancellationException) {
+                operationFuture.cancel(false);
+            }
+        });
+
+        return future;
+    }
+
+    private ResultSet buildResultSet(ThriftOperation operation) {
+        return HiveResultSet.builder()
+                .thriftOperation(operation)
+                .statement(this)
+                .resultSetConcurrency(resultSetConcurrency)
+                .resultSetHoldability(resultSetHoldability)
+                .resultSetType(resultSetType)
+                .fetchDirection(fetchDirection)
+                .fetchSize(fetchSize)
+                .maxRows(maxRows)
+                .properties(thriftSession.getProperties())
+                .prefetchDepth(HiveDriverProperty.FETCH_PREFETCH_DEPTH.getInt(thriftSession.getProperties()))
+                .prefetchMaxBytes(HiveDriverProperty.FETCH_PREFETCH_MAX_BYTES.getInt(thriftSession.getProperties()))
+                .build();
+    }
+
+    private void closeOperation() {
+
+        CompletableFuture<ThriftOperation> pending = pendingOperation;
+
+        if (pending != null && !pending.isDone()) {
+            pending.cancel(false);
+        }
+
+        pendingOperation = null;
+
+        if (resultSet != null) {
+            DriverUtils.close(resultSet);
+            resultSet = null;
+        }
+
+        if (thriftOperation != null && thriftOperation.isOpen()) {
+            DriverUtils.close(thriftOperation);
+        }
+
+        thriftOperation = null;
+        updateCount = -1;
+    }
+
     @Override
     public ResultSet executeQuery(String sql) throws SQLException {
         boolean result = execute(sql);
@@ -187,6 +267,12 @@ public class HiveStatement extends AbstractStatement {
             throw new HiveSQLException("Cannot 'cancel' Statement.  Connection is closed.");
         }
 
+        CompletableFuture<ThriftOperation> pending = pendingOperation;
+
+        if (pending != null && !pending.isDone()) {
+            pending.cancel(false);
+        }
+
         if (thriftOperation != null) {
             thriftOperation.cancel();
         }
@@ -229,6 +315,12 @@ public class HiveStatement extends AbstractStatement {
 
             log.trace("attempting to close {}", this.getClass().getName());
 
+            CompletableFuture<ThriftOperation> pending = pendingOperation;
+
+            if (pending != null && !pending.isDone()) {
+                pending.cancel(false);
+            }
+
             if (thriftOperation != null && thriftOperation.isOpen()) {
                 DriverUtils.close(thriftOperation);
             }
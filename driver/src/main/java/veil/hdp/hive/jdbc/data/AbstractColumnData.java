@@ -19,19 +19,22 @@ package veil.hdp.hive.jdbc.data;
 import veil.hdp.hive.jdbc.metadata.ColumnDescriptor;
 
 import java.util.BitSet;
-import java.util.List;
 
-public abstract class AbstractColumnData<T> implements ColumnData {
+/**
+ * Base class for a single column of a fetched page.  Subclasses own the backing storage; numeric types are kept in
+ * primitive arrays so a page does not hold one boxed object per cell.
+ */
+public abstract class AbstractColumnData implements ColumnData {
 
     private final ColumnDescriptor descriptor;
-    private final List<T> values;
     private final BitSet nulls;
+    private final boolean hasNulls;
     private final int rowCount;
 
-    AbstractColumnData(ColumnDescriptor descriptor, List<T> values, BitSet nulls, int rowCount) {
+    AbstractColumnData(ColumnDescriptor descriptor, BitSet nulls, int rowCount) {
         this.descriptor = descriptor;
-        this.values = values;
         this.nulls = nulls;
+        this.hasNulls = !nulls.isEmpty();
         this.rowCount = rowCount;
     }
 
@@ -39,16 +42,10 @@ public abstract class AbstractColumnData<T> implements ColumnData {
         return descriptor;
     }
 
-    T getValue(int row) {
-        if (isNull(row)) {
-            return null;
-        }
-
-        return values.get(row);
-    }
-
-    private boolean isNull(int row) {
-        return nulls.get(row);
+    @Override
+    public boolean isNull(int row) {
+        // most columns have no nulls at all; skip the bitmap lookup for them
+        return hasNulls && nulls.get(row);
     }
 
     @Override
@@ -22,13 +22,30 @@ import java.nio.ByteBuffer;
 import java.util.BitSet;
 import java.util.List;
 
-class BinaryColumnData extends AbstractColumnData<ByteBuffer> {
+class BinaryColumnData extends AbstractColumnData {
+
+    private static final int BUFFER_OVERHEAD = 64;
+
+    private final List<ByteBuffer> values;
+
     BinaryColumnData(ColumnDescriptor descriptor, List<ByteBuffer> values, BitSet nulls, int rowCount) {
-        super(descriptor, values, nulls, rowCount);
+        super(descriptor, nulls, rowCount);
+        this.values = values;
     }
 
     @Override
     public Column getColumn(int row) {
-        return new BinaryColumn(getValue(row));
+        return new BinaryColumn(isNull(row) ? null : values.get(row));
+    }
+
+    @Override
+    public long getEstimatedSize() {
+        long size = 0;
+
+        for (ByteBuffer value : values) {
+            size += BUFFER_OVERHEAD + value.remaining();
+        }
+
+        return size;
     }
 }
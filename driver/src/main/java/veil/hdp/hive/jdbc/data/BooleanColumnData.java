@@ -19,16 +19,28 @@ package veil.hdp.hive.jdbc.data;
 import veil.hdp.hive.jdbc.metadata.ColumnDescriptor;
 
 import java.util.BitSet;
-import java.util.List;
 
-class BooleanColumnData extends AbstractColumnData<Boolean> {
+class BooleanColumnData extends AbstractColumnData {
 
-    BooleanColumnData(ColumnDescriptor descriptor, List<Boolean> values, BitSet nulls, int rowCount) {
-        super(descriptor, values, nulls, rowCount);
+    private final boolean[] values;
+
+    BooleanColumnData(ColumnDescriptor descriptor, boolean[] values, BitSet nulls, int rowCount) {
+        super(descriptor, nulls, rowCount);
+        this.values = values;
     }
 
     @Override
     public Column getColumn(int row) {
-        return new BooleanColumn(getValue(row));
+        return new BooleanColumn(isNull(row) ? null : values[row]);
+    }
+
+    @Override
+    public boolean getBoolean(int row) {
+        return values[row];
+    }
+
+    @Override
+    public long getEstimatedSize() {
+        return (long) values.length * 1;
     }
 }
@@ -19,15 +19,28 @@ package veil.hdp.hive.jdbc.data;
 import veil.hdp.hive.jdbc.metadata.ColumnDescriptor;
 
 import java.util.BitSet;
-import java.util.List;
 
-class ByteColumnData extends AbstractColumnData<Byte> {
-    ByteColumnData(ColumnDescriptor descriptor, List<Byte> values, BitSet nulls, int rowCount) {
-        super(descriptor, values, nulls, rowCount);
+class ByteColumnData extends AbstractColumnData {
+
+    private final byte[] values;
+
+    ByteColumnData(ColumnDescriptor descriptor, byte[] values, BitSet nulls, int rowCount) {
+        super(descriptor, nulls, rowCount);
+        this.values = values;
     }
 
     @Override
     public Column getColumn(int row) {
-        return new ByteColumn(getValue(row));
+        return new ByteColumn(isNull(row) ? null : values[row]);
+    }
+
+    @Override
+    public byte getByte(int row) {
+        return values[row];
+    }
+
+    @Override
+    public long getEstimatedSize() {
+        return (long) values.length * Byte.BYTES;
     }
 }
@@ -16,6 +16,12 @@
 
 package veil.hdp.hive.jdbc.data;
 
+import com.google.common.primitives.Booleans;
+import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Doubles;
+import com.google.common.primitives.Ints;
+import com.google.common.primitives.Longs;
+import com.google.common.primitives.Shorts;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import veil.hdp.hive.jdbc.Builder;
@@ -23,6 +29,7 @@ import veil.hdp.hive.jdbc.bindings.*;
 import veil.hdp.hive.jdbc.metadata.ColumnDescriptor;
 import veil.hdp.hive.jdbc.metadata.Schema;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.Iterator;
@@ -30,20 +37,31 @@ import java.util.List;
 
 public class ColumnBasedSet {
 
-    private static final byte[] MASKS = {
-            (byte) 0x01, (byte) 0x02, (byte) 0x04, (byte) 0x08, (byte) 0x10, (byte) 0x20, (byte) 0x40, (byte) 0x80
-    };
-
     private static final Logger log = LogManager.getLogger(ColumnBasedSet.class);
 
     private final int rowCount;
     private final List<ColumnData> columns;
 
-    private ColumnBasedSet(int rowCount, List<ColumnData> columns) {
+    private long estimatedSize = -1;
+
+    ColumnBasedSet(int rowCount, List<ColumnData> columns) {
         this.rowCount = rowCount;
         this.columns = columns;
     }
 
+    /*
+        the thrift null bitmap is little-endian within each byte (bit 0 of byte 0 is row 0), which is the same layout
+        BitSet.valueOf uses, so the bytes are copied into the BitSet's words directly instead of bit by bit.
+     */
+    static BitSet buildBitSet(ByteBuffer nulls) {
+        return BitSet.valueOf(nulls);
+    }
+
+    // getNulls() hands back the decoded array itself; bufferForNulls() would copy it first
+    static BitSet buildBitSet(byte[] nulls) {
+        return BitSet.valueOf(nulls);
+    }
+
     public static ColumnBasedSetBuilder builder() {
         return new ColumnBasedSetBuilder();
     }
@@ -60,32 +78,26 @@ public class ColumnBasedSet {
         return columns.size();
     }
 
-    public static class ColumnBasedSetBuilder implements Builder<ColumnBasedSet> {
+    public long getEstimatedSize() {
+        if (estimatedSize < 0) {
+            long size = 0;
 
-        private TRowSet rowSet;
-        private Schema schema;
+            for (ColumnData column : columns) {
+                size += column.getEstimatedSize();
+            }
 
-        private ColumnBasedSetBuilder() {
+            estimatedSize = size;
         }
 
-        private static BitSet buildBitSet(byte[] nulls) {
-            int nullsLength = nulls.length;
-            int bitsLength = nullsLength * 8;
-
-            BitSet bitset = new BitSet(bitsLength);
-
-            for (int i = 0; i < bitsLength; i++) {
-                int nullIndex = i / 8;
-                int maskIndex = i % 8;
+        return estimatedSize;
+    }
 
-                byte aNull = nulls[nullIndex];
-                byte mask = MASKS[maskIndex];
+    public static class ColumnBasedSetBuilder implements Builder<ColumnBasedSet> {
 
-                boolean isNull = ((int) aNull & (int) mask) != 0;
-                bitset.set(i, isNull);
-            }
+        private TRowSet rowSet;
+        private Schema schema;
 
-            return bitset;
+        private ColumnBasedSetBuilder() {
         }
 
         public ColumnBasedSetBuilder rowSet(TRowSet tRowSet) {
@@ -116,22 +128,22 @@ public class ColumnBasedSet {
 
                 if (column.isSetBoolVal()) {
                     TBoolColumn boolVal = column.getBoolVal();
-                    columns.add(new BooleanColumnData(columnDescriptor, boolVal.getValues(), buildBitSet(boolVal.getNulls()), boolVal.getValuesSize()));
+                    columns.add(new BooleanColumnData(columnDescriptor, Booleans.toArray(boolVal.getValues()), buildBitSet(boolVal.getNulls()), boolVal.getValuesSize()));
                 } else if (column.isSetByteVal()) {
                     TByteColumn byteVal = column.getByteVal();
-                    columns.add(new ByteColumnData(columnDescriptor, byteVal.getValues(), buildBitSet(byteVal.getNulls()), byteVal.getValuesSize()));
+                    columns.add(new ByteColumnData(columnDescriptor, Bytes.toArray(byteVal.getValues()), buildBitSet(byteVal.getNulls()), byteVal.getValuesSize()));
                 } else if (column.isSetI16Val()) {
                     TI16Column i16Val = column.getI16Val();
-                    columns.add(new ShortColumnData(columnDescriptor, i16Val.getValues(), buildBitSet(i16Val.getNulls()), i16Val.getValuesSize()));
+                    columns.add(new ShortColumnData(columnDescriptor, Shorts.toArray(i16Val.getValues()), buildBitSet(i16Val.getNulls()), i16Val.getValuesSize()));
                 } else if (column.isSetI32Val()) {
                     TI32Column i32Val = column.getI32Val();
-                    columns.add(new IntegerColumnData(columnDescriptor, i32Val.getValues(), buildBitSet(i32Val.getNulls()), i32Val.getValuesSize()));
+                    columns.add(new IntegerColumnData(columnDescriptor, Ints.toArray(i32Val.getValues()), buildBitSet(i32Val.getNulls()), i32Val.getValuesSize()));
                 } else if (column.isSetI64Val()) {
                     TI64Column i64Val = column.getI64Val();
-                    columns.add(new LongColumnData(columnDescriptor, i64Val.getValues(), buildBitSet(i64Val.getNulls()), i64Val.getValuesSize()));
+                    columns.add(new LongColumnData(columnDescriptor, Longs.toArray(i64Val.getValues()), buildBitSet(i64Val.getNulls()), i64Val.getValuesSize()));
                 } else if (column.isSetDoubleVal()) {
                     TDoubleColumn doubleVal = column.getDoubleVal();
-                    columns.add(new DoubleColumnData(columnDescriptor, doubleVal.getValues(), buildBitSet(doubleVal.getNulls()), doubleVal.getValuesSize()));
+                    columns.add(new DoubleColumnData(columnDescriptor, Doubles.toArray(doubleVal.getValues()), buildBitSet(doubleVal.getNulls()), doubleVal.getValuesSize()));
                 } else if (column.isSetBinaryVal()) {
                     TBinaryColumn binaryVal = column.getBinaryVal();
                     columns.add(new BinaryColumnData(columnDescriptor, binaryVal.getValues(), buildBitSet(binaryVal.getNulls()), binaryVal.getValuesSize()));
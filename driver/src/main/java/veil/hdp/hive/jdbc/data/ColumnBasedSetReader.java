@@ -0,0 +1,288 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc.data;
+
+import org.apache.thrift.TBaseHelper;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.*;
+import veil.hdp.hive.jdbc.metadata.ColumnDescriptor;
+import veil.hdp.hive.jdbc.metadata.Schema;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Decodes a {@code TRowSet} struct directly from the wire into {@link ColumnData} buffers.  This produces the same
+ * {@link ColumnBasedSet} as {@link ColumnBasedSet.ColumnBasedSetBuilder} without materializing the intermediate
+ * {@code TColumn}, {@code TI64Column}, {@code TStringColumn}, etc. objects or the boxed value lists they contain.
+ * <p>
+ * Field ids mirror {@code TCLIService.thrift}; unknown fields (including the legacy row based {@code rows} list and
+ * the serialized {@code binaryColumns}) are skipped.
+ */
+public final class ColumnBasedSetReader {
+
+    // TRowSet
+    private static final short ROW_SET_COLUMNS = 3;
+
+    // TColumn union
+    private static final short BOOL_VAL = 1;
+    private static final short BYTE_VAL = 2;
+    private static final short I16_VAL = 3;
+    private static final short I32_VAL = 4;
+    private static final short I64_VAL = 5;
+    private static final short DOUBLE_VAL = 6;
+    private static final short STRING_VAL = 7;
+    private static final short BINARY_VAL = 8;
+
+    // T*Column
+    private static final short VALUES = 1;
+    private static final short NULLS = 2;
+
+    private static final ValuesReader<boolean[]> BOOLEAN_VALUES = (iprot, size) -> {
+        boolean[] values = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = iprot.readBool();
+        }
+        return values;
+    };
+
+    private static final ValuesReader<byte[]> BYTE_VALUES = (iprot, size) -> {
+        byte[] values = new byte[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = iprot.readByte();
+        }
+        return values;
+    };
+
+    private static final ValuesReader<short[]> SHORT_VALUES = (iprot, size) -> {
+        short[] values = new short[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = iprot.readI16();
+        }
+        return values;
+    };
+
+    private static final ValuesReader<int[]> INT_VALUES = (iprot, size) -> {
+        int[] values = new int[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = iprot.readI32();
+        }
+        return values;
+    };
+
+    private static final ValuesReader<long[]> LONG_VALUES = (iprot, size) -> {
+        long[] values = new long[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = iprot.readI64();
+        }
+        return values;
+    };
+
+    private static final ValuesReader<double[]> DOUBLE_VALUES = (iprot, size) -> {
+        double[] values = new double[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = iprot.readDouble();
+        }
+        return values;
+    };
+
+    private static final ValuesReader<List<String>> STRING_VALUES = (iprot, size) -> {
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(iprot.readString());
+        }
+        return values;
+    };
+
+    private static final ValuesReader<List<ByteBuffer>> BINARY_VALUES = (iprot, size) -> {
+        List<ByteBuffer> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            // readBinary can return a view over the transport's frame buffer; BinaryColumn hands out the backing array so copy
+            values.add(ByteBuffer.wrap(TBaseHelper.byteBufferToByteArray(iprot.readBinary())));
+        }
+        return values;
+    };
+
+    private ColumnBasedSetReader() {
+    }
+
+    /**
+     * Reads one {@code TRowSet} struct from the protocol.
+     *
+     * @param iprot  protocol positioned at the beginning of the struct
+     * @param schema schema of the operation; used to resolve the descriptor of each column
+     * @return the decoded page or null if the row set contains no columns
+     * @throws TException if the payload cannot be read
+     */
+    public static ColumnBasedSet read(TProtocol iprot, Schema schema) throws TException {
+
+        List<ColumnData> columns = null;
+
+        iprot.readStructBegin();
+
+        while (true) {
+            TField field = iprot.readFieldBegin();
+
+            if (field.type == TType.STOP) {
+                break;
+            }
+
+            if (field.id == ROW_SET_COLUMNS && field.type == TType.LIST) {
+                columns = readColumns(iprot, schema);
+            } else {
+                TProtocolUtil.skip(iprot, field.type);
+            }
+
+            iprot.readFieldEnd();
+        }
+
+        iprot.readStructEnd();
+
+        if (columns == null || columns.isEmpty()) {
+            return null;
+        }
+
+        return new ColumnBasedSet(columns.get(0).getRowCount(), columns);
+    }
+
+    private static List<ColumnData> readColumns(TProtocol iprot, Schema schema) throws TException {
+
+        TList list = iprot.readListBegin();
+
+        List<ColumnData> columns = new ArrayList<>(list.size);
+
+        for (int i = 0; i < list.size; i++) {
+            columns.add(readColumn(iprot, schema.getColumn(i + 1)));
+        }
+
+        iprot.readListEnd();
+
+        return columns;
+    }
+
+    private static ColumnData readColumn(TProtocol iprot, ColumnDescriptor descriptor) throws TException {
+
+        ColumnData columnData = null;
+
+        iprot.readStructBegin();
+
+        while (true) {
+            TField field = iprot.readFieldBegin();
+
+            if (field.type == TType.STOP) {
+                break;
+            }
+
+            if (field.type != TType.STRUCT) {
+                TProtocolUtil.skip(iprot, field.type);
+            } else {
+                switch (field.id) {
+                    case BOOL_VAL:
+                        columnData = readColumnValues(iprot, descriptor, BOOLEAN_VALUES, BooleanColumnData::new);
+                        break;
+                    case BYTE_VAL:
+                        columnData = readColumnValues(iprot, descriptor, BYTE_VALUES, ByteColumnData::new);
+                        break;
+                    case I16_VAL:
+                        columnData = readColumnValues(iprot, descriptor, SHORT_VALUES, ShortColumnData::new);
+                        break;
+                    case I32_VAL:
+                        columnData = readColumnValues(iprot, descriptor, INT_VALUES, IntegerColumnData::new);
+                        break;
+                    case I64_VAL:
+                        columnData = readColumnValues(iprot, descriptor, LONG_VALUES, LongColumnData::new);
+                        break;
+                    case DOUBLE_VAL:
+                        columnData = readColumnValues(iprot, descriptor, DOUBLE_VALUES, DoubleColumnData::new);
+                        break;
+                    case STRING_VAL:
+                        columnData = readColumnValues(iprot, descriptor, STRING_VALUES, StringColumnData::new);
+                        break;
+                    case BINARY_VAL:
+                        columnData = readColumnValues(iprot, descriptor, BINARY_VALUES, BinaryColumnData::new);
+                        break;
+                    default:
+                        TProtocolUtil.skip(iprot, field.type);
+                }
+            }
+
+            iprot.readFieldEnd();
+        }
+
+        iprot.readStructEnd();
+
+        if (columnData == null) {
+            throw new TProtocolException("TColumn for [" + descriptor.getName() + "] did not contain a value");
+        }
+
+        return columnData;
+    }
+
+    private static <A> ColumnData readColumnValues(TProtocol iprot, ColumnDescriptor descriptor, ValuesReader<A> valuesReader, ColumnDataFactory<A> factory) throws TException {
+
+        A values = null;
+        int rowCount = 0;
+        BitSet nulls = null;
+
+        iprot.readStructBegin();
+
+        while (true) {
+            TField field = iprot.readFieldBegin();
+
+            if (field.type == TType.STOP) {
+                break;
+            }
+
+            if (field.id == VALUES && field.type == TType.LIST) {
+                TList list = iprot.readListBegin();
+                rowCount = list.size;
+                values = valuesReader.read(iprot, rowCount);
+                iprot.readListEnd();
+            } else if (field.id == NULLS && field.type == TType.STRING) {
+                nulls = ColumnBasedSet.buildBitSet(iprot.readBinary());
+            } else {
+                TProtocolUtil.skip(iprot, field.type);
+            }
+
+            iprot.readFieldEnd();
+        }
+
+        iprot.readStructEnd();
+
+        if (values == null) {
+            throw new TProtocolException("Required field 'values' was not present! column [" + descriptor.getName() + ']');
+        }
+
+        if (nulls == null) {
+            throw new TProtocolException("Required field 'nulls' was not present! column [" + descriptor.getName() + ']');
+        }
+
+        return factory.create(descriptor, values, nulls, rowCount);
+    }
+
+    @FunctionalInterface
+    private interface ValuesReader<A> {
+        A read(TProtocol iprot, int size) throws TException;
+    }
+
+    @FunctionalInterface
+    private interface ColumnDataFactory<A> {
+        ColumnData create(ColumnDescriptor descriptor, A values, BitSet nulls, int rowCount);
+    }
+}
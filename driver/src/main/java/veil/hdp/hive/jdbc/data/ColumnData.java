@@ -16,8 +16,55 @@
 
 package veil.hdp.hive.jdbc.data;
 
+import java.sql.SQLException;
+
 public interface ColumnData {
     Column getColumn(int row);
 
     int getRowCount();
+
+    boolean isNull(int row);
+
+    /**
+     * @return rough number of bytes held by the column's values; used to bound how much fetched data is kept in memory
+     */
+    long getEstimatedSize();
+
+    /*
+        typed reads used by the result set cursor so a getter does not have to materialize a Column.  callers are
+        expected to check isNull(row) first.  the defaults go through getColumn(row) so conversions stay identical
+        to the Column implementations; subclasses override the reads that map directly onto their storage.
+     */
+
+    default boolean getBoolean(int row) throws SQLException {
+        return getColumn(row).asBoolean();
+    }
+
+    default byte getByte(int row) throws SQLException {
+        return getColumn(row).asByte();
+    }
+
+    default short getShort(int row) throws SQLException {
+        return getColumn(row).asShort();
+    }
+
+    default int getInt(int row) throws SQLException {
+        return getColumn(row).asInt();
+    }
+
+    default long getLong(int row) throws SQLException {
+        return getColumn(row).asLong();
+    }
+
+    default float getFloat(int row) throws SQLException {
+        return getColumn(row).asFloat();
+    }
+
+    default double getDouble(int row) throws SQLException {
+        return getColumn(row).asDouble();
+    }
+
+    default String getString(int row) throws SQLException {
+        return getColumn(row).asString();
+    }
 }
@@ -17,30 +17,56 @@
 package veil.hdp.hive.jdbc.data;
 
 import veil.hdp.hive.jdbc.metadata.ColumnDescriptor;
-import veil.hdp.hive.jdbc.metadata.HiveType;
 
+import java.sql.SQLException;
 import java.util.BitSet;
-import java.util.List;
 
 import static veil.hdp.hive.jdbc.metadata.HiveType.FLOAT;
 
-class DoubleColumnData extends AbstractColumnData<Double> {
-    DoubleColumnData(ColumnDescriptor descriptor, List<Double> values, BitSet nulls, int rowCount) {
-        super(descriptor, values, nulls, rowCount);
+class DoubleColumnData extends AbstractColumnData {
+
+    private final double[] values;
+    private final boolean floatType;
+
+    DoubleColumnData(ColumnDescriptor descriptor, double[] values, BitSet nulls, int rowCount) {
+        super(descriptor, nulls, rowCount);
+        this.values = values;
+        this.floatType = descriptor.getColumnType().getHiveType() == FLOAT;
     }
 
     @Override
     public Column getColumn(int row) {
 
-        HiveType doubleType = getDescriptor().getColumnType().getHiveType();
+        boolean isNull = isNull(row);
 
-        Double value = getValue(row);
-
-        if (doubleType == FLOAT) {
-            return new FloatColumn(value == null ? null : value.floatValue());
+        if (floatType) {
+            return new FloatColumn(isNull ? null : (float) values[row]);
         } else {
-            return new DoubleColumn(value);
+            return new DoubleColumn(isNull ? null : values[row]);
+        }
+
+    }
+
+    @Override
+    public float getFloat(int row) throws SQLException {
+        if (floatType) {
+            return (float) values[row];
         }
 
+        return super.getFloat(row);
+    }
+
+    @Override
+    public double getDouble(int row) throws SQLException {
+        if (floatType) {
+            return super.getDouble(row);
+        }
+
+        return values[row];
+    }
+
+    @Override
+    public long getEstimatedSize() {
+        return (long) values.length * Double.BYTES;
     }
 }
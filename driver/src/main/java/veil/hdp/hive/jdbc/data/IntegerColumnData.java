@@ -19,15 +19,28 @@ package veil.hdp.hive.jdbc.data;
 import veil.hdp.hive.jdbc.metadata.ColumnDescriptor;
 
 import java.util.BitSet;
-import java.util.List;
 
-class IntegerColumnData extends AbstractColumnData<Integer> {
-    IntegerColumnData(ColumnDescriptor descriptor, List<Integer> values, BitSet nulls, int rowCount) {
-        super(descriptor, values, nulls, rowCount);
+class IntegerColumnData extends AbstractColumnData {
+
+    private final int[] values;
+
+    IntegerColumnData(ColumnDescriptor descriptor, int[] values, BitSet nulls, int rowCount) {
+        super(descriptor, nulls, rowCount);
+        this.values = values;
     }
 
     @Override
     public Column getColumn(int row) {
-        return new IntegerColumn(getValue(row));
+        return new IntegerColumn(isNull(row) ? null : values[row]);
+    }
+
+    @Override
+    public int getInt(int row) {
+        return values[row];
+    }
+
+    @Override
+    public long getEstimatedSize() {
+        return (long) values.length * Integer.BYTES;
     }
 }
@@ -19,15 +19,28 @@ package veil.hdp.hive.jdbc.data;
 import veil.hdp.hive.jdbc.metadata.ColumnDescriptor;
 
 import java.util.BitSet;
-import java.util.List;
 
-class LongColumnData extends AbstractColumnData<Long> {
-    LongColumnData(ColumnDescriptor descriptor, List<Long> values, BitSet nulls, int rowCount) {
-        super(descriptor, values, nulls, rowCount);
+class LongColumnData extends AbstractColumnData {
+
+    private final long[] values;
+
+    LongColumnData(ColumnDescriptor descriptor, long[] values, BitSet nulls, int rowCount) {
+        super(descriptor, nulls, rowCount);
+        this.values = values;
     }
 
     @Override
     public Column getColumn(int row) {
-        return new LongColumn(getValue(row));
+        return new LongColumn(isNull(row) ? null : values[row]);
+    }
+
+    @Override
+    public long getLong(int row) {
+        return values[row];
+    }
+
+    @Override
+    public long getEstimatedSize() {
+        return (long) values.length * Long.BYTES;
     }
 }
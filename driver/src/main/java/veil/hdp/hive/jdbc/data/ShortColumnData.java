@@ -19,15 +19,28 @@ package veil.hdp.hive.jdbc.data;
 import veil.hdp.hive.jdbc.metadata.ColumnDescriptor;
 
 import java.util.BitSet;
-import java.util.List;
 
-class ShortColumnData extends AbstractColumnData<Short> {
-    ShortColumnData(ColumnDescriptor descriptor, List<Short> values, BitSet nulls, int rowCount) {
-        super(descriptor, values, nulls, rowCount);
+class ShortColumnData extends AbstractColumnData {
+
+    private final short[] values;
+
+    ShortColumnData(ColumnDescriptor descriptor, short[] values, BitSet nulls, int rowCount) {
+        super(descriptor, nulls, rowCount);
+        this.values = values;
     }
 
     @Override
     public Column getColumn(int row) {
-        return new ShortColumn(getValue(row));
+        return new ShortColumn(isNull(row) ? null : values[row]);
+    }
+
+    @Override
+    public short getShort(int row) {
+        return values[row];
+    }
+
+    @Override
+    public long getEstimatedSize() {
+        return (long) values.length * Short.BYTES;
     }
 }
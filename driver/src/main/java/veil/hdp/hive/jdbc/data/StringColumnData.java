@@ -21,36 +21,122 @@ import veil.hdp.hive.jdbc.metadata.HiveType;
 import veil.hdp.hive.jdbc.utils.SqlDateTimeUtils;
 
 import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.util.BitSet;
 import java.util.List;
 
 import static veil.hdp.hive.jdbc.metadata.HiveType.*;
 
-class StringColumnData extends AbstractColumnData<String> {
+class StringColumnData extends AbstractColumnData {
+
+    private static final int STRING_OVERHEAD = 40;
+
+    private final List<String> values;
+    private final HiveType stringType;
+
+    /*
+        DECIMAL, TIMESTAMP and DATE values arrive as strings.  they are parsed the first time a cell is read and kept
+        here so repeated reads of the same cell don't parse again; cells that are never read are never parsed.
+     */
+    private Object[] converted;
+
 
     StringColumnData(ColumnDescriptor descriptor, List<String> values, BitSet nulls, int rowCount) {
-        super(descriptor, values, nulls, rowCount);
+        super(descriptor, nulls, rowCount);
+        this.values = values;
+        this.stringType = descriptor.getColumnType().getHiveType();
     }
 
     @Override
     public Column getColumn(int row) {
 
-        HiveType stringType = getDescriptor().getColumnType().getHiveType();
+        if (isNull(row)) {
+            return emptyColumn();
+        }
 
-        String value = getValue(row);
+        String value = values.get(row);
 
         if (stringType == DECIMAL) {
-            return new DecimalColumn(value == null ? null : new BigDecimal(value));
+            return new DecimalColumn((BigDecimal) convert(row, value));
         } else if (stringType == CHAR) {
-            return new CharacterColumn(value == null ? null : value.charAt(0));
+            return new CharacterColumn(value.charAt(0));
         } else if (stringType == VARCHAR) {
             return new VarcharColumn(value);
         } else if (stringType == TIMESTAMP) {
-            return new TimestampColumn(value == null ? null : SqlDateTimeUtils.convertStringToTimestamp(value));
+            // java.sql.Timestamp and java.sql.Date are mutable; hand out copies so callers can't change the cached value
+            Timestamp timestamp = (Timestamp) convert(row, value);
+            Timestamp copy = new Timestamp(timestamp.getTime());
+            copy.setNanos(timestamp.getNanos());
+            return new TimestampColumn(copy);
         } else if (stringType == DATE) {
-            return new DateColumn(value == null ? null : SqlDateTimeUtils.convertStringToDate(value));
+            return new DateColumn(new Date(((Date) convert(row, value)).getTime()));
         } else {
             return new StringColumn(value);
         }
     }
+
+    @Override
+    public String getString(int row) throws SQLException {
+
+        // only these types convert the raw value; everything else is read as is
+        if (stringType == DECIMAL || stringType == CHAR || stringType == TIMESTAMP || stringType == DATE) {
+            return super.getString(row);
+        }
+
+        return values.get(row);
+    }
+
+    private Column emptyColumn() {
+        if (stringType == DECIMAL) {
+            return new DecimalColumn(null);
+        } else if (stringType == CHAR) {
+            return new CharacterColumn(null);
+        } else if (stringType == VARCHAR) {
+            return new VarcharColumn(null);
+        } else if (stringType == TIMESTAMP) {
+            return new TimestampColumn(null);
+        } else if (stringType == DATE) {
+            return new DateColumn(null);
+        } else {
+            return new StringColumn(null);
+        }
+    }
+
+    private Object convert(int row, String value) {
+
+        if (converted == null) {
+            converted = new Object[getRowCount()];
+        }
+
+        Object object = converted[row];
+
+        if (object == null) {
+
+            if (stringType == DECIMAL) {
+                object = new BigDecimal(value);
+            } else if (stringType == TIMESTAMP) {
+                object = SqlDateTimeUtils.convertStringToTimestamp(value);
+            } else {
+                object = SqlDateTimeUtils.convertStringToDate(value);
+            }
+
+            converted[row] = object;
+        }
+
+        return object;
+    }
+
+    @Override
+    public long getEstimatedSize() {
+        long size = 0;
+
+        for (String value : values) {
+            // two bytes per char plus the String and its backing array
+            size += STRING_OVERHEAD + value.length() * 2;
+        }
+
+        return size;
+    }
 }
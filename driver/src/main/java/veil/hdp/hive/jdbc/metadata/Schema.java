@@ -80,6 +80,8 @@ public class Schema {
 
         private List<ColumnDescriptor> columnDescriptors;
 
+        private TTableSchema tableSchema;
+
         private SchemaBuilder() {
         }
 
@@ -99,6 +101,14 @@ public class Schema {
             return this;
         }
 
+        /**
+         * Schema already returned by {@code GetResultSetMetadata}; no call is made when set.
+         */
+        public SchemaBuilder tableSchema(TTableSchema tableSchema) {
+            this.tableSchema = tableSchema;
+            return this;
+        }
+
         public Schema build() {
 
             Map<String, ColumnDescriptor> mapping;
@@ -112,7 +122,9 @@ public class Schema {
                 }
             } else {
 
-                TTableSchema tableSchema = getTableSchema(client, operationHandle);
+                if (tableSchema == null) {
+                    tableSchema = getTableSchema(client, operationHandle);
+                }
 
                 List<TColumnDesc> columns = tableSchema.getColumns();
 
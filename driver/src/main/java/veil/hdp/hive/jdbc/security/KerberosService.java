@@ -22,6 +22,7 @@ import org.apache.logging.log4j.Logger;
 import org.ietf.jgss.*;
 import veil.hdp.hive.jdbc.HiveDriverProperty;
 import veil.hdp.hive.jdbc.HiveException;
+import veil.hdp.hive.jdbc.utils.DriverUtils;
 import veil.hdp.hive.jdbc.utils.PlatformUtils;
 import veil.hdp.hive.jdbc.utils.PrincipalUtils;
 
@@ -30,9 +31,12 @@ import javax.security.auth.login.LoginContext;
 import javax.security.auth.login.LoginException;
 import java.security.AccessControlContext;
 import java.security.AccessController;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static javax.security.auth.login.AppConfigurationEntry.LoginModuleControlFlag.REQUIRED;
 
@@ -45,6 +49,8 @@ public final class KerberosService {
     private static final Oid MECHANISM = buildOid(KRB5_OID);
     private static final Oid NAME_TYPE = buildOid(KRB5_NAME_OID);
 
+    private static final Map<String, GSSName> SERVICE_NAMES = new ConcurrentHashMap<>();
+
     private KerberosService() {
     }
 
@@ -66,6 +72,18 @@ public final class KerberosService {
         return subject;
     }
 
+    private static GSSName getServiceName(GSSManager manager, String servicePrincipal) throws GSSException {
+
+        GSSName name = SERVICE_NAMES.get(servicePrincipal);
+
+        if (name == null) {
+            name = manager.createName(servicePrincipal, NAME_TYPE);
+            SERVICE_NAMES.put(servicePrincipal, name);
+        }
+
+        return name;
+    }
+
     public static byte[] getToken(ServicePrincipal servicePrincipal) {
 
         GSSContext context = null;
@@ -73,7 +91,7 @@ public final class KerberosService {
         try {
 
             GSSManager manager = GSSManager.getInstance();
-            GSSName name = manager.createName(servicePrincipal.toString(), NAME_TYPE);
+            GSSName name = getServiceName(manager, servicePrincipal.toString());
 
             context = manager.createContext(name, MECHANISM, null, GSSContext.DEFAULT_LIFETIME);
             context.requestMutualAuth(false);
@@ -102,11 +120,28 @@ public final class KerberosService {
 
         log.debug("kerberos mode [{}]", kerberosMode);
 
-        boolean debugJaas = HiveDriverProperty.JAAS_DEBUG_ENABLED.getBoolean(properties);
-
         if (kerberosMode == KerberosMode.PREAUTH) {
             return getPreAuthenticatedSubject();
-        } else if (kerberosMode == KerberosMode.OS) {
+        }
+
+        if (!HiveDriverProperty.KERBEROS_SUBJECT_CACHE_ENABLED.getBoolean(properties)) {
+            return login(properties, kerberosMode);
+        }
+
+        List<String> key = Arrays.asList(kerberosMode.name(),
+                HiveDriverProperty.JAAS_DEBUG_ENABLED.get(properties),
+                kerberosMode != KerberosMode.OS ? HiveDriverProperty.USER.get(properties) : null,
+                kerberosMode == KerberosMode.KEYTAB ? HiveDriverProperty.KERBEROS_USER_KEYTAB.get(properties) : null,
+                kerberosMode == KerberosMode.PASSWORD ? DriverUtils.digest(HiveDriverProperty.PASSWORD.get(properties)) : null);
+
+        return SubjectCache.get(key, () -> login(properties, kerberosMode));
+    }
+
+    private static Subject login(Properties properties, KerberosMode kerberosMode) throws LoginException {
+
+        boolean debugJaas = HiveDriverProperty.JAAS_DEBUG_ENABLED.getBoolean(properties);
+
+        if (kerberosMode == KerberosMode.OS) {
             return loginFromOperatingSystem(debugJaas);
         } else {
             UserPrincipal userPrincipal = PrincipalUtils.parseUserPrincipal(HiveDriverProperty.USER.get(properties));
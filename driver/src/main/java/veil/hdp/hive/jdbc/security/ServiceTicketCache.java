@@ -0,0 +1,130 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc.security;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import veil.hdp.hive.jdbc.utils.Constants;
+
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosTicket;
+import java.security.PrivilegedActionException;
+import java.security.PrivilegedExceptionAction;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds SPNEGO tokens so each {@link Subject} asks the KDC for a service ticket once per service principal.
+ * <p>
+ * A token holds a fresh authenticator and can't be replayed, so every request still builds its own.  The costly
+ * part is the service ticket behind it.  With {@code javax.security.auth.useSubjectCredsOnly} enabled, JGSS stores
+ * that ticket in the subject and reuses it until it expires.  When no valid ticket is present, one thread per
+ * subject and service principal fetches it while the others wait and then reuse it, so a burst of requests without
+ * the authentication cookie costs one KDC round trip instead of one per request.  Without subject credentials there
+ * is nothing to share and no thread waits.
+ */
+public final class ServiceTicketCache {
+
+    private static final Logger log = LogManager.getLogger(ServiceTicketCache.class);
+
+    // weak keys compare subjects by identity and let a dropped subject take its locks with it
+    private static final LoadingCache<Subject, Map<String, Object>> LOCKS = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build(CacheLoader.from(() -> new ConcurrentHashMap<>()));
+
+    private static final AtomicLong TOKENS = new AtomicLong();
+    private static final AtomicLong TICKET_REQUESTS = new AtomicLong();
+
+    private ServiceTicketCache() {
+    }
+
+    /**
+     * @param subject          logged in subject; the token is built as this subject
+     * @param servicePrincipal principal of the HS2 server
+     * @return SPNEGO token
+     * @throws PrivilegedActionException if the token can't be built
+     */
+    public static byte[] getToken(Subject subject, ServicePrincipal servicePrincipal) throws PrivilegedActionException {
+        return getToken(subject, servicePrincipal.toString(),
+                () -> Subject.doAs(subject, (PrivilegedExceptionAction<byte[]>) () -> KerberosService.getToken(servicePrincipal)));
+    }
+
+    /**
+     * @param subject logged in subject; holds the service ticket once {@code token} has fetched it
+     * @param server  name of the service principal
+     * @param token   builds the token as {@code subject}
+     * @return SPNEGO token
+     * @throws PrivilegedActionException if the token can't be built
+     */
+    public static byte[] getToken(Subject subject, String server, TokenBuilder token) throws PrivilegedActionException {
+
+        TOKENS.incrementAndGet();
+
+        // jgss only keeps service tickets in writable subjects when subject credentials are used
+        if (!useSubjectCredentials() || subject.isReadOnly() || hasTicket(subject, server)) {
+            return token.build();
+        }
+
+        synchronized (LOCKS.getUnchecked(subject).computeIfAbsent(server, k -> new Object())) {
+
+            if (hasTicket(subject, server)) {
+                return token.build();
+            }
+
+            log.debug("no service ticket for [{}] in subject; requesting one", server);
+
+            TICKET_REQUESTS.incrementAndGet();
+
+            return token.build();
+        }
+    }
+
+    public static long getTokens() {
+        return TOKENS.get();
+    }
+
+    /**
+     * @return number of tokens built without a cached service ticket, each of which cost a KDC round trip
+     */
+    public static long getTicketRequests() {
+        return TICKET_REQUESTS.get();
+    }
+
+    @FunctionalInterface
+    public interface TokenBuilder {
+        byte[] build() throws PrivilegedActionException;
+    }
+
+    private static boolean useSubjectCredentials() {
+        return !Boolean.FALSE.toString().equalsIgnoreCase(System.getProperty(Constants.JAVAX_SECURITY_AUTH_USE_SUBJECT_CREDS_ONLY));
+    }
+
+    private static boolean hasTicket(Subject subject, String server) {
+
+        for (KerberosTicket ticket : subject.getPrivateCredentials(KerberosTicket.class)) {
+            if (ticket.getServer() != null && server.equals(ticket.getServer().getName()) && ticket.isCurrent()) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
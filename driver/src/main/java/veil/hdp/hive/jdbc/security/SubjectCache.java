@@ -0,0 +1,225 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc.security;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.LoginException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process wide cache of logged in {@link Subject}s so a JAAS login, and its round trip to the KDC, happens once per
+ * principal instead of once per connection.  Concurrent callers for the same key wait for a single login.
+ * <p>
+ * Once 80% of the TGT's lifetime has passed the login is repeated on a background thread, so callers never wait on
+ * the KDC for an expiring ticket.  A subject nobody asked for since its last login is dropped instead of renewed.
+ * Subjects without a TGT, such as those from the operating system login modules, are kept as they are.
+ * <p>
+ * A renewal replaces the cached subject rather than logging the old one out; connections that captured it keep working
+ * until its tickets expire.  The old subject is handed out while the renewal talks to the KDC.
+ */
+public final class SubjectCache {
+
+    private static final Logger log = LogManager.getLogger(SubjectCache.class);
+
+    private static final double RENEW_WINDOW = 0.8;
+
+    // in milliseconds. delay before retrying a failed renewal
+    private static final long RETRY_DELAY = 60000;
+
+    private static final String TGT_PREFIX = "krbtgt/";
+
+    private static final Map<List<String>, Entry> ENTRIES = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService RENEWER = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("kerberos-renewal-%d").setDaemon(true).build());
+
+    private static final AtomicLong LOGINS = new AtomicLong();
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong RENEWALS = new AtomicLong();
+
+    private SubjectCache() {
+    }
+
+    /**
+     * @param key   identifies the principal and everything the login depends on
+     * @param login performs the login when there is no usable cached subject; kept for renewals
+     * @return logged in subject
+     * @throws LoginException if the login fails
+     */
+    public static Subject get(List<String> key, Login login) throws LoginException {
+        return ENTRIES.computeIfAbsent(key, k -> new Entry(k, login)).get();
+    }
+
+    /**
+     * @return number of logins made by callers, not counting background renewals
+     */
+    public static long getLogins() {
+        return LOGINS.get();
+    }
+
+    public static long getHits() {
+        return HITS.get();
+    }
+
+    public static long getRenewals() {
+        return RENEWALS.get();
+    }
+
+    public static void clear() {
+        ENTRIES.clear();
+    }
+
+    private static KerberosTicket findTgt(Subject subject) {
+
+        for (KerberosTicket ticket : subject.getPrivateCredentials(KerberosTicket.class)) {
+            if (ticket.getServer() != null && ticket.getServer().getName().startsWith(TGT_PREFIX)) {
+                return ticket;
+            }
+        }
+
+        return null;
+    }
+
+    @FunctionalInterface
+    public interface Login {
+        Subject login() throws LoginException;
+    }
+
+    private static final class Entry {
+
+        private final List<String> key;
+        private final Login login;
+
+        // guarded by this
+        private Subject subject;
+        private long expiresAt;
+        private long loadedAt;
+        private long generation;
+
+        private volatile long lastAccess;
+
+        Entry(List<String> key, Login login) {
+            this.key = key;
+            this.login = login;
+        }
+
+        synchronized Subject get() throws LoginException {
+
+            long now = System.currentTimeMillis();
+
+            lastAccess = now;
+
+            if (subject != null && now < expiresAt) {
+                HITS.incrementAndGet();
+                return subject;
+            }
+
+            set(login.login(), now);
+
+            LOGINS.incrementAndGet();
+
+            return subject;
+        }
+
+        private void set(Subject loggedIn, long now) {
+
+            subject = loggedIn;
+            loadedAt = now;
+            generation++;
+
+            KerberosTicket tgt = findTgt(loggedIn);
+
+            if (tgt == null || tgt.getEndTime() == null) {
+                expiresAt = Long.MAX_VALUE;
+                return;
+            }
+
+            long start = tgt.getStartTime() != null ? tgt.getStartTime().getTime() : now;
+
+            expiresAt = tgt.getEndTime().getTime();
+
+            long renewAt = start + (long) ((expiresAt - start) * RENEW_WINDOW);
+
+            schedule(renewAt - now);
+        }
+
+        private void schedule(long delay) {
+            long scheduled = generation;
+
+            RENEWER.schedule(() -> renew(scheduled), Math.max(0, delay), TimeUnit.MILLISECONDS);
+        }
+
+        private void renew(long scheduled) {
+
+            synchronized (this) {
+                // superseded by a login in get()
+                if (scheduled != generation) {
+                    return;
+                }
+
+                if (lastAccess <= loadedAt) {
+                    log.debug("dropping unused subject [{}]", subject);
+
+                    ENTRIES.remove(key, this);
+                    return;
+                }
+            }
+
+            long now = System.currentTimeMillis();
+
+            // the login goes to the KDC; get() keeps handing out the current subject meanwhile
+            Subject renewed;
+
+            try {
+                renewed = login.login();
+            } catch (LoginException | RuntimeException e) {
+                log.warn("unable to renew kerberos login; retrying in " + RETRY_DELAY + " ms", e);
+
+                synchronized (this) {
+                    if (scheduled == generation && now + RETRY_DELAY < expiresAt) {
+                        schedule(RETRY_DELAY);
+                    }
+                }
+
+                return;
+            }
+
+            synchronized (this) {
+                // a caller logged in while the renewal ran; keep theirs
+                if (scheduled != generation) {
+                    return;
+                }
+
+                set(renewed, now);
+            }
+
+            RENEWALS.incrementAndGet();
+
+            log.debug("renewed subject [{}]", renewed);
+        }
+    }
+}
@@ -28,12 +28,12 @@ import org.apache.logging.log4j.Logger;
 import veil.hdp.hive.jdbc.HiveDriverProperty;
 import veil.hdp.hive.jdbc.security.KerberosService;
 import veil.hdp.hive.jdbc.security.ServicePrincipal;
+import veil.hdp.hive.jdbc.security.ServiceTicketCache;
 import veil.hdp.hive.jdbc.utils.PrincipalUtils;
 
 import javax.security.auth.Subject;
 import javax.security.auth.login.LoginException;
 import java.security.PrivilegedActionException;
-import java.security.PrivilegedExceptionAction;
 import java.util.List;
 import java.util.Properties;
 
@@ -94,16 +94,11 @@ public class KerberosRequestInterceptor implements HttpRequestInterceptor {
 
                 Subject subject = KerberosService.getSubject(properties);
 
-                String header = Subject.doAs(subject, (PrivilegedExceptionAction<String>) () -> {
+                ServicePrincipal servicePrincipal = PrincipalUtils.parseServicePrincipal(HiveDriverProperty.KERBEROS_SERVER_PRINCIPAL.get(properties), HiveDriverProperty.HOST_NAME.get(properties));
 
-                    ServicePrincipal servicePrincipal = PrincipalUtils.parseServicePrincipal(HiveDriverProperty.KERBEROS_SERVER_PRINCIPAL.get(properties), HiveDriverProperty.HOST_NAME.get(properties));
+                log.debug("service principal [{}]", servicePrincipal);
 
-                    log.debug("service principal [{}]", servicePrincipal);
-
-                    byte[] token = KerberosService.getToken(servicePrincipal);
-
-                    return new String(BASE_64.encode(token));
-                });
+                String header = new String(BASE_64.encode(ServiceTicketCache.getToken(subject, servicePrincipal)));
 
                 request.addHeader("Authorization: Negotiate ", header);
             } catch (LoginException | PrivilegedActionException e) {
@@ -0,0 +1,127 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc.thrift;
+
+import org.apache.thrift.transport.TSocket;
+import org.apache.thrift.transport.TTransportException;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+
+/**
+ * {@link TSocket} with a configurable buffer size.  Reads are buffered here instead of in a {@code BufferedInputStream}
+ * so the buffer is exposed through {@link #getBuffer()}; {@code TBinaryProtocol} then decodes primitives in place rather
+ * than copying each one out through {@link #read(byte[], int, int)}.  Reads at least as large as the buffer go straight
+ * to the socket.
+ * <p>
+ * {@code TBinaryProtocol.readBinary()} wraps the exposed buffer without copying, so every refill gets a new array
+ * rather than overwriting bytes a decoded handle may still point at.
+ */
+public class BufferedSocket extends TSocket {
+
+    private final int bufferSize;
+
+    private byte[] readBuffer;
+    private int position;
+    private int limit;
+
+    public BufferedSocket(String host, int port, int socketTimeout, int connectionTimeout, int bufferSize) {
+        super(host, port, socketTimeout, connectionTimeout);
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * @param socket     already connected socket, such as an ssl socket layered over a plain one
+     * @param bufferSize read and write buffer size in bytes
+     * @throws TTransportException if the socket streams can't be opened
+     */
+    public BufferedSocket(Socket socket, int bufferSize) throws TTransportException {
+        super(socket);
+        this.bufferSize = bufferSize;
+
+        if (isOpen()) {
+            initStreams();
+        }
+    }
+
+    @Override
+    public void open() throws TTransportException {
+        super.open();
+        initStreams();
+    }
+
+    private void initStreams() throws TTransportException {
+        try {
+            // replaces the default 8k buffered streams before anything has been read or written through them
+            inputStream_ = getSocket().getInputStream();
+            outputStream_ = new BufferedOutputStream(getSocket().getOutputStream(), bufferSize);
+        } catch (IOException e) {
+            close();
+            throw new TTransportException(TTransportException.NOT_OPEN, e);
+        }
+
+        readBuffer = null;
+        position = 0;
+        limit = 0;
+    }
+
+    @Override
+    public int read(byte[] buf, int off, int len) throws TTransportException {
+
+        int available = limit - position;
+
+        if (available == 0) {
+
+            if (len >= bufferSize) {
+                return super.read(buf, off, len);
+            }
+
+            readBuffer = new byte[bufferSize];
+            limit = super.read(readBuffer, 0, bufferSize);
+            position = 0;
+            available = limit;
+        }
+
+        int count = Math.min(len, available);
+
+        System.arraycopy(readBuffer, position, buf, off, count);
+        position += count;
+
+        return count;
+    }
+
+    @Override
+    public byte[] getBuffer() {
+        return readBuffer;
+    }
+
+    @Override
+    public int getBufferPosition() {
+        return position;
+    }
+
+    @Override
+    public int getBytesRemainingInBuffer() {
+        return limit - position;
+    }
+
+    @Override
+    public void consumeBuffer(int len) {
+        position += len;
+    }
+}
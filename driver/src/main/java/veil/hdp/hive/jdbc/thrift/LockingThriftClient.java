@@ -0,0 +1,355 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package veil.hdp.hive.jdbc.thrift;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.thrift.TException;
+import veil.hdp.hive.jdbc.bindings.*;
+import veil.hdp.hive.jdbc.data.ColumnBasedSet;
+import veil.hdp.hive.jdbc.metadata.Schema;
+
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Delegating {@link ThriftClient} that serializes calls on the underlying client.  A thrift client owns a single
+ * transport and can't be shared, but a connection's client is reached from the prefetch and status poll threads as
+ * well as the caller's.
+ * <p>
+ * The lock is not fair; calls are short and ordering between threads doesn't matter.  Call times are logged at trace;
+ * when trace is off a call allocates nothing beyond what the delegate does.
+ * <p>
+ * {@code afterCall} runs once a call's reply has been read, while the lock is still held; the http transport uses it to
+ * hand its connection back to the pool between calls.
+ */
+public class LockingThriftClient implements ThriftClient {
+
+    private static final Logger log = LogManager.getLogger(LockingThriftClient.class);
+
+    private static final long NOT_TIMED = Long.MIN_VALUE;
+
+    private static final Runnable NO_OP = () -> {
+    };
+
+    private final ThriftClient client;
+    private final Runnable afterCall;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    public LockingThriftClient(ThriftClient client) {
+        this(client, NO_OP);
+    }
+
+    public LockingThriftClient(ThriftClient client, Runnable afterCall) {
+        this.client = client;
+        this.afterCall = afterCall;
+    }
+
+    private long acquire() {
+        lock.lock();
+
+        return log.isTraceEnabled() ? System.nanoTime() : NOT_TIMED;
+    }
+
+    private void release(String method, long start) {
+        try {
+            afterCall.run();
+
+            if (start != NOT_TIMED) {
+                log.trace("{} took {} ms", method, (System.nanoTime() - start) / 1_000_000);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public ColumnBasedSet fetchColumnBasedSet(TFetchResultsReq req, Schema schema) throws TException {
+        long start = acquire();
+
+        try {
+            return client.fetchColumnBasedSet(req, schema);
+        } finally {
+            release("fetchColumnBasedSet", start);
+        }
+    }
+
+    @Override
+    public ColumnBasedSet fetchColumnBasedSet(TGetResultSetMetadataReq metadataReq, TFetchResultsReq req, Function<TGetResultSetMetadataResp, Schema> schemaFactory) throws TException {
+        long start = acquire();
+
+        try {
+            return client.fetchColumnBasedSet(metadataReq, req, schemaFactory);
+        } finally {
+            release("fetchColumnBasedSet", start);
+        }
+    }
+
+    @Override
+    public TOpenSessionResp OpenSession(TOpenSessionReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.OpenSession(req);
+        } finally {
+            release("OpenSession", start);
+        }
+    }
+
+    @Override
+    public TCloseSessionResp CloseSession(TCloseSessionReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.CloseSession(req);
+        } finally {
+            release("CloseSession", start);
+        }
+    }
+
+    @Override
+    public TGetInfoResp GetInfo(TGetInfoReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.GetInfo(req);
+        } finally {
+            release("GetInfo", start);
+        }
+    }
+
+    @Override
+    public TExecuteStatementResp ExecuteStatement(TExecuteStatementReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.ExecuteStatement(req);
+        } finally {
+            release("ExecuteStatement", start);
+        }
+    }
+
+    @Override
+    public TGetTypeInfoResp GetTypeInfo(TGetTypeInfoReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.GetTypeInfo(req);
+        } finally {
+            release("GetTypeInfo", start);
+        }
+    }
+
+    @Override
+    public TGetCatalogsResp GetCatalogs(TGetCatalogsReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.GetCatalogs(req);
+        } finally {
+            release("GetCatalogs", start);
+        }
+    }
+
+    @Override
+    public TGetSchemasResp GetSchemas(TGetSchemasReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.GetSchemas(req);
+        } finally {
+            release("GetSchemas", start);
+        }
+    }
+
+    @Override
+    public TGetTablesResp GetTables(TGetTablesReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.GetTables(req);
+        } finally {
+            release("GetTables", start);
+        }
+    }
+
+    @Override
+    public TGetTableTypesResp GetTableTypes(TGetTableTypesReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.GetTableTypes(req);
+        } finally {
+            release("GetTableTypes", start);
+        }
+    }
+
+    @Override
+    public TGetColumnsResp GetColumns(TGetColumnsReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.GetColumns(req);
+        } finally {
+            release("GetColumns", start);
+        }
+    }
+
+    @Override
+    public TGetFunctionsResp GetFunctions(TGetFunctionsReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.GetFunctions(req);
+        } finally {
+            release("GetFunctions", start);
+        }
+    }
+
+    @Override
+    public TGetPrimaryKeysResp GetPrimaryKeys(TGetPrimaryKeysReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.GetPrimaryKeys(req);
+        } finally {
+            release("GetPrimaryKeys", start);
+        }
+    }
+
+    @Override
+    public TGetCrossReferenceResp GetCrossReference(TGetCrossReferenceReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.GetCrossReference(req);
+        } finally {
+            release("GetCrossReference", start);
+        }
+    }
+
+    @Override
+    public TGetOperationStatusResp GetOperationStatus(TGetOperationStatusReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.GetOperationStatus(req);
+        } finally {
+            release("GetOperationStatus", start);
+        }
+    }
+
+    @Override
+    public TCancelOperationResp CancelOperation(TCancelOperationReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.CancelOperation(req);
+        } finally {
+            release("CancelOperation", start);
+        }
+    }
+
+    @Override
+    public TCloseOperationResp CloseOperation(TCloseOperationReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.CloseOperation(req);
+        } finally {
+            release("CloseOperation", start);
+        }
+    }
+
+    @Override
+    public TGetResultSetMetadataResp GetResultSetMetadata(TGetResultSetMetadataReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.GetResultSetMetadata(req);
+        } finally {
+            release("GetResultSetMetadata", start);
+        }
+    }
+
+    @Override
+    public TFetchResultsResp FetchResults(TFetchResultsReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.FetchResults(req);
+        } finally {
+            release("FetchResults", start);
+        }
+    }
+
+    @Override
+    public TGetDelegationTokenResp GetDelegationToken(TGetDelegationTokenReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.GetDelegationToken(req);
+        } finally {
+            release("GetDelegationToken", start);
+        }
+    }
+
+    @Override
+    public TCancelDelegationTokenResp CancelDelegationToken(TCancelDelegationTokenReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.CancelDelegationToken(req);
+        } finally {
+            release("CancelDelegationToken", start);
+        }
+    }
+
+    @Override
+    public TRenewDelegationTokenResp RenewDelegationToken(TRenewDelegationTokenReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.RenewDelegationToken(req);
+        } finally {
+            release("RenewDelegationToken", start);
+        }
+    }
+
+    @Override
+    public TGetQueryIdResp GetQueryId(TGetQueryIdReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.GetQueryId(req);
+        } finally {
+            release("GetQueryId", start);
+        }
+    }
+
+    @Override
+    public TSetClientInfoResp SetClientInfo(TSetClientInfoReq req) throws TException {
+        long start = acquire();
+
+        try {
+            return client.SetClientInfo(req);
+        } finally {
+            release("SetClientInfo", start);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package veil.hdp.hive.jdbc.thrift;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import veil.hdp.hive.jdbc.HiveDriverProperty;
+import veil.hdp.hive.jdbc.TransportMode;
+import veil.hdp.hive.jdbc.bindings.TProtocolVersion;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers, per HS2 endpoint, the protocol version a session was last opened with.  Finding the version of an older
+ * server means opening a transport per version tried; with the version cached, later sessions open at it directly.
+ * Entries expire after {@link HiveDriverProperty#THRIFT_PROTOCOL_VERSION_CACHE_TTL} so an upgraded server is picked up.
+ */
+public final class ProtocolVersionCache {
+
+    private static final Logger log = LogManager.getLogger(ProtocolVersionCache.class);
+
+    private static final Map<String, Entry> CACHE = new ConcurrentHashMap<>();
+
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong MISSES = new AtomicLong();
+    private static final AtomicLong DOWNGRADES = new AtomicLong();
+
+    private ProtocolVersionCache() {
+    }
+
+    private static String key(Properties properties) {
+        String key = HiveDriverProperty.TRANSPORT_MODE.get(properties) + "://" + HiveDriverProperty.HOST_NAME.get(properties) + ':' + HiveDriverProperty.PORT_NUMBER.get(properties);
+
+        if (TransportMode.http.name().equals(HiveDriverProperty.TRANSPORT_MODE.get(properties))) {
+            key += '/' + HiveDriverProperty.HTTP_ENDPOINT.get(properties);
+        }
+
+        return key;
+    }
+
+    /**
+     * @return the version last used with this endpoint, or null if unknown, expired or caching is disabled
+     */
+    public static TProtocolVersion get(Properties properties) {
+
+        int ttl = HiveDriverProperty.THRIFT_PROTOCOL_VERSION_CACHE_TTL.getInt(properties);
+
+        if (ttl <= 0) {
+            return null;
+        }
+
+        String key = key(properties);
+
+        Entry entry = CACHE.get(key);
+
+        if (entry == null || entry.isExpired(ttl)) {
+            MISSES.incrementAndGet();
+            return null;
+        }
+
+        HITS.incrementAndGet();
+
+        return entry.version;
+    }
+
+    /**
+     * Records the version a session was opened with.  Confirming a live entry's version keeps its age so it still
+     * expires; a new endpoint, a different version or an expired entry starts a fresh one.
+     */
+    public static void put(Properties properties, TProtocolVersion version) {
+
+        int ttl = HiveDriverProperty.THRIFT_PROTOCOL_VERSION_CACHE_TTL.getInt(properties);
+
+        if (ttl > 0) {
+            CACHE.compute(key(properties), (key, entry) -> entry != null && entry.version == version && !entry.isExpired(ttl) ? entry : new Entry(version));
+        }
+    }
+
+    /**
+     * Records that the server rejected a protocol version and the driver had to reconnect with a lower one.
+     */
+    public static void recordDowngrade(Properties properties, TProtocolVersion rejected) {
+        long downgrades = DOWNGRADES.incrementAndGet();
+
+        log.debug("{} rejected protocol {}; {} downgrades so far", key(properties), rejected, downgrades);
+    }
+
+    public static long getHits() {
+        return HITS.get();
+    }
+
+    public static long getMisses() {
+        return MISSES.get();
+    }
+
+    public static long getDowngrades() {
+        return DOWNGRADES.get();
+    }
+
+    public static void clear() {
+        CACHE.clear();
+    }
+
+    private static class Entry {
+
+        private final TProtocolVersion version;
+        private final long created = System.currentTimeMillis();
+
+        Entry(TProtocolVersion version) {
+            this.version = version;
+        }
+
+        boolean isExpired(int ttl) {
+            return System.currentTimeMillis() - created >= ttl;
+        }
+    }
+}
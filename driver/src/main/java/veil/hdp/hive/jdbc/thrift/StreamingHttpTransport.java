@@ -0,0 +1,151 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc.thrift;
+
+import org.apache.http.HttpStatus;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.thrift.TByteArrayOutputStream;
+import org.apache.thrift.transport.TTransport;
+import org.apache.thrift.transport.TTransportException;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Thrift over HTTP POST.  Unlike {@code THttpClient}, which copies every response body into memory before the first
+ * byte is decoded, the reply is read straight from the response stream.  The rest of the body is consumed, and the
+ * connection handed back to the connection manager, by {@link #releaseResponse()}; at the latest when the next request
+ * is sent or the transport is closed.
+ */
+public class StreamingHttpTransport extends TTransport {
+
+    private static final Logger log = LogManager.getLogger(StreamingHttpTransport.class);
+
+    private static final String CONTENT_TYPE = "application/x-thrift";
+    private static final String USER_AGENT = "Java/THttpClient/HC";
+
+    private final String url;
+    private final CloseableHttpClient client;
+
+    private final TByteArrayOutputStream requestBuffer = new TByteArrayOutputStream(1024);
+
+    private CloseableHttpResponse response;
+    private InputStream responseStream;
+
+    public StreamingHttpTransport(String url, CloseableHttpClient client) {
+        this.url = url;
+        this.client = client;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public void open() {
+    }
+
+    @Override
+    public void close() {
+        releaseResponse();
+    }
+
+    @Override
+    public int read(byte[] buf, int off, int len) throws TTransportException {
+
+        if (responseStream == null) {
+            throw new TTransportException(TTransportException.NOT_OPEN, "Response buffer is empty, no request.");
+        }
+
+        try {
+            int count = responseStream.read(buf, off, len);
+
+            if (count == -1) {
+                throw new TTransportException(TTransportException.END_OF_FILE, "No more data available.");
+            }
+
+            return count;
+        } catch (IOException e) {
+            throw new TTransportException(e);
+        }
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len) {
+        requestBuffer.write(buf, off, len);
+    }
+
+    @Override
+    public void flush() throws TTransportException {
+
+        releaseResponse();
+
+        HttpPost post = new HttpPost(url);
+        post.setHeader("Content-Type", CONTENT_TYPE);
+        post.setHeader("Accept", CONTENT_TYPE);
+        post.setHeader("User-Agent", USER_AGENT);
+        post.setEntity(new ByteArrayEntity(requestBuffer.get(), 0, requestBuffer.len()));
+
+        try {
+            response = client.execute(post);
+
+            int responseCode = response.getStatusLine().getStatusCode();
+
+            if (responseCode != HttpStatus.SC_OK) {
+                releaseResponse();
+                throw new TTransportException("HTTP Response code: " + responseCode);
+            }
+
+            responseStream = response.getEntity().getContent();
+
+        } catch (IOException e) {
+            post.abort();
+            releaseResponse();
+            throw new TTransportException(e);
+        } finally {
+            // the entity has been written by the time execute returns
+            requestBuffer.reset();
+        }
+    }
+
+    /**
+     * Consumes what is left of the current response and hands its connection back to the connection manager.  Thrift
+     * stops reading at the end of the reply, before the response stream reports end of stream, so without this the
+     * connection stays leased until the next request.
+     */
+    public void releaseResponse() {
+
+        if (response != null) {
+            try {
+                EntityUtils.consume(response.getEntity());
+                response.close();
+            } catch (IOException e) {
+                log.debug(e.getMessage(), e);
+            } finally {
+                response = null;
+                responseStream = null;
+            }
+        }
+    }
+}
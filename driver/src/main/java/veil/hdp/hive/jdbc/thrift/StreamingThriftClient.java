@@ -0,0 +1,202 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc.thrift;
+
+import org.apache.thrift.TApplicationException;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.*;
+import veil.hdp.hive.jdbc.bindings.TCLIService;
+import veil.hdp.hive.jdbc.bindings.TFetchResultsReq;
+import veil.hdp.hive.jdbc.bindings.TGetResultSetMetadataReq;
+import veil.hdp.hive.jdbc.bindings.TGetResultSetMetadataResp;
+import veil.hdp.hive.jdbc.bindings.TStatus;
+import veil.hdp.hive.jdbc.data.ColumnBasedSet;
+import veil.hdp.hive.jdbc.data.ColumnBasedSetReader;
+import veil.hdp.hive.jdbc.metadata.Schema;
+import veil.hdp.hive.jdbc.utils.ThriftUtils;
+
+import java.util.function.Function;
+
+/**
+ * Generated client plus a hand written receive path for {@code FetchResults}.  The request is still written by the
+ * generated code; only the response is parsed here so that the row set can be decoded by {@link ColumnBasedSetReader}.
+ */
+public class StreamingThriftClient extends TCLIService.Client implements ThriftClient {
+
+    private static final String FETCH_RESULTS = "FetchResults";
+    private static final String GET_RESULT_SET_METADATA = "GetResultSetMetadata";
+
+    // FetchResults_result
+    private static final short RESULT_SUCCESS = 0;
+
+    // TFetchResultsResp
+    private static final short RESP_STATUS = 1;
+    private static final short RESP_RESULTS = 3;
+
+    public StreamingThriftClient(TProtocol prot) {
+        super(prot);
+    }
+
+    public StreamingThriftClient(TProtocol iprot, TProtocol oprot) {
+        super(iprot, oprot);
+    }
+
+    @Override
+    public ColumnBasedSet fetchColumnBasedSet(TFetchResultsReq req, Schema schema) throws TException {
+        send_FetchResults(req);
+        return recvColumnBasedSet(schema);
+    }
+
+    /**
+     * Writes {@code GetResultSetMetadata} and {@code FetchResults} before reading either reply.  Binary transports
+     * answer in order, so the first page arrives one round trip after the metadata instead of two.
+     */
+    @Override
+    public ColumnBasedSet fetchColumnBasedSet(TGetResultSetMetadataReq metadataReq, TFetchResultsReq req, Function<TGetResultSetMetadataResp, Schema> schemaFactory) throws TException {
+        send_GetResultSetMetadata(metadataReq);
+
+        int metadataSeqid = seqid_;
+
+        send_FetchResults(req);
+
+        Schema schema;
+
+        try {
+            schema = schemaFactory.apply(recvResultSetMetadata(metadataSeqid));
+        } catch (TException | RuntimeException e) {
+            // the FetchResults reply is still on the wire; read past it so the next call starts on a message boundary
+            skipMessage(e);
+            throw e;
+        }
+
+        return recvColumnBasedSet(schema);
+    }
+
+    private TGetResultSetMetadataResp recvResultSetMetadata(int seqid) throws TException {
+
+        TMessage msg = iprot_.readMessageBegin();
+
+        if (msg.type == TMessageType.EXCEPTION) {
+            TApplicationException x = new TApplicationException();
+            x.read(iprot_);
+            iprot_.readMessageEnd();
+            throw x;
+        }
+
+        if (msg.seqid != seqid) {
+            throw new TApplicationException(TApplicationException.BAD_SEQUENCE_ID, GET_RESULT_SET_METADATA + " failed: out of sequence response: expected " + seqid + " but got " + msg.seqid);
+        }
+
+        TCLIService.GetResultSetMetadata_result result = new TCLIService.GetResultSetMetadata_result();
+        result.read(iprot_);
+        iprot_.readMessageEnd();
+
+        if (!result.isSetSuccess()) {
+            throw new TApplicationException(TApplicationException.MISSING_RESULT, GET_RESULT_SET_METADATA + " failed: unknown result");
+        }
+
+        return result.getSuccess();
+    }
+
+    private void skipMessage(Exception cause) {
+        try {
+            iprot_.readMessageBegin();
+            TProtocolUtil.skip(iprot_, TType.STRUCT);
+            iprot_.readMessageEnd();
+        } catch (TException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private ColumnBasedSet recvColumnBasedSet(Schema schema) throws TException {
+
+        TMessage msg = iprot_.readMessageBegin();
+
+        if (msg.type == TMessageType.EXCEPTION) {
+            TApplicationException x = new TApplicationException();
+            x.read(iprot_);
+            iprot_.readMessageEnd();
+            throw x;
+        }
+
+        if (msg.seqid != seqid_) {
+            throw new TApplicationException(TApplicationException.BAD_SEQUENCE_ID, FETCH_RESULTS + " failed: out of sequence response: expected " + seqid_ + " but got " + msg.seqid);
+        }
+
+        boolean hasSuccess = false;
+        TStatus status = null;
+        ColumnBasedSet columnBasedSet = null;
+
+        iprot_.readStructBegin();
+
+        while (true) {
+            TField resultField = iprot_.readFieldBegin();
+
+            if (resultField.type == TType.STOP) {
+                break;
+            }
+
+            if (resultField.id == RESULT_SUCCESS && resultField.type == TType.STRUCT) {
+
+                hasSuccess = true;
+
+                iprot_.readStructBegin();
+
+                while (true) {
+                    TField field = iprot_.readFieldBegin();
+
+                    if (field.type == TType.STOP) {
+                        break;
+                    }
+
+                    if (field.id == RESP_STATUS && field.type == TType.STRUCT) {
+                        status = new TStatus();
+                        status.read(iprot_);
+                    } else if (field.id == RESP_RESULTS && field.type == TType.STRUCT) {
+                        columnBasedSet = ColumnBasedSetReader.read(iprot_, schema);
+                    } else {
+                        TProtocolUtil.skip(iprot_, field.type);
+                    }
+
+                    iprot_.readFieldEnd();
+                }
+
+                iprot_.readStructEnd();
+
+            } else {
+                TProtocolUtil.skip(iprot_, resultField.type);
+            }
+
+            iprot_.readFieldEnd();
+        }
+
+        iprot_.readStructEnd();
+        iprot_.readMessageEnd();
+
+        if (!hasSuccess) {
+            throw new TApplicationException(TApplicationException.MISSING_RESULT, FETCH_RESULTS + " failed: unknown result");
+        }
+
+        if (status == null) {
+            throw new TProtocolException("Required field 'status' was not present! Struct: TFetchResultsResp");
+        }
+
+        ThriftUtils.checkStatus(status);
+
+        return columnBasedSet;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc.thrift;
+
+import org.apache.thrift.TException;
+import veil.hdp.hive.jdbc.bindings.TCLIService;
+import veil.hdp.hive.jdbc.bindings.TFetchResultsReq;
+import veil.hdp.hive.jdbc.bindings.TGetResultSetMetadataReq;
+import veil.hdp.hive.jdbc.bindings.TGetResultSetMetadataResp;
+import veil.hdp.hive.jdbc.data.ColumnBasedSet;
+import veil.hdp.hive.jdbc.metadata.Schema;
+
+import java.util.function.Function;
+
+/**
+ * Driver facing view of a HS2 client.  Adds calls that are not part of the generated {@link TCLIService.Iface}.
+ */
+public interface ThriftClient extends TCLIService.Iface {
+
+    /**
+     * Same request as {@link #FetchResults(TFetchResultsReq)}, but the response is decoded straight into a {@link ColumnBasedSet} without building the generated {@code TRowSet} first.
+     *
+     * @param req    fetch request
+     * @param schema schema of the operation being fetched
+     * @return the fetched page or null if the server returned no columns
+     * @throws TException if the call fails
+     */
+    ColumnBasedSet fetchColumnBasedSet(TFetchResultsReq req, Schema schema) throws TException;
+
+    /**
+     * Fetches a page of an operation whose schema has not been loaded yet.  Implementations that can write both requests
+     * before reading either reply do so; the default makes the two calls one after the other.
+     *
+     * @param metadataReq   metadata request for the operation being fetched
+     * @param req           fetch request
+     * @param schemaFactory builds the schema from the metadata response; called before the page is decoded
+     * @return the fetched page or null if the server returned no columns
+     * @throws TException if either call fails
+     */
+    default ColumnBasedSet fetchColumnBasedSet(TGetResultSetMetadataReq metadataReq, TFetchResultsReq req, Function<TGetResultSetMetadataResp, Schema> schemaFactory) throws TException {
+        return fetchColumnBasedSet(req, schemaFactory.apply(GetResultSetMetadata(metadataReq)));
+    }
+
+}
@@ -38,21 +38,25 @@ public class ThriftOperation implements AutoCloseable {
     private static final short FETCH_TYPE_LOG = 1;
 
     // constructor
-    private final TCLIService.Iface client;
+    private final ThriftClient client;
     private final TOperationHandle operationHandle;
     private final boolean hasResultSet;
-    private final Schema schema;
+    private final boolean pipelined;
     private final int modifiedCount;
+    private final int statusCalls;
+    // loaded on first use; see getSchema() and fetchResults()
+    private volatile Schema schema;
     // atomic
     private final AtomicBoolean closed = new AtomicBoolean(true);
 
-    private ThriftOperation(TCLIService.Iface client, TOperationHandle operationHandle, Schema schema, boolean hasResultSet, int modifiedCount) {
+    private ThriftOperation(ThriftClient client, TOperationHandle operationHandle, boolean hasResultSet, boolean pipelined, int modifiedCount, int statusCalls) {
 
         this.client = client;
         this.operationHandle = operationHandle;
-        this.schema = schema;
         this.hasResultSet = hasResultSet;
+        this.pipelined = pipelined;
         this.modifiedCount = modifiedCount;
+        this.statusCalls = statusCalls;
 
         closed.set(false);
     }
@@ -77,8 +81,30 @@ public class ThriftOperation implements AutoCloseable {
         return modifiedCount;
     }
 
+    /**
+     * @return number of GetOperationStatus calls made while waiting for the operation to complete
+     */
+    public int getStatusCalls() {
+        return statusCalls;
+    }
+
+    /**
+     * @return schema of the result set, requested from the server the first time it is needed, or null if the operation has no result set
+     */
     public Schema getSchema() {
-        return schema;
+        Schema current = schema;
+
+        if (current == null && hasResultSet) {
+            synchronized (this) {
+                if (schema == null) {
+                    schema = Schema.builder().client(client).handle(operationHandle).build();
+                }
+
+                current = schema;
+            }
+        }
+
+        return current;
     }
 
     @Override
@@ -132,15 +158,28 @@ public class ThriftOperation implements AutoCloseable {
     }
 
 
-    private TRowSet getRowSet(TFetchResultsReq tFetchResultsReq) {
+    private ColumnBasedSet getColumnBasedSet(TFetchResultsReq tFetchResultsReq) {
+
+        try {
+
+            return client.fetchColumnBasedSet(tFetchResultsReq, getSchema());
+
+        } catch (TException e) {
+            throw new HiveThriftException("error getting TRowSet for [" + tFetchResultsReq.toString() + ']', e);
+        }
+    }
+
+    private ColumnBasedSet getColumnBasedSetAndSchema(TFetchResultsReq tFetchResultsReq) {
 
         try {
 
-            TFetchResultsResp fetchResults = client.FetchResults(tFetchResultsReq);
+            return client.fetchColumnBasedSet(new TGetResultSetMetadataReq(operationHandle), tFetchResultsReq, resp -> {
+                ThriftUtils.checkStatus(resp.getStatus());
 
-            ThriftUtils.checkStatus(fetchResults.getStatus());
+                schema = Schema.builder().tableSchema(resp.getSchema()).build();
 
-            return fetchResults.getResults();
+                return schema;
+            });
 
         } catch (TException e) {
             throw new HiveThriftException("error getting TRowSet for [" + tFetchResultsReq.toString() + ']', e);
@@ -152,9 +191,15 @@ public class ThriftOperation implements AutoCloseable {
         TFetchResultsReq fetchReq = new TFetchResultsReq(operationHandle, orientation, fetchSize);
         fetchReq.setFetchType(FETCH_TYPE_QUERY);
 
-        TRowSet tRowSet = getRowSet(fetchReq);
+        if (pipelined && schema == null) {
+            synchronized (this) {
+                if (schema == null) {
+                    return getColumnBasedSetAndSchema(fetchReq);
+                }
+            }
+        }
 
-        return convertToCBS(tRowSet);
+        return getColumnBasedSet(fetchReq);
     }
 
     /*private static List<Row> fetchLogs(ThriftOperation operation, int fetchSize) {
@@ -167,17 +212,6 @@ public class ThriftOperation implements AutoCloseable {
 
     }*/
 
-    private ColumnBasedSet convertToCBS(TRowSet rowSet) {
-        if (rowSet != null && rowSet.isSetColumns()) {
-            if (!rowSet.getColumns().isEmpty()) {
-                return ColumnBasedSet.builder().rowSet(rowSet).schema(schema).build();
-            }
-        }
-
-        return null;
-    }
-
-
     private void closeOperation() {
 
         try {
@@ -206,18 +240,34 @@ public class ThriftOperation implements AutoCloseable {
     public static class ThriftOperationBuilder implements Builder<ThriftOperation> {
 
         private TOperationHandle operationHandle;
-        private TCLIService.Iface client;
+        private ThriftClient client;
+        private int statusCalls;
+        private boolean pipelined;
 
 
         private ThriftOperationBuilder() {
         }
 
-        public ThriftOperationBuilder client(TCLIService.Iface client) {
+        public ThriftOperationBuilder client(ThriftClient client) {
             this.client = client;
             return this;
         }
 
 
+        public ThriftOperationBuilder statusCalls(int statusCalls) {
+            this.statusCalls = statusCalls;
+            return this;
+        }
+
+        /**
+         * Request the schema together with the first page instead of on its own.  Only for transports that allow more
+         * than one outstanding call.
+         */
+        public ThriftOperationBuilder pipelined(boolean pipelined) {
+            this.pipelined = pipelined;
+            return this;
+        }
+
         public ThriftOperationBuilder handle(TOperationHandle operationHandle) {
             this.operationHandle = operationHandle;
             return this;
@@ -228,15 +278,12 @@ public class ThriftOperation implements AutoCloseable {
 
             boolean hasResultSet = false;
             int modifiedCount = -1;
-            Schema schema = null;
 
             if (operationHandle.isSetHasResultSet()) {
                 hasResultSet = operationHandle.isHasResultSet();
             }
 
-            if (hasResultSet) {
-                schema = Schema.builder().client(client).handle(operationHandle).build();
-            } else {
+            if (!hasResultSet) {
 
                 // return actual modified count or zero since -1 is not a valid value when no result set exists
                 modifiedCount = 0;
@@ -246,7 +293,7 @@ public class ThriftOperation implements AutoCloseable {
                 }
             }
 
-            return new ThriftOperation(client, operationHandle, schema, hasResultSet, modifiedCount);
+            return new ThriftOperation(client, operationHandle, hasResultSet, pipelined, modifiedCount, statusCalls);
         }
 
     }
@@ -17,6 +17,7 @@
 package veil.hdp.hive.jdbc.thrift;
 
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -25,13 +26,25 @@ import org.apache.thrift.transport.TTransportException;
 import veil.hdp.hive.jdbc.*;
 import veil.hdp.hive.jdbc.bindings.*;
 import veil.hdp.hive.jdbc.metadata.Schema;
+import veil.hdp.hive.jdbc.utils.ConnectFailover;
+import veil.hdp.hive.jdbc.utils.HiveExceptionUtils;
+import veil.hdp.hive.jdbc.utils.PollingBackoff;
+import veil.hdp.hive.jdbc.utils.QueryUtils;
+import veil.hdp.hive.jdbc.utils.ServerSelector;
 import veil.hdp.hive.jdbc.utils.StaticColumnDescriptors;
 import veil.hdp.hive.jdbc.utils.ThriftUtils;
 
 import java.sql.ResultSet;
 import java.text.MessageFormat;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ThriftSession implements AutoCloseable {
@@ -43,15 +56,22 @@ public class ThriftSession implements AutoCloseable {
     // constructor
     private final Properties properties;
     private final ThriftTransport thriftTransport;
-    private final TCLIService.Iface client;
+    private final ThriftClient client;
     private final TSessionHandle sessionHandle;
+    private final boolean pipelined;
 
+    // set once a statement that may change the session runs (anything but a plain query); see reset()
+    private volatile boolean stateChanged;
+    // cleared once a statement may have left state reset() can't undo; see isResettable()
+    private volatile boolean resettable = true;
 
-    private ThriftSession(Properties properties, ThriftTransport thriftTransport, TCLIService.Iface client, TSessionHandle sessionHandle) {
+
+    private ThriftSession(Properties properties, ThriftTransport thriftTransport, ThriftClient client, TSessionHandle sessionHandle) {
         this.properties = properties;
         this.thriftTransport = thriftTransport;
         this.client = client;
         this.sessionHandle = sessionHandle;
+        this.pipelined = HiveDriverProperty.FETCH_PIPELINED.getBoolean(properties) && thriftTransport.supportsPipelining();
 
         closed.set(false);
     }
@@ -88,6 +108,8 @@ public class ThriftSession implements AutoCloseable {
 
             } catch (Exception e) {
                 log.warn(e.getMessage(), e);
+            } finally {
+                ServerSelector.closed(properties);
             }
         }
     }
@@ -120,6 +142,40 @@ public class ThriftSession implements AutoCloseable {
     }
 
 
+    /**
+     * @return false once the session has run a statement whose effects {@link #reset()} can't undo, such as creating a
+     * temporary table, function or macro or adding a jar; such a session shouldn't be handed to another user
+     */
+    public boolean isResettable() {
+        return resettable;
+    }
+
+    /**
+     * Puts the session's configuration back the way it was opened so it can be handed to another user: configuration
+     * goes back to the server defaults plus the hiveconf overlay from the connection properties, and the connection
+     * database becomes current again.  Sessions that haven't run a state changing statement are left alone, so this is
+     * usually free.  Temporary objects, added resources and variables are not removed; see {@link #isResettable()}.
+     */
+    public void reset() {
+        if (!stateChanged) {
+            return;
+        }
+
+        runStatement("RESET");
+
+        for (Map.Entry<String, String> entry : ThriftUtils.buildHiveConf(properties).entrySet()) {
+            runStatement("SET " + entry.getKey() + '=' + entry.getValue());
+        }
+
+        runStatement("USE " + HiveDriverProperty.DATABASE_NAME.get(properties));
+
+        stateChanged = false;
+    }
+
+    private void runStatement(String sql) {
+        executeSql(sql, 0).close();
+    }
+
     public ResultSet getCatalogs() {
 
         try {
@@ -130,7 +186,7 @@ public class ThriftSession implements AutoCloseable {
 
             ThriftUtils.checkStatus(resp.getStatus());
 
-            ThriftOperation thriftOperation = ThriftOperation.builder().handle(resp.getOperationHandle()).client(client).build();
+            ThriftOperation thriftOperation = ThriftOperation.builder().handle(resp.getOperationHandle()).client(client).pipelined(pipelined).build();
 
             return HiveResultSet.builder().thriftOperation(thriftOperation).fetchSize(HiveDriverProperty.FETCH_SIZE.getInt(properties)).build();
 
@@ -154,7 +210,7 @@ public class ThriftSession implements AutoCloseable {
 
             ThriftUtils.checkStatus(resp.getStatus());
 
-            ThriftOperation thriftOperation = ThriftOperation.builder().handle(resp.getOperationHandle()).client(client).build();
+            ThriftOperation thriftOperation = ThriftOperation.builder().handle(resp.getOperationHandle()).client(client).pipelined(pipelined).build();
 
             return HiveResultSet.builder().thriftOperation(thriftOperation).fetchSize(HiveDriverProperty.FETCH_SIZE.getInt(properties)).build();
 
@@ -180,7 +236,7 @@ public class ThriftSession implements AutoCloseable {
 
             ThriftUtils.checkStatus(resp.getStatus());
 
-            ThriftOperation thriftOperation = ThriftOperation.builder().handle(resp.getOperationHandle()).client(client).build();
+            ThriftOperation thriftOperation = ThriftOperation.builder().handle(resp.getOperationHandle()).client(client).pipelined(pipelined).build();
 
             return HiveResultSet.builder().thriftOperation(thriftOperation).fetchSize(HiveDriverProperty.FETCH_SIZE.getInt(properties)).build();
 
@@ -207,7 +263,7 @@ public class ThriftSession implements AutoCloseable {
 
             ThriftUtils.checkStatus(resp.getStatus());
 
-            ThriftOperation thriftOperation = ThriftOperation.builder().handle(resp.getOperationHandle()).client(client).build();
+            ThriftOperation thriftOperation = ThriftOperation.builder().handle(resp.getOperationHandle()).client(client).pipelined(pipelined).build();
 
             return HiveResultSet.builder().thriftOperation(thriftOperation).fetchSize(HiveDriverProperty.FETCH_SIZE.getInt(properties)).build();
 
@@ -227,7 +283,7 @@ public class ThriftSession implements AutoCloseable {
 
             ThriftUtils.checkStatus(resp.getStatus());
 
-            ThriftOperation thriftOperation = ThriftOperation.builder().handle(resp.getOperationHandle()).client(client).build();
+            ThriftOperation thriftOperation = ThriftOperation.builder().handle(resp.getOperationHandle()).client(client).pipelined(pipelined).build();
 
             return HiveResultSet.builder().thriftOperation(thriftOperation).fetchSize(HiveDriverProperty.FETCH_SIZE.getInt(properties)).build();
 
@@ -266,7 +322,7 @@ public class ThriftSession implements AutoCloseable {
 
             ThriftUtils.checkStatus(resp.getStatus());
 
-            ThriftOperation thriftOperation = ThriftOperation.builder().handle(resp.getOperationHandle()).client(client).build();
+            ThriftOperation thriftOperation = ThriftOperation.builder().handle(resp.getOperationHandle()).client(client).pipelined(pipelined).build();
 
             return HiveResultSet.builder().thriftOperation(thriftOperation).fetchSize(HiveDriverProperty.FETCH_SIZE.getInt(properties)).build();
 
@@ -287,7 +343,7 @@ public class ThriftSession implements AutoCloseable {
 
             ThriftUtils.checkStatus(resp.getStatus());
 
-            ThriftOperation thriftOperation = ThriftOperation.builder().handle(resp.getOperationHandle()).client(client).build();
+            ThriftOperation thriftOperation = ThriftOperation.builder().handle(resp.getOperationHandle()).client(client).pipelined(pipelined).build();
 
             return HiveResultSet.builder().thriftOperation(thriftOperation).fetchSize(HiveDriverProperty.FETCH_SIZE.getInt(properties)).build();
 
@@ -376,23 +432,8 @@ public class ThriftSession implements AutoCloseable {
 
 
     public ThriftOperation executeSql(String sql, long queryTimeout) {
-        TExecuteStatementReq executeStatementReq = new TExecuteStatementReq(sessionHandle, StringUtils.trim(sql));
-        executeStatementReq.setRunAsync(true);
-        executeStatementReq.setQueryTimeout(queryTimeout);
-        //todo: allows per statement configuration of session handle
-        //executeStatementReq.setConfOverlay(null);
-
-        TExecuteStatementResp executeStatementResp;
-
-        try {
-            executeStatementResp = client.ExecuteStatement(executeStatementReq);
-        } catch (TException e) {
-            throw new HiveThriftException("error executing sql [" + sql + ']', e);
-        }
 
-        ThriftUtils.checkStatus(executeStatementResp.getStatus());
-
-        TOperationHandle operationHandle = executeStatementResp.getOperationHandle();
+        TOperationHandle operationHandle = submitSql(sql, queryTimeout);
 
         /*
         if (HiveDriverProperty.FETCH_SERVER_LOGS.getBoolean(session.getProperties())) {
@@ -413,55 +454,242 @@ public class ThriftSession implements AutoCloseable {
         }
         */
 
-        waitForStatementToComplete(operationHandle);
+        int statusCalls = waitForStatementToComplete(operationHandle);
 
         return ThriftOperation.builder()
                 .client(client)
+                .pipelined(pipelined)
                 .handle(operationHandle)
+                .statusCalls(statusCalls)
                 .build();
 
     }
 
-    private void waitForStatementToComplete(TOperationHandle handle) {
-        boolean isComplete = false;
+    /**
+     * Submits the statement and returns without waiting for it to complete.  Status is polled on a shared scheduler; the
+     * returned future completes with the operation once HS2 reports it finished.  Cancelling the future cancels the
+     * operation on the server.
+     */
+    public CompletableFuture<ThriftOperation> executeSqlAsync(String sql, long queryTimeout) {
+
+        TOperationHandle operationHandle = submitSql(sql, queryTimeout);
+
+        StatusPoll statusPoll = new StatusPoll(operationHandle);
+
+        statusPoll.schedule(0);
+
+        return statusPoll.future;
+    }
+
+    private TOperationHandle submitSql(String sql, long queryTimeout) {
+
+        if (QueryUtils.changesSessionState(sql)) {
+            stateChanged = true;
+
+            if (resettable && !QueryUtils.isResettable(sql)) {
+                resettable = false;
+            }
+        }
+
+        TExecuteStatementReq executeStatementReq = new TExecuteStatementReq(sessionHandle, StringUtils.trim(sql));
+        executeStatementReq.setRunAsync(true);
+        executeStatementReq.setQueryTimeout(queryTimeout);
+        //todo: allows per statement configuration of session handle
+        //executeStatementReq.setConfOverlay(null);
+
+        TExecuteStatementResp executeStatementResp;
+
+        try {
+            executeStatementResp = client.ExecuteStatement(executeStatementReq);
+        } catch (TException e) {
+            throw new HiveThriftException("error executing sql [" + sql + ']', e);
+        }
+
+        ThriftUtils.checkStatus(executeStatementResp.getStatus());
+
+        return executeStatementResp.getOperationHandle();
+    }
+
+    /*
+        polls GetOperationStatus with exponential backoff until the operation finishes.  with protocol V10 and later
+        HS2 long polls, holding a status call open for up to hive.server2.long.polling.timeout while the operation
+        runs; the time spent inside the call counts toward the backoff interval so a long polling server isn't made to
+        wait twice.
+     */
+    private int waitForStatementToComplete(TOperationHandle handle) {
 
         TGetOperationStatusReq statusReq = new TGetOperationStatusReq(handle);
 
-        while (!isComplete) {
+        PollingBackoff backoff = PollingBackoff.builder().properties(properties).build();
 
-            TGetOperationStatusResp statusResp;
+        long start = System.currentTimeMillis();
 
+        int statusCalls = 0;
+
+        while (true) {
+
+            long callStart = System.currentTimeMillis();
+
+            statusCalls++;
+
+            if (isComplete(statusReq)) {
+                break;
+            }
+
+            long delay = backoff.nextDelay() - (System.currentTimeMillis() - callStart);
+
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new HiveException("interrupted while waiting for [" + handle + ']', e);
+                }
+            }
+        }
+
+        log.debug("operation completed after {} status calls in {} ms", statusCalls, System.currentTimeMillis() - start);
+
+        return statusCalls;
+    }
+
+    private boolean isComplete(TGetOperationStatusReq statusReq) {
+
+        TGetOperationStatusResp statusResp;
+
+        try {
+            statusResp = client.GetOperationStatus(statusReq);
+        } catch (TException e) {
+            throw new HiveThriftException("error checking status for [" + statusReq.getOperationHandle() + ']', e);
+        }
+
+        ThriftUtils.checkStatus(statusResp.getStatus());
+
+        if (statusResp.isSetOperationState()) {
+
+            switch (statusResp.getOperationState()) {
+                case FINISHED_STATE:
+                    return true;
+                case CLOSED_STATE:
+                case CANCELED_STATE:
+                case TIMEDOUT_STATE:
+                case ERROR_STATE:
+                case UKNOWN_STATE:
+                    throw new HiveThriftException(statusResp);
+                case INITIALIZED_STATE:
+                case PENDING_STATE:
+                case RUNNING_STATE:
+                    break;
+            }
+        }
+
+        return false;
+    }
+
+    /*
+        drives one asynchronous execution.  every poll is a separate task on the shared scheduler so a waiting statement
+        doesn't hold a thread between polls.
+     */
+    private class StatusPoll implements Runnable {
+
+        private final TOperationHandle handle;
+        private final TGetOperationStatusReq statusReq;
+        private final PollingBackoff backoff = PollingBackoff.builder().properties(properties).build();
+        private final CompletableFuture<ThriftOperation> future = new CompletableFuture<>();
+        private final long start = System.currentTimeMillis();
+
+        private int statusCalls;
+
+        StatusPoll(TOperationHandle handle) {
+            this.handle = handle;
+            this.statusReq = new TGetOperationStatusReq(handle);
+        }
+
+        void schedule(long delay) {
+            try {
+                StatusScheduler.TIMER.schedule(this::dispatch, Math.max(delay, 0), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                future.completeExceptionally(e);
+            }
+        }
+
+        // the status call may be long polled by the server, so it runs on its own thread rather than the timer's
+        private void dispatch() {
             try {
-                statusResp = client.GetOperationStatus(statusReq);
-            } catch (TException e) {
-                throw new HiveThriftException("error checking status for [" + handle + ']', e);
+                StatusScheduler.POLLERS.execute(this);
+            } catch (RejectedExecutionException e) {
+                future.completeExceptionally(e);
             }
+        }
+
+        @Override
+        public void run() {
+
+            if (future.isCancelled()) {
+                cancel();
+                return;
+            }
+
+            long callStart = System.currentTimeMillis();
+
+            try {
+
+                statusCalls++;
 
-            ThriftUtils.checkStatus(statusResp.getStatus());
-
-            if (statusResp.isSetOperationState()) {
-
-                switch (statusResp.getOperationState()) {
-                    case FINISHED_STATE:
-                        isComplete = true;
-                        break;
-                    case CLOSED_STATE:
-                    case CANCELED_STATE:
-                    case TIMEDOUT_STATE:
-                    case ERROR_STATE:
-                    case UKNOWN_STATE:
-                        throw new HiveThriftException(statusResp);
-                    case INITIALIZED_STATE:
-                    case PENDING_STATE:
-                    case RUNNING_STATE:
-                        break;
+                if (isComplete(statusReq)) {
+
+                    log.debug("operation completed after {} status calls in {} ms", statusCalls, System.currentTimeMillis() - start);
+
+                    ThriftOperation operation = ThriftOperation.builder()
+                            .client(client)
+                            .pipelined(pipelined)
+                            .handle(handle)
+                            .statusCalls(statusCalls)
+                            .build();
+
+                    if (!future.complete(operation)) {
+                        // cancelled while the operation was being built
+                        operation.close();
+                    }
+
+                } else {
+                    schedule(backoff.nextDelay() - (System.currentTimeMillis() - callStart));
                 }
+
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
             }
+        }
 
+        private void cancel() {
 
+            log.debug("async execution cancelled after {} status calls", statusCalls);
+
+            // the operation hasn't finished so there is no ThriftOperation (or schema) yet; cancel and close the handle directly
+            try {
+                ThriftUtils.checkStatus(client.CancelOperation(new TCancelOperationReq(handle)).getStatus());
+                ThriftUtils.checkStatus(client.CloseOperation(new TCloseOperationReq(handle)).getStatus());
+            } catch (TException | HiveThriftException e) {
+                log.warn(MessageFormat.format("unable to cancel operation [{0}]", handle), e);
+            }
         }
     }
 
+    /*
+        a single timer waits out the backoff between polls; the status calls themselves run on a cached pool.  HS2 long
+        polls GetOperationStatus for up to hive.server2.long.polling.timeout, so a fixed pool would queue every waiting
+        statement behind a handful of long polls.  a statement has at most one poll in flight so the pool never grows
+        past the number of pending statements and idle threads are reclaimed.
+     */
+    private static class StatusScheduler {
+
+        private static final ScheduledExecutorService TIMER = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("status-timer-thread-%d").setDaemon(true).build());
+
+        private static final ExecutorService POLLERS = Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setNameFormat("status-poll-thread-%d").setDaemon(true).build());
+    }
+
 
     public static class ThriftSessionBuilder implements Builder<ThriftSession> {
         private Properties properties;
@@ -478,10 +706,48 @@ public class ThriftSession implements AutoCloseable {
         @Override
         public ThriftSession build() {
 
+            if (ConnectFailover.isEnabled(properties)) {
+                return ConnectFailover.connect(properties, ThriftSessionBuilder::attempt);
+            }
+
+            return attempt(properties);
+        }
+
+        private static ThriftSession attempt(Properties properties) {
+
+            long start = System.nanoTime();
+
+            ThriftSession session;
+
+            try {
+                session = open(properties);
+            } catch (RuntimeException e) {
+                // only an unreachable server is taken out of rotation; a rejected login or session would fail on any of them
+                if (HiveExceptionUtils.isTransportFailure(e)) {
+                    ServerSelector.failed(properties);
+                }
+
+                throw e;
+            }
+
+            ServerSelector.opened(properties, System.nanoTime() - start);
+
+            return session;
+        }
+
+        private static ThriftSession open(Properties properties) {
+
             ThriftTransport thriftTransport = null;
 
             int protocol = HiveDriverProperty.THRIFT_PROTOCOL_VERSION.getInt(properties);
 
+            TProtocolVersion cached = ProtocolVersionCache.get(properties);
+
+            if (cached != null && cached.getValue() < protocol) {
+                // this server is known to reject newer versions; skip straight to the one that worked
+                protocol = cached.getValue();
+            }
+
             while (protocol >= TProtocolVersion.HIVE_CLI_SERVICE_PROTOCOL_V8.getValue()) {
 
                 TProtocolVersion protocolVersion = TProtocolVersion.findByValue(protocol);
@@ -492,7 +758,7 @@ public class ThriftSession implements AutoCloseable {
 
                     thriftTransport = ThriftTransport.builder().properties(properties).build();
 
-                    TCLIService.Iface client = ThriftUtils.createClient(thriftTransport);
+                    ThriftClient client = ThriftUtils.createClient(thriftTransport);
 
                     TOpenSessionResp openSessionResp = ThriftUtils.openSession(properties, client, protocolVersion);
 
@@ -502,9 +768,13 @@ public class ThriftSession implements AutoCloseable {
 
                     log.debug("opened session with protocol {}", serverProtocolVersion);
 
+                    ProtocolVersionCache.put(properties, protocolVersion);
+
                     return new ThriftSession(properties, thriftTransport, client, sessionHandle);
 
                 } catch (InvalidProtocolException e) {
+                    ProtocolVersionCache.recordDowngrade(properties, protocolVersion);
+
                     protocol--;
 
                     try {
@@ -16,7 +16,6 @@
 
 package veil.hdp.hive.jdbc.thrift;
 
-import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.thrift.transport.TTransport;
@@ -26,6 +25,7 @@ import veil.hdp.hive.jdbc.HiveException;
 import veil.hdp.hive.jdbc.TransportMode;
 import veil.hdp.hive.jdbc.utils.BinaryUtils;
 import veil.hdp.hive.jdbc.utils.DriverUtils;
+import veil.hdp.hive.jdbc.utils.HttpClientRegistry;
 import veil.hdp.hive.jdbc.utils.HttpUtils;
 import veil.hdp.hive.jdbc.utils.ThriftUtils;
 
@@ -76,6 +76,16 @@ public class ThriftTransport implements AutoCloseable {
         return !closed.get() && transport.isOpen();
     }
 
+    /**
+     * Determines if several requests can be written before their replies are read.  Not the case for http where every
+     * flush is a separate POST.
+     *
+     * @return true if calls can be pipelined
+     */
+    public boolean supportsPipelining() {
+        return !(transport instanceof StreamingHttpTransport);
+    }
+
     @Override
     public void close() {
 
@@ -83,6 +93,9 @@ public class ThriftTransport implements AutoCloseable {
 
             log.trace("attempting to close {}", this.getClass().getName());
 
+            // the transport may still hold a response from the http client closed below
+            DriverUtils.close(transport);
+
             for (Closeable closeable : closeableList) {
 
                 log.trace("attempting to close {}", closeable.getClass().getName());
@@ -94,8 +107,6 @@ public class ThriftTransport implements AutoCloseable {
                 }
             }
 
-            DriverUtils.close(transport);
-
         }
     }
 
@@ -123,18 +134,23 @@ public class ThriftTransport implements AutoCloseable {
             if (mode == TransportMode.binary) {
                 transport = BinaryUtils.createBinaryTransport(properties);
             } else if (mode == TransportMode.http) {
-                CloseableHttpClient client = HttpUtils.buildClient(properties);
+                HttpClientRegistry.Lease lease = HttpClientRegistry.acquire(properties);
 
-                closeableList.add(client);
+                closeableList.add(lease);
 
-                transport = HttpUtils.createHttpTransport(properties, client);
+                transport = HttpUtils.createHttpTransport(properties, lease.getClient());
             }
 
             if (transport == null) {
                 throw new HiveException("invalid transport mode [" + mode + ']');
             }
 
-            ThriftUtils.openTransport(transport, HiveDriverProperty.THRIFT_TRANSPORT_TIMEOUT.getInt(properties));
+            try {
+                ThriftUtils.openTransport(transport, HiveDriverProperty.THRIFT_TRANSPORT_TIMEOUT.getInt(properties));
+            } catch (HiveException e) {
+                closeableList.forEach(DriverUtils::close);
+                throw e;
+            }
 
             return new ThriftTransport(transport, closeableList);
         }
@@ -19,11 +19,11 @@ package veil.hdp.hive.jdbc.utils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.thrift.transport.*;
-import org.apache.thrift.transport.TSSLTransportFactory.TSSLTransportParameters;
 import veil.hdp.hive.jdbc.AuthenticationMode;
 import veil.hdp.hive.jdbc.HiveDriverProperty;
 import veil.hdp.hive.jdbc.HiveException;
 import veil.hdp.hive.jdbc.security.*;
+import veil.hdp.hive.jdbc.thrift.BufferedSocket;
 
 import javax.net.ssl.SSLParameters;
 import javax.net.ssl.SSLSocket;
@@ -32,6 +32,10 @@ import javax.security.auth.login.LoginException;
 import javax.security.sasl.Sasl;
 import javax.security.sasl.SaslClient;
 import javax.security.sasl.SaslException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
@@ -52,42 +56,69 @@ public final class BinaryUtils {
 
         int socketTimeout = HiveDriverProperty.THRIFT_SOCKET_TIMEOUT.getInt(properties);
         int connectionTimeout = HiveDriverProperty.THRIFT_CONNECTION_TIMEOUT.getInt(properties);
+        int bufferSize = HiveDriverProperty.THRIFT_TRANSPORT_BUFFER_SIZE.getInt(properties);
 
         if (HiveDriverProperty.SSL_ENABLED.getBoolean(properties)) {
 
-            return buildSSLSocket(properties, host, port, socketTimeout);
+            return buildSSLSocket(properties, host, port, socketTimeout, connectionTimeout, bufferSize);
 
         } else {
 
-            return new TSocket(host, port, socketTimeout, connectionTimeout);
+            TSocket socket = new BufferedSocket(host, port, socketTimeout, connectionTimeout, bufferSize);
+
+            // not connected yet, so a larger receive buffer still takes part in window scaling
+            configureSocket(properties, socket.getSocket());
+
+            return socket;
         }
 
     }
 
-    private static TSocket buildSSLSocket(Properties properties, String host, int port, int socketTimeout) {
-        try {
+    private static void configureSocket(Properties properties, Socket socket) {
 
-            TSocket socket;
+        int receiveBufferSize = HiveDriverProperty.THRIFT_SOCKET_RECEIVE_BUFFER_SIZE.getInt(properties);
+        int sendBufferSize = HiveDriverProperty.THRIFT_SOCKET_SEND_BUFFER_SIZE.getInt(properties);
 
-            if (HiveDriverProperty.SSL_TRUST_STORE_PATH.hasValue(properties)) {
-                TSSLTransportParameters params = new TSSLTransportParameters();
-                params.setTrustStore(HiveDriverProperty.SSL_TRUST_STORE_PATH.get(properties), HiveDriverProperty.SSL_TRUST_STORE_PASSWORD.get(properties), null, HiveDriverProperty.SSL_TRUST_STORE_TYPE.get(properties));
-                params.requireClientAuth(true);
+        try {
+            socket.setTcpNoDelay(HiveDriverProperty.THRIFT_SOCKET_TCP_NO_DELAY.getBoolean(properties));
+            socket.setKeepAlive(HiveDriverProperty.THRIFT_SOCKET_KEEP_ALIVE.getBoolean(properties));
 
-                socket = TSSLTransportFactory.getClientSocket(host, port, socketTimeout, params);
-            } else {
+            if (receiveBufferSize > 0) {
+                socket.setReceiveBufferSize(receiveBufferSize);
+            }
 
-                socket = TSSLTransportFactory.getClientSocket(host, port, socketTimeout);
+            if (sendBufferSize > 0) {
+                socket.setSendBufferSize(sendBufferSize);
             }
+        } catch (SocketException e) {
+            throw new HiveException(e);
+        }
+    }
+
+    private static TSocket buildSSLSocket(Properties properties, String host, int port, int socketTimeout, int connectionTimeout, int bufferSize) {
+
+        Socket socket = new Socket();
+
+        try {
+
+            configureSocket(properties, socket);
+
+            socket.connect(new InetSocketAddress(host, port), connectionTimeout);
+
+            // layered with the peer's host and port so the cached context can resume an earlier session with it
+            SSLSocket sslSocket = (SSLSocket) SSLContextCache.get(properties).getSocketFactory().createSocket(socket, host, port, true);
+            sslSocket.setSoTimeout(socketTimeout);
 
-            SSLSocket sslSocket = (SSLSocket) socket.getSocket();
             SSLParameters sslParams = sslSocket.getSSLParameters();
             sslParams.setEndpointIdentificationAlgorithm(ENDPOINT_IDENTIFICATION_ALGORITHM_NAME);
             sslSocket.setSSLParameters(sslParams);
 
-            return new TSocket(sslSocket);
+            SSLContextCache.trackHandshake(sslSocket);
+
+            return new BufferedSocket(sslSocket, bufferSize);
 
-        } catch (TTransportException e) {
+        } catch (IOException | TTransportException e) {
+            DriverUtils.close(socket);
             throw new HiveException(e);
         }
     }
@@ -0,0 +1,286 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc.utils;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import veil.hdp.hive.jdbc.HiveDriverProperty;
+import veil.hdp.hive.jdbc.HiveException;
+
+import java.security.AccessControlContext;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Connects to a server discovered through Zookeeper, moving on to another discovered server when one can't be reached,
+ * so a connect during a rolling restart doesn't fail just because the first pick was down.  Up to
+ * {@code zkFailoverAttempts} servers are tried, each chosen by {@link ServerSelector} from those not yet tried.
+ * <p>
+ * With {@code zkConnectRaceDelay} set, an attempt that hasn't finished by then is raced against one to another server,
+ * happy eyeballs style; the first session to open wins and the others are closed once they finish.  Raced attempts run
+ * on other threads under the caller's {@link AccessControlContext}, so a pre-authenticated {@code Subject} still applies.
+ * <p>
+ * Only transport failures move on to another server (see {@link HiveExceptionUtils#isTransportFailure(Throwable)}); a
+ * server that answers with an error, such as a rejected login, fails the connect straight away.
+ */
+public final class ConnectFailover {
+
+    private static final Logger log = LogManager.getLogger(ConnectFailover.class);
+
+    private static final ExecutorService ATTEMPTS = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("connect-attempt-%d").setDaemon(true).build());
+
+    private static final AtomicLong FAILOVERS = new AtomicLong();
+    private static final AtomicLong RACES = new AtomicLong();
+
+    private ConnectFailover() {
+    }
+
+    public static boolean isEnabled(Properties properties) {
+        return HiveDriverProperty.ZOOKEEPER_DISCOVERY_ENABLED.getBoolean(properties)
+                && HiveDriverProperty.ZOOKEEPER_DISCOVERY_CACHE_ENABLED.getBoolean(properties)
+                && HiveDriverProperty.ZOOKEEPER_DISCOVERY_CONNECT_STRING.hasValue(properties)
+                && HiveDriverProperty.ZOOKEEPER_DISCOVERY_FAILOVER_ATTEMPTS.getInt(properties) > 1;
+    }
+
+    /**
+     * @param properties properties pointing at the server chosen when the url was parsed
+     * @param attempt    opens a session using the properties it is given
+     * @return session opened by the first attempt to succeed
+     */
+    public static <T extends AutoCloseable> T connect(Properties properties, Function<Properties, T> attempt) {
+
+        Set<String> tried = new HashSet<>();
+
+        tried.add(ServerSelector.key(properties));
+
+        Properties first = withAttemptTimeout(properties);
+
+        if (HiveDriverProperty.ZOOKEEPER_DISCOVERY_CONNECT_RACE_DELAY.getInt(properties) > 0) {
+            return race(properties, first, tried, attempt);
+        }
+
+        int attempts = HiveDriverProperty.ZOOKEEPER_DISCOVERY_FAILOVER_ATTEMPTS.getInt(properties);
+
+        RuntimeException failure = null;
+
+        Properties next = first;
+
+        for (int i = 0; i < attempts && next != null; i++) {
+
+            try {
+                return attempt.apply(next);
+            } catch (RuntimeException e) {
+                failure = chain(e, failure);
+
+                if (!HiveExceptionUtils.isTransportFailure(e)) {
+                    throw failure;
+                }
+
+                log.warn("unable to connect to [{}]: {}", ServerSelector.key(next), e.getMessage());
+
+                next = i + 1 < attempts ? next(properties, tried) : null;
+
+                if (next != null) {
+                    FAILOVERS.incrementAndGet();
+                }
+            }
+        }
+
+        throw failure;
+    }
+
+    /**
+     * @return number of attempts started because an earlier attempt failed
+     */
+    public static long getFailovers() {
+        return FAILOVERS.get();
+    }
+
+    /**
+     * @return number of attempts started because an earlier attempt was slow
+     */
+    public static long getRaces() {
+        return RACES.get();
+    }
+
+    private static <T extends AutoCloseable> T race(Properties properties, Properties first, Set<String> tried, Function<Properties, T> attempt) {
+
+        int attempts = HiveDriverProperty.ZOOKEEPER_DISCOVERY_FAILOVER_ATTEMPTS.getInt(properties);
+        long raceDelay = HiveDriverProperty.ZOOKEEPER_DISCOVERY_CONNECT_RACE_DELAY.getInt(properties);
+
+        AccessControlContext caller = AccessController.getContext();
+
+        CompletionService<T> completion = new ExecutorCompletionService<>(ATTEMPTS);
+
+        List<Future<T>> running = new ArrayList<>();
+
+        running.add(completion.submit(asCaller(attempt, first, caller)));
+
+        int started = 1;
+
+        RuntimeException failure = null;
+
+        try {
+            while (!running.isEmpty()) {
+
+                Future<T> done = started < attempts ? completion.poll(raceDelay, TimeUnit.MILLISECONDS) : completion.take();
+
+                if (done == null) {
+                    Properties next = next(properties, tried);
+
+                    if (next == null) {
+                        // nothing left to race against; wait for what is running
+                        attempts = started;
+                    } else {
+                        log.debug("connect is slow; racing [{}]", ServerSelector.key(next));
+
+                        RACES.incrementAndGet();
+
+                        running.add(completion.submit(asCaller(attempt, next, caller)));
+                        started++;
+                    }
+
+                    continue;
+                }
+
+                running.remove(done);
+
+                try {
+                    T session = done.get();
+
+                    for (Future<T> loser : running) {
+                        discard(loser);
+                    }
+
+                    return session;
+
+                } catch (ExecutionException e) {
+                    RuntimeException cause = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new HiveException(e.getCause());
+
+                    failure = chain(cause, failure);
+
+                    if (!HiveExceptionUtils.isTransportFailure(cause)) {
+                        for (Future<T> loser : running) {
+                            discard(loser);
+                        }
+
+                        throw failure;
+                    }
+
+                    log.warn("unable to connect: {}", cause.getMessage());
+
+                    Properties next = started < attempts ? next(properties, tried) : null;
+
+                    if (next != null) {
+                        FAILOVERS.incrementAndGet();
+
+                        running.add(completion.submit(asCaller(attempt, next, caller)));
+                        started++;
+                    }
+                }
+            }
+
+            throw failure;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            for (Future<T> future : running) {
+                discard(future);
+            }
+
+            throw new HiveException(e);
+        }
+    }
+
+    // runs the attempt with the caller's security context, as it would have had on the caller's thread
+    private static <T> Callable<T> asCaller(Function<Properties, T> attempt, Properties properties, AccessControlContext caller) {
+        return () -> AccessController.doPrivileged((PrivilegedAction<T>) () -> attempt.apply(properties), caller);
+    }
+
+    private static Properties next(Properties properties, Set<String> tried) {
+
+        Properties next;
+
+        try {
+            next = ZookeeperUtils.nextServer(properties, tried);
+        } catch (RuntimeException e) {
+            log.warn("unable to find another hive server to try", e);
+            return null;
+        }
+
+        if (next == null) {
+            return null;
+        }
+
+        tried.add(ServerSelector.key(next));
+
+        return withAttemptTimeout(next);
+    }
+
+    private static Properties withAttemptTimeout(Properties properties) {
+
+        int attemptTimeout = HiveDriverProperty.ZOOKEEPER_DISCOVERY_FAILOVER_ATTEMPT_TIMEOUT.getInt(properties);
+
+        if (attemptTimeout <= 0 || attemptTimeout >= HiveDriverProperty.THRIFT_TRANSPORT_TIMEOUT.getInt(properties)) {
+            return properties;
+        }
+
+        Properties limited = new Properties();
+        limited.putAll(properties);
+
+        HiveDriverProperty.THRIFT_TRANSPORT_TIMEOUT.set(limited, attemptTimeout);
+
+        return limited;
+    }
+
+    private static RuntimeException chain(RuntimeException latest, RuntimeException previous) {
+
+        if (previous != null) {
+            latest.addSuppressed(previous);
+        }
+
+        return latest;
+    }
+
+    private static <T extends AutoCloseable> void discard(Future<T> future) {
+        ATTEMPTS.execute(() -> {
+            try {
+                DriverUtils.close(future.get());
+            } catch (InterruptedException | ExecutionException e) {
+                // the attempt failed; nothing to close
+                log.trace("discarded attempt did not open a session", e);
+            }
+        });
+    }
+}
@@ -18,6 +18,7 @@ package veil.hdp.hive.jdbc.utils;
 
 
 import com.google.common.base.Splitter;
+import com.google.common.hash.Hashing;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -25,6 +26,8 @@ import veil.hdp.hive.jdbc.HiveDriverProperty;
 import veil.hdp.hive.jdbc.HiveSQLException;
 
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
 import java.sql.DriverPropertyInfo;
 import java.sql.SQLException;
 import java.util.Map;
@@ -45,6 +48,13 @@ public final class DriverUtils {
     private static final Pattern JDBC_PATTERN = Pattern.compile(JDBC_PART, Pattern.LITERAL);
     private static final String EMPTY_STRING = "";
 
+    // per-process salt so a digest held in a cache key can't be matched against precomputed hashes
+    private static final byte[] DIGEST_SALT = new byte[16];
+
+    static {
+        new SecureRandom().nextBytes(DIGEST_SALT);
+    }
+
     private DriverUtils() {
     }
 
@@ -219,6 +229,21 @@ public final class DriverUtils {
 
     }
 
+    /**
+     * Salted SHA-256 of a secret, for use in long-lived cache keys in place of the secret itself.
+     */
+    public static String digest(String secret) {
+        if (secret == null) {
+            return null;
+        }
+
+        return Hashing.sha256().newHasher()
+                .putBytes(DIGEST_SALT)
+                .putString(secret, StandardCharsets.UTF_8)
+                .hash()
+                .toString();
+    }
+
     public static void close(AutoCloseable closeable) {
         try {
             closeable.close();
@@ -30,19 +30,60 @@ public class FetchIterator extends AbstractIterator<ColumnBasedSet> {
     private final ThriftOperation operation;
     private final int fetchSize;
     private final TFetchOrientation orientation;
+    private final FetchSizeTuner fetchSizeTuner;
+
+    private boolean lastPage;
+
+    // most rows the server has returned in one page
+    private int largestPage;
 
     public FetchIterator(ThriftOperation operation, TFetchOrientation orientation, int fetchSize) {
+        this(operation, orientation, fetchSize, null);
+    }
+
+    public FetchIterator(ThriftOperation operation, TFetchOrientation orientation, int fetchSize, FetchSizeTuner fetchSizeTuner) {
         this.operation = operation;
         this.orientation = orientation;
         this.fetchSize = fetchSize;
+        this.fetchSizeTuner = fetchSizeTuner;
     }
 
     @Override
     protected ColumnBasedSet computeNext() {
 
-        ColumnBasedSet cbs = operation.fetchResults(orientation, fetchSize);
+        if (lastPage) {
+            return endOfData();
+        }
+
+        int size = fetchSizeTuner != null ? fetchSizeTuner.getFetchSize() : fetchSize;
+
+        long start = System.currentTimeMillis();
+
+        ColumnBasedSet cbs = operation.fetchResults(orientation, size);
 
         if (cbs != null && cbs.getRowCount() > 0) {
+
+            int rows = cbs.getRowCount();
+
+            if (fetchSizeTuner == null || size <= largestPage) {
+                // the page has fewer rows than requested; then i don't need to go back to the server to know if i'm done.
+                //
+                // for example rowCount = 10; fetchSize = 100; then no need to look for another page
+                //
+                lastPage = rows < size;
+            } else if (rows < size) {
+                // the tuner asked for more rows than the server has ever returned; the server may cap the page size
+                // (hive.server2.thrift.resultset.max.fetch.size) so this isn't necessarily the end.  stop asking for more
+                // than it returned; an empty page ends the data
+                fetchSizeTuner.limit(rows);
+            }
+
+            largestPage = Math.max(largestPage, rows);
+
+            if (fetchSizeTuner != null) {
+                fetchSizeTuner.update(rows, cbs.getEstimatedSize(), System.currentTimeMillis() - start);
+            }
+
             return cbs;
         } else {
             return endOfData();
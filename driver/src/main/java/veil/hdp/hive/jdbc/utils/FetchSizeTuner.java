@@ -0,0 +1,151 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import veil.hdp.hive.jdbc.Builder;
+import veil.hdp.hive.jdbc.HiveDriverProperty;
+
+import java.util.Properties;
+
+/**
+ * Picks the row count for each fetch of a result set.  After every full page the size of the next request is derived
+ * from the measured bytes and milliseconds per row so that a page lands near the target size and round trip time,
+ * whichever is hit first.  The size never more than doubles from one page to the next and always stays within the
+ * configured floor and ceiling.
+ */
+public class FetchSizeTuner {
+
+    private static final Logger log = LogManager.getLogger(FetchSizeTuner.class);
+
+    private int minSize;
+    private int maxSize;
+    private final long targetBytes;
+    private final long targetLatency;
+
+    private int fetchSize;
+
+    private FetchSizeTuner(int fetchSize, int minSize, int maxSize, long targetBytes, long targetLatency) {
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetBytes = targetBytes;
+        this.targetLatency = targetLatency;
+        this.fetchSize = clamp(fetchSize);
+    }
+
+    public static FetchSizeTunerBuilder builder() {
+        return new FetchSizeTunerBuilder();
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * @param rows    rows returned by the last fetch
+     * @param bytes   estimated size of the last page
+     * @param elapsed round trip time of the last fetch in milliseconds
+     */
+    public void update(int rows, long bytes, long elapsed) {
+
+        if (rows < fetchSize || rows == 0) {
+            // a short page is the last page, or one capped by the server and handled by limit; nothing to learn from it
+            return;
+        }
+
+        long next = (long) fetchSize * 2;
+
+        if (bytes > 0) {
+            next = Math.min(next, targetBytes * rows / bytes);
+        }
+
+        if (elapsed > 0) {
+            next = Math.min(next, targetLatency * rows / elapsed);
+        }
+
+        int previous = fetchSize;
+
+        fetchSize = clamp(next);
+
+        if (previous != fetchSize) {
+            log.debug("fetch size changed from {} to {}; last page had {} rows, {} bytes, took {} ms", previous, fetchSize, rows, bytes, elapsed);
+        }
+    }
+
+    /**
+     * Lowers the ceiling to the number of rows the server returned when asked for more, since it may cap page size.
+     *
+     * @param rows rows returned by a fetch that asked for more
+     */
+    public void limit(int rows) {
+
+        maxSize = Math.max(rows, 1);
+        minSize = Math.min(minSize, maxSize);
+
+        int previous = fetchSize;
+
+        fetchSize = clamp(fetchSize);
+
+        log.debug("fetch size limited from {} to {}; the server returned a page of {} rows", previous, fetchSize, rows);
+    }
+
+    private int clamp(long size) {
+        return (int) Math.max(minSize, Math.min(maxSize, size));
+    }
+
+    public static class FetchSizeTunerBuilder implements Builder<FetchSizeTuner> {
+
+        private Properties properties;
+        private int fetchSize;
+        private int maxRows;
+
+        private FetchSizeTunerBuilder() {
+        }
+
+        public FetchSizeTunerBuilder properties(Properties properties) {
+            this.properties = properties;
+            return this;
+        }
+
+        public FetchSizeTunerBuilder fetchSize(int fetchSize) {
+            this.fetchSize = fetchSize;
+            return this;
+        }
+
+        public FetchSizeTunerBuilder maxRows(int maxRows) {
+            this.maxRows = maxRows;
+            return this;
+        }
+
+        public FetchSizeTuner build() {
+
+            int minSize = Math.max(HiveDriverProperty.FETCH_SIZE_MIN.getInt(properties), 1);
+            int maxSize = Math.max(HiveDriverProperty.FETCH_SIZE_MAX.getInt(properties), minSize);
+
+            // no point asking for more rows than the result set will ever return
+            if (maxRows > 0) {
+                maxSize = Math.min(maxSize, maxRows);
+                minSize = Math.min(minSize, maxSize);
+            }
+
+            return new FetchSizeTuner(fetchSize, minSize, maxSize,
+                    HiveDriverProperty.FETCH_TARGET_BYTES.getInt(properties),
+                    HiveDriverProperty.FETCH_TARGET_LATENCY.getInt(properties));
+        }
+    }
+}
@@ -21,12 +21,20 @@ import com.google.common.base.Splitter;
 import com.google.common.collect.Iterables;
 import org.apache.commons.lang3.RegExUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
 import veil.hdp.hive.jdbc.HiveSQLException;
+import veil.hdp.hive.jdbc.thrift.HiveThriftException;
 
+import javax.security.sasl.SaslException;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.net.UnknownHostException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeoutException;
 
 public final class HiveExceptionUtils {
 
@@ -76,6 +84,37 @@ public final class HiveExceptionUtils {
         return throwable;
     }
 
+    /**
+     * @return true if the server couldn't be reached or dropped the connection: refused, reset, unknown host or timed
+     * out.  Failures the server answered, such as a rejected login or an error status from OpenSession, are not; they
+     * would fail the same way on any other server.
+     */
+    public static boolean isTransportFailure(Throwable throwable) {
+
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause() == cause ? null : cause.getCause()) {
+
+            // an error status carries the server's own stack trace as its cause; a socket problem in there is HS2's, not ours
+            if (cause instanceof HiveThriftException && ((HiveThriftException) cause).getStatus() != null) {
+                return false;
+            }
+
+            // a rejected login, or the local http pool being full, says nothing about whether the server is reachable
+            if (cause instanceof SaslException || cause instanceof ConnectionPoolTimeoutException) {
+                return false;
+            }
+
+            if (cause instanceof SocketException
+                    || cause instanceof InterruptedIOException
+                    || cause instanceof UnknownHostException
+                    || cause instanceof NoHttpResponseException
+                    || cause instanceof TimeoutException) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
     private static Throwable newInstance(String className, String message, Throwable cause) {
         try {
             return (Throwable) Class.forName(className).getConstructor(String.class, Throwable.class).newInstance(message, cause);
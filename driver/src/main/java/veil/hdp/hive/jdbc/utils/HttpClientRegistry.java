@@ -0,0 +1,270 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc.utils;
+
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import veil.hdp.hive.jdbc.AuthenticationMode;
+import veil.hdp.hive.jdbc.HiveDriverProperty;
+import veil.hdp.hive.jdbc.security.KerberosMode;
+import veil.hdp.hive.jdbc.security.KerberosService;
+
+import javax.security.auth.Subject;
+import java.io.Closeable;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Hands out {@link CloseableHttpClient}s shared by every connection to the same endpoint with the same security
+ * settings, so connections reuse pooled sockets, TLS sessions, loaded key stores and the kerberos cookie.  Clients are
+ * reference counted; once the last connection lets go a client is kept for {@code httpKeepAliveTimeout} before it is
+ * closed, so connection churn doesn't rebuild it every time.
+ * <p>
+ * A shared client needs a pooling connection manager; with {@code httpPoolEnabled=false} every connection gets its own
+ * client as before.
+ * <p>
+ * With {@code krb5Mode=PREAUTH} the identity comes from the caller's {@link Subject} rather than the properties, so
+ * clients are shared only between callers with the same principals; otherwise one user's cookie would be replayed for
+ * another.
+ */
+public final class HttpClientRegistry {
+
+    private static final Logger log = LogManager.getLogger(HttpClientRegistry.class);
+
+    // everything HttpUtils.buildClient and the request interceptors read
+    // keys live as long as the client; keep digests rather than the secrets themselves
+    private static final Set<HiveDriverProperty> SECRET_PROPERTIES = EnumSet.of(
+            HiveDriverProperty.PASSWORD,
+            HiveDriverProperty.SSL_TRUST_STORE_PASSWORD,
+            HiveDriverProperty.SSL_KEY_STORE_PASSWORD);
+
+    private static final HiveDriverProperty[] KEY_PROPERTIES = {
+            HiveDriverProperty.HOST_NAME,
+            HiveDriverProperty.PORT_NUMBER,
+            HiveDriverProperty.HTTP_ENDPOINT,
+            HiveDriverProperty.AUTHENTICATION_MODE,
+            HiveDriverProperty.USER,
+            HiveDriverProperty.PASSWORD,
+            HiveDriverProperty.SSL_ENABLED,
+            HiveDriverProperty.SSL_TRUST_STORE_PATH,
+            HiveDriverProperty.SSL_TRUST_STORE_TYPE,
+            HiveDriverProperty.SSL_TRUST_STORE_PASSWORD,
+            HiveDriverProperty.SSL_TWO_WAY_ENABLED,
+            HiveDriverProperty.SSL_KEY_STORE_PATH,
+            HiveDriverProperty.SSL_KEY_STORE_TYPE,
+            HiveDriverProperty.SSL_KEY_STORE_PASSWORD,
+            HiveDriverProperty.HTTP_POOL_MAX_TOTAL,
+            HiveDriverProperty.HTTP_POOL_MAX_PER_ROUTE,
+            HiveDriverProperty.HTTP_KEEP_ALIVE_TIMEOUT,
+            HiveDriverProperty.HTTP_COOKIE_REPLAY_ENABLED,
+            HiveDriverProperty.HTTP_COOKIE_NAME,
+            HiveDriverProperty.KERBEROS_MODE,
+            HiveDriverProperty.KERBEROS_SERVER_PRINCIPAL,
+            HiveDriverProperty.KERBEROS_USER_KEYTAB,
+            HiveDriverProperty.KERBEROS_DEBUG_ENABLED,
+            HiveDriverProperty.KERBEROS_USE_SUBJECT_CREDENTIALS_ONLY,
+            HiveDriverProperty.JAAS_DEBUG_ENABLED
+    };
+
+    // guarded by CLIENTS
+    private static final Map<List<String>, SharedClient> CLIENTS = new HashMap<>();
+
+    private HttpClientRegistry() {
+    }
+
+    public static Lease acquire(Properties properties) {
+
+        if (!HiveDriverProperty.HTTP_POOL_ENABLED.getBoolean(properties)) {
+            CloseableHttpClient client = HttpUtils.buildClient(properties);
+
+            return new Lease(client, () -> DriverUtils.close(client));
+        }
+
+        List<String> key = buildKey(properties);
+
+        SharedClient shared;
+        boolean created = false;
+
+        synchronized (CLIENTS) {
+            shared = CLIENTS.get(key);
+
+            if (shared == null) {
+                shared = new SharedClient(key, HiveDriverProperty.HTTP_KEEP_ALIVE_TIMEOUT.getInt(properties));
+
+                CLIENTS.put(key, shared);
+
+                created = true;
+            }
+
+            shared.references++;
+        }
+
+        // building loads key stores and the SSL context; do it outside the lock so other endpoints aren't held up
+        if (created) {
+            try {
+                shared.client.complete(HttpUtils.buildClient(properties));
+            } catch (RuntimeException e) {
+                synchronized (CLIENTS) {
+                    CLIENTS.remove(key, shared);
+                }
+
+                shared.client.completeExceptionally(e);
+
+                throw e;
+            }
+
+            log.debug("created shared http client for [{}:{}]", HiveDriverProperty.HOST_NAME.get(properties), HiveDriverProperty.PORT_NUMBER.get(properties));
+        }
+
+        CloseableHttpClient client;
+
+        try {
+            client = shared.client.join();
+        } catch (CompletionException e) {
+            // the build failed for whoever started it; the entry is gone so nothing needs releasing
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+
+        SharedClient leased = shared;
+
+        return new Lease(client, () -> release(leased));
+    }
+
+    /**
+     * @return number of shared clients currently held, whether in use or lingering
+     */
+    public static int getClientCount() {
+        synchronized (CLIENTS) {
+            return CLIENTS.size();
+        }
+    }
+
+    private static void release(SharedClient shared) {
+
+        long generation;
+
+        synchronized (CLIENTS) {
+            if (--shared.references > 0) {
+                return;
+            }
+
+            generation = ++shared.generation;
+        }
+
+        HttpUtils.schedule(() -> expire(shared, generation), shared.linger);
+    }
+
+    private static void expire(SharedClient shared, long generation) {
+
+        synchronized (CLIENTS) {
+            // used again, and possibly released again, since this check was scheduled
+            if (shared.references > 0 || shared.generation != generation) {
+                return;
+            }
+
+            CLIENTS.remove(shared.key);
+        }
+
+        log.debug("closing idle shared http client");
+
+        DriverUtils.close(shared.client.join());
+    }
+
+    private static List<String> buildKey(Properties properties) {
+
+        List<String> key = new ArrayList<>(KEY_PROPERTIES.length);
+
+        for (HiveDriverProperty property : KEY_PROPERTIES) {
+            key.add(SECRET_PROPERTIES.contains(property) ? DriverUtils.digest(property.get(properties)) : property.get(properties));
+        }
+
+        if (isPreAuthenticated(properties)) {
+            key.add(identity(KerberosService.getPreAuthenticatedSubject()));
+        }
+
+        return key;
+    }
+
+    private static boolean isPreAuthenticated(Properties properties) {
+        return AuthenticationMode.valueOf(HiveDriverProperty.AUTHENTICATION_MODE.get(properties)) == AuthenticationMode.KERBEROS
+                && KerberosMode.valueOf(HiveDriverProperty.KERBEROS_MODE.get(properties)) == KerberosMode.PREAUTH;
+    }
+
+    private static String identity(Subject subject) {
+
+        if (subject == null) {
+            return null;
+        }
+
+        return subject.getPrincipals().stream().map(Principal::getName).sorted().collect(Collectors.joining(","));
+    }
+
+    private static class SharedClient {
+
+        private final List<String> key;
+        // completed by the connection that created the entry; everyone else waits for it
+        private final CompletableFuture<CloseableHttpClient> client = new CompletableFuture<>();
+        private final long linger;
+
+        // guarded by CLIENTS
+        private int references;
+        private long generation;
+
+        SharedClient(List<String> key, long linger) {
+            this.key = key;
+            this.linger = linger;
+        }
+    }
+
+    /**
+     * A connection's hold on a client.  Closing it releases the hold; the client itself is closed only when nothing
+     * else holds it.
+     */
+    public static final class Lease implements Closeable {
+
+        private final CloseableHttpClient client;
+        private final Runnable onClose;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private Lease(CloseableHttpClient client, Runnable onClose) {
+            this.client = client;
+            this.onClose = onClose;
+        }
+
+        public CloseableHttpClient getClient() {
+            return client;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                onClose.run();
+            }
+        }
+    }
+}
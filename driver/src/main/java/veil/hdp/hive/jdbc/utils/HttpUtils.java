@@ -16,40 +16,43 @@
 
 package veil.hdp.hive.jdbc.utils;
 
-import org.apache.commons.lang3.StringUtils;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.client.CookieStore;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.HttpClientConnectionManager;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.impl.conn.BasicHttpClientConnectionManager;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
-import org.apache.http.ssl.SSLContexts;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.thrift.transport.THttpClient;
 import org.apache.thrift.transport.TTransport;
-import org.apache.thrift.transport.TTransportException;
 import veil.hdp.hive.jdbc.AuthenticationMode;
 import veil.hdp.hive.jdbc.HiveDriverProperty;
 import veil.hdp.hive.jdbc.HiveException;
 import veil.hdp.hive.jdbc.security.http.BasicRequestInterceptor;
 import veil.hdp.hive.jdbc.security.http.KerberosRequestInterceptor;
 import veil.hdp.hive.jdbc.security.http.XsrfRequestInterceptor;
-import veil.hdp.hive.jdbc.thrift.HiveThriftException;
+import veil.hdp.hive.jdbc.thrift.StreamingHttpTransport;
 
 import javax.net.ssl.SSLContext;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.security.*;
-import java.security.cert.CertificateException;
+import javax.net.ssl.SSLSocket;
+import java.util.Collections;
 import java.util.Properties;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public final class HttpUtils {
 
@@ -61,20 +64,6 @@ public final class HttpUtils {
     private HttpUtils() {
     }
 
-    /*
-        todo: see if any of these optimizations can/should be applied
-
-        From Thrift THttpClient
-
-        * When using HttpClient, the following configuration leads to 5-15%
-        * better performance than the HttpURLConnection implementation:
-        *
-        * http.protocol.version=HttpVersion.HTTP_1_1
-        * http.protocol.content-charset=UTF-8
-        * http.protocol.expect-continue=false
-        * http.connection.stalecheck=false
-     */
-
     public static CloseableHttpClient buildClient(Properties properties) {
 
         AuthenticationMode authenticationMode = AuthenticationMode.valueOf(HiveDriverProperty.AUTHENTICATION_MODE.get(properties));
@@ -99,18 +88,39 @@ public final class HttpUtils {
 
         HttpClientBuilder clientBuilder = HttpClients.custom();
 
+        HttpClientConnectionManager cm;
+
         if (HiveDriverProperty.HTTP_POOL_ENABLED.getBoolean(properties)) {
-            PoolingHttpClientConnectionManager cm = new PoolingHttpClientConnectionManager(registry);
-            cm.setMaxTotal(HiveDriverProperty.HTTP_POOL_MAX_TOTAL.getInt(properties));
-            cm.setDefaultMaxPerRoute(HiveDriverProperty.HTTP_POOL_MAX_PER_ROUTE.getInt(properties));
+            PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager(registry);
+            pool.setMaxTotal(HiveDriverProperty.HTTP_POOL_MAX_TOTAL.getInt(properties));
+            pool.setDefaultMaxPerRoute(HiveDriverProperty.HTTP_POOL_MAX_PER_ROUTE.getInt(properties));
+            // no stale check before reuse; connections are expired by the keep alive strategy before the server drops them
+            pool.setValidateAfterInactivity(-1);
 
-            clientBuilder.setConnectionManager(cm);
+            cm = pool;
         } else {
-            BasicHttpClientConnectionManager cm = new BasicHttpClientConnectionManager(registry);
-
-            clientBuilder.setConnectionManager(cm);
+            cm = new BasicHttpClientConnectionManager(registry);
         }
 
+        clientBuilder.setConnectionManager(cm);
+
+        IdleConnectionEvictor.register(cm);
+
+        // settings recommended by THttpClient: HTTP/1.1 (the default) and no expect-continue handshake.  a call waits at
+        // most thriftTransportTimeout for a pooled connection; HS2 long polls status calls, so a busy pool can stay full
+        clientBuilder.setDefaultRequestConfig(RequestConfig.custom()
+                .setExpectContinueEnabled(false)
+                .setConnectionRequestTimeout(HiveDriverProperty.THRIFT_TRANSPORT_TIMEOUT.getInt(properties))
+                .build());
+
+        long keepAliveTimeout = HiveDriverProperty.HTTP_KEEP_ALIVE_TIMEOUT.getInt(properties);
+
+        clientBuilder.setKeepAliveStrategy((response, context) -> {
+            long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+
+            return duration > 0 ? Math.min(duration, keepAliveTimeout) : keepAliveTimeout;
+        });
+
         clientBuilder.addInterceptorFirst(httpRequestInterceptor);
         clientBuilder.addInterceptorLast(new XsrfRequestInterceptor());
 
@@ -124,119 +134,103 @@ public final class HttpUtils {
 
 
         if (HiveDriverProperty.SSL_ENABLED.getBoolean(properties)) {
-            SSLConnectionSocketFactory sslSocketFactory;
-
-            if (HiveDriverProperty.SSL_TWO_WAY_ENABLED.getBoolean(properties)) {
-                sslSocketFactory = buildTwoWaySSLSocketFactory(properties);
-            } else if (HiveDriverProperty.SSL_TRUST_STORE_PATH.hasValue(properties)) {
-                sslSocketFactory = buildOneWaySSLSocketFactory(properties);
-            } else {
-                sslSocketFactory = buildDefaultSSLSocketFactory();
-            }
-
-            registryBuilder.register(HTTPS, sslSocketFactory);
-
+            registryBuilder.register(HTTPS, new TrackingSSLConnectionSocketFactory(SSLContextCache.get(properties)));
         }
 
         return registryBuilder.build();
     }
 
-    private static SSLConnectionSocketFactory buildDefaultSSLSocketFactory() {
-        return SSLConnectionSocketFactory.getSocketFactory();
-    }
-
-    private static SSLConnectionSocketFactory buildOneWaySSLSocketFactory(Properties properties) {
 
-        try {
-            char[] trustStorePassword = HiveDriverProperty.SSL_TRUST_STORE_PASSWORD.get(properties).toCharArray();
+    private static HttpRequestInterceptor buildKerberosInterceptor(Properties properties) {
 
-            KeyStore trustStore = buildKeyStore(HiveDriverProperty.SSL_TRUST_STORE_PATH.get(properties), HiveDriverProperty.SSL_TRUST_STORE_TYPE.get(properties), trustStorePassword);
+        boolean isCookieReplayEnabled = HiveDriverProperty.HTTP_COOKIE_REPLAY_ENABLED.getBoolean(properties);
 
-            SSLContext sslContext = SSLContexts.custom().loadTrustMaterial(trustStore, null).build();
+        log.info("Cookie Replay is enabled!");
 
-            return new SSLConnectionSocketFactory(sslContext);
+        CookieStore cookieStore = null;
 
-        } catch (NoSuchAlgorithmException | KeyManagementException | KeyStoreException e) {
-            throw new HiveException(e);
+        if (isCookieReplayEnabled) {
+            cookieStore = new BasicCookieStore();
         }
-    }
-
 
-    private static SSLConnectionSocketFactory buildTwoWaySSLSocketFactory(Properties properties) {
+        return new KerberosRequestInterceptor(properties, cookieStore);
+    }
 
-        try {
-            char[] trustStorePassword = HiveDriverProperty.SSL_TRUST_STORE_PASSWORD.get(properties).toCharArray();
+    private static HttpRequestInterceptor buildBasicInterceptor() {
+        return new BasicRequestInterceptor();
+    }
 
-            KeyStore trustStore = buildKeyStore(HiveDriverProperty.SSL_TRUST_STORE_PATH.get(properties), HiveDriverProperty.SSL_TRUST_STORE_TYPE.get(properties), trustStorePassword);
+    public static TTransport createHttpTransport(Properties properties, CloseableHttpClient httpClient) {
+        String host = HiveDriverProperty.HOST_NAME.get(properties);
+        int port = HiveDriverProperty.PORT_NUMBER.getInt(properties);
+        boolean sslEnabled = HiveDriverProperty.SSL_ENABLED.getBoolean(properties);
+        String endpoint = HiveDriverProperty.HTTP_ENDPOINT.get(properties);
 
-            char[] keystorePassword = HiveDriverProperty.SSL_KEY_STORE_PASSWORD.get(properties).toCharArray();
+        String scheme = sslEnabled ? HTTPS : HTTP;
 
-            KeyStore keyStore = buildKeyStore(HiveDriverProperty.SSL_KEY_STORE_PATH.get(properties), HiveDriverProperty.SSL_KEY_STORE_TYPE.get(properties), keystorePassword);
+        String url = scheme + "://" + host + ':' + port + '/' + endpoint;
 
-            SSLContext sslContext = SSLContexts.custom().loadKeyMaterial(keyStore, keystorePassword).loadTrustMaterial(trustStore, null).build();
+        return new StreamingHttpTransport(url, httpClient);
 
-            return new SSLConnectionSocketFactory(sslContext);
+    }
 
-        } catch (NoSuchAlgorithmException | KeyManagementException | UnrecoverableKeyException | KeyStoreException e) {
-            throw new HiveException(e);
-        }
+    static void schedule(Runnable task, long delayMillis) {
+        IdleConnectionEvictor.EXECUTOR.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
     }
 
-    private static KeyStore buildKeyStore(String path, String type, char[] password) {
+    /**
+     * Counts full and resumed handshakes in {@link SSLContextCache}.
+     */
+    private static class TrackingSSLConnectionSocketFactory extends SSLConnectionSocketFactory {
 
-        if (StringUtils.isBlank(path)) {
-            throw new IllegalArgumentException("keystore path is null!");
+        TrackingSSLConnectionSocketFactory(SSLContext sslContext) {
+            super(sslContext);
         }
 
-        try {
-
-            KeyStore keyStore = KeyStore.getInstance(type);
-
-            try (FileInputStream fis = new FileInputStream(path)) {
-                keyStore.load(fis, password);
-            }
-
-            return keyStore;
-        } catch (CertificateException | IOException | NoSuchAlgorithmException | KeyStoreException e) {
-            throw new HiveException(e);
+        @Override
+        protected void prepareSocket(SSLSocket socket) {
+            SSLContextCache.trackHandshake(socket);
         }
     }
 
+    /**
+     * Closes pooled connections whose keep alive has run out, for every connection manager the driver has built, on one
+     * shared daemon thread.  Managers are held weakly and skipped once shut down.
+     */
+    private static final class IdleConnectionEvictor {
 
-    private static HttpRequestInterceptor buildKerberosInterceptor(Properties properties) {
-
-        boolean isCookieReplayEnabled = HiveDriverProperty.HTTP_COOKIE_REPLAY_ENABLED.getBoolean(properties);
+        private static final long INTERVAL_MILLIS = 5000;
 
-        log.info("Cookie Replay is enabled!");
+        private static final Set<HttpClientConnectionManager> MANAGERS = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
 
-        CookieStore cookieStore = null;
+        private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("http-connection-evictor-%d").setDaemon(true).build());
 
-        if (isCookieReplayEnabled) {
-            cookieStore = new BasicCookieStore();
+        static {
+            EXECUTOR.scheduleWithFixedDelay(IdleConnectionEvictor::evict, INTERVAL_MILLIS, INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
         }
 
-        return new KerberosRequestInterceptor(properties, cookieStore);
-    }
+        private IdleConnectionEvictor() {
+        }
 
-    private static HttpRequestInterceptor buildBasicInterceptor() {
-        return new BasicRequestInterceptor();
-    }
+        static void register(HttpClientConnectionManager cm) {
+            MANAGERS.add(cm);
+        }
 
-    public static TTransport createHttpTransport(Properties properties, CloseableHttpClient httpClient) {
-        String host = HiveDriverProperty.HOST_NAME.get(properties);
-        int port = HiveDriverProperty.PORT_NUMBER.getInt(properties);
-        boolean sslEnabled = HiveDriverProperty.SSL_ENABLED.getBoolean(properties);
-        String endpoint = HiveDriverProperty.HTTP_ENDPOINT.get(properties);
+        private static void evict() {
 
-        String scheme = sslEnabled ? HTTPS : HTTP;
+            HttpClientConnectionManager[] managers;
 
-        String url = scheme + "://" + host + ':' + port + '/' + endpoint;
+            synchronized (MANAGERS) {
+                managers = MANAGERS.toArray(new HttpClientConnectionManager[0]);
+            }
 
-        try {
-            return new THttpClient(url, httpClient);
-        } catch (TTransportException e) {
-            throw new HiveThriftException("error creating client for url [" + url + ']', e);
+            for (HttpClientConnectionManager cm : managers) {
+                try {
+                    cm.closeExpiredConnections();
+                } catch (RuntimeException e) {
+                    log.debug(e.getMessage(), e);
+                }
+            }
         }
-
     }
 }
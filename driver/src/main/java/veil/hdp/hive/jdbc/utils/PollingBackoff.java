@@ -0,0 +1,89 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc.utils;
+
+import veil.hdp.hive.jdbc.Builder;
+import veil.hdp.hive.jdbc.HiveDriverProperty;
+
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Exponential backoff for polling.  Each call to {@link #nextDelay()} returns the current interval, spread by up to
+ * +/- jitter, and then grows the interval by the multiplier until it reaches the max interval.  Not thread safe; use
+ * one instance per wait.
+ */
+public class PollingBackoff {
+
+    private final long maxInterval;
+    private final double multiplier;
+    private final double jitter;
+
+    private long interval;
+
+    private PollingBackoff(long initialDelay, double multiplier, long maxInterval, double jitter) {
+        this.interval = initialDelay;
+        this.multiplier = multiplier;
+        this.maxInterval = maxInterval;
+        this.jitter = jitter;
+    }
+
+    public static PollingBackoffBuilder builder() {
+        return new PollingBackoffBuilder();
+    }
+
+    /**
+     * @return milliseconds to wait before the next poll
+     */
+    public long nextDelay() {
+
+        long delay = interval;
+
+        if (jitter > 0 && delay > 0) {
+            double spread = delay * jitter;
+            delay = Math.round(delay - spread + ThreadLocalRandom.current().nextDouble() * spread * 2);
+        }
+
+        // an interval of 0 never grows by multiplying; step to 1 ms so a 0 initial delay can't busy poll
+        interval = Math.min(maxInterval, (long) Math.ceil(Math.max(interval, 1) * multiplier));
+
+        return Math.max(0, delay);
+    }
+
+    public static class PollingBackoffBuilder implements Builder<PollingBackoff> {
+
+        private Properties properties;
+
+        private PollingBackoffBuilder() {
+        }
+
+        public PollingBackoffBuilder properties(Properties properties) {
+            this.properties = properties;
+            return this;
+        }
+
+        public PollingBackoff build() {
+
+            long initialDelay = Math.max(HiveDriverProperty.STATUS_POLL_INITIAL_DELAY.getInt(properties), 0);
+            long maxInterval = Math.max(HiveDriverProperty.STATUS_POLL_MAX_INTERVAL.getInt(properties), Math.max(initialDelay, 1));
+            double multiplier = Math.max(HiveDriverProperty.STATUS_POLL_MULTIPLIER.getDouble(properties), 1);
+            double jitter = Math.min(Math.max(HiveDriverProperty.STATUS_POLL_JITTER.getDouble(properties), 0), 1);
+
+            return new PollingBackoff(initialDelay, multiplier, maxInterval, jitter);
+        }
+    }
+}
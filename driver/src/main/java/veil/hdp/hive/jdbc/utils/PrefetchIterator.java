@@ -0,0 +1,186 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc.utils;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import veil.hdp.hive.jdbc.HiveException;
+import veil.hdp.hive.jdbc.data.ColumnBasedSet;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fetches pages on a background thread so the next page is (usually) already in memory when the current one has been
+ * consumed.  At most {@code depth} pages, and at most {@code maxBytes} of estimated page data, are held ahead of the
+ * consumer; a single page is always allowed so a page larger than the cap can't stall the fetch.
+ */
+public class PrefetchIterator extends AbstractIterator<ColumnBasedSet> implements AutoCloseable {
+
+    private static final Logger log = LogManager.getLogger(PrefetchIterator.class);
+
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("prefetch-thread-%d").setDaemon(true).build());
+
+    private final Iterator<ColumnBasedSet> source;
+    private final int depth;
+    private final long maxBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+
+    // guarded by lock
+    private final Queue<ColumnBasedSet> pages = new ArrayDeque<>();
+    private long queuedBytes;
+    private boolean done;
+    private boolean closed;
+    private Throwable failure;
+
+    public PrefetchIterator(Iterator<ColumnBasedSet> source, int depth, long maxBytes) {
+        this.source = source;
+        this.depth = Math.max(depth, 1);
+        this.maxBytes = maxBytes;
+
+        EXECUTOR.execute(this::fetch);
+    }
+
+    private void fetch() {
+
+        try {
+
+            while (awaitCapacity() && source.hasNext()) {
+
+                ColumnBasedSet page = source.next();
+
+                lock.lock();
+
+                try {
+                    if (closed) {
+                        return;
+                    }
+
+                    pages.add(page);
+                    queuedBytes += page.getEstimatedSize();
+                    notEmpty.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+        } catch (Throwable e) {
+            // an Error must reach the consumer too, or it would read as the end of the data
+            log.debug("prefetch failed", e);
+
+            lock.lock();
+
+            try {
+                failure = e;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+
+            lock.lock();
+
+            try {
+                done = true;
+                notEmpty.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private boolean awaitCapacity() {
+        lock.lock();
+
+        try {
+            while (!closed && !pages.isEmpty() && (pages.size() >= depth || queuedBytes >= maxBytes)) {
+                notFull.awaitUninterruptibly();
+            }
+
+            return !closed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    protected ColumnBasedSet computeNext() {
+        lock.lock();
+
+        try {
+            while (!closed && pages.isEmpty() && !done) {
+                notEmpty.await();
+            }
+
+            ColumnBasedSet page = pages.poll();
+
+            if (page != null) {
+                queuedBytes -= page.getEstimatedSize();
+                notFull.signalAll();
+                return page;
+            }
+
+            if (failure instanceof RuntimeException) {
+                throw (RuntimeException) failure;
+            }
+
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+
+            if (failure != null) {
+                throw new HiveException(failure);
+            }
+
+            return endOfData();
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new HiveException(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops fetching and drops any pages already fetched.  A fetch that is already in flight is allowed to finish but its
+     * page is discarded.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+
+        try {
+            closed = true;
+            pages.clear();
+            queuedBytes = 0;
+            notFull.signalAll();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
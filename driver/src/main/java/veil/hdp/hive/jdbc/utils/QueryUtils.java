@@ -23,12 +23,28 @@ import veil.hdp.hive.jdbc.HiveConnection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.regex.Pattern;
 
 
 public final class QueryUtils {
 
     private static final Logger log = LogManager.getLogger(QueryUtils.class);
 
+    // leading whitespace, comments and parentheses
+    private static final String PREFIX = "^(?:\\s+|--[^\\n]*(?:\\n|$)|/\\*.*?\\*/|\\()*";
+
+    /*
+        statements known to leave the session as they found it.  everything else counts as changing it: besides SET,
+        USE and ADD JAR, DDL can create temporary tables, functions and macros that live only in the session.
+     */
+    private static final Pattern READ_ONLY_STATEMENT = Pattern.compile(PREFIX + "(select|show|describe|desc|explain)\\b", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    /*
+        state changes that RESET, SET and USE can undo: configuration and the current database.  RESET doesn't clear
+        hivevar, system, env or metastore (metaconf) variables, temporary objects or added resources.
+     */
+    private static final Pattern RESETTABLE_STATEMENT = Pattern.compile(PREFIX + "(use|reset|set(?!\\s+(hivevar|system|env|metaconf)\\s*:))\\b", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
     private QueryUtils() {
     }
 
@@ -47,6 +63,18 @@ public final class QueryUtils {
         return schema;
     }
 
+    public static boolean changesSessionState(String sql) {
+        return sql != null && !READ_ONLY_STATEMENT.matcher(sql).lookingAt();
+    }
+
+    /**
+     * @return false if the statement may leave state behind that resetting the session's configuration and database
+     * doesn't remove, such as a temporary table or function or an added jar
+     */
+    public static boolean isResettable(String sql) {
+        return !changesSessionState(sql) || RESETTABLE_STATEMENT.matcher(sql).lookingAt();
+    }
+
     public static void setDatabaseSchema(HiveConnection connection, String schema) throws SQLException {
         try (Statement statement = connection.createStatement()) {
             statement.executeUpdate("USE " + schema);
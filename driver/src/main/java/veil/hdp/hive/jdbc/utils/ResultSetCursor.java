@@ -0,0 +1,124 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc.utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import veil.hdp.hive.jdbc.data.ColumnBasedSet;
+import veil.hdp.hive.jdbc.data.ColumnData;
+
+import java.util.Iterator;
+
+/**
+ * Forward only cursor over the pages returned by a {@link FetchIterator} or {@link PrefetchIterator}.  The cursor only tracks the current page and
+ * the row offset inside of it; values are read directly from the page's {@link ColumnData} so moving to the next row
+ * does not allocate.
+ */
+public class ResultSetCursor {
+
+    private static final Logger log = LogManager.getLogger(ResultSetCursor.class);
+
+    private final Iterator<ColumnBasedSet> fetchIterator;
+
+    private ColumnBasedSet page;
+    private int row = -1;
+    private boolean done;
+
+    public ResultSetCursor(Iterator<ColumnBasedSet> fetchIterator) {
+        this.fetchIterator = fetchIterator;
+    }
+
+    /**
+     * Moves to the next row, fetching another page from the server if needed.
+     *
+     * @return true if the cursor is positioned on a row, false if there are no more rows
+     */
+    public boolean next() {
+
+        while (!done) {
+
+            if (page == null) {
+                // no rows inside a page available; go get them
+
+                if (fetchIterator.hasNext()) {
+                    page = fetchIterator.next();
+                    row = -1;
+                } else {
+                    // no more pages, so its the end of the line
+                    done = true;
+                    break;
+                }
+            }
+
+            if (row + 1 < page.getRowCount()) {
+                row++;
+                return true;
+            }
+
+            // the page has no more results; the fetch iterator knows whether the server has more
+            page = null;
+        }
+
+        page = null;
+        row = -1;
+
+        return false;
+    }
+
+    /**
+     * @return true if the cursor is positioned on a row
+     */
+    public boolean hasRow() {
+        return page != null && row >= 0;
+    }
+
+    /**
+     * @return the row offset within the current page
+     */
+    public int getPageRow() {
+        return row;
+    }
+
+    /**
+     * @param position 1 based column position
+     * @return the column of the current page or null if the cursor is not positioned on a row
+     */
+    public ColumnData getColumnData(int position) {
+        if (!hasRow()) {
+            return null;
+        }
+
+        return page.getColumns().get(position - 1);
+    }
+
+    /**
+     * Releases the current page and stops any background fetching.
+     */
+    public void close() {
+        done = true;
+        page = null;
+        row = -1;
+
+        if (fetchIterator instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) fetchIterator).close();
+            } catch (Exception e) {
+                log.warn(e.getMessage(), e);
+            }
+        }
+    }
+}
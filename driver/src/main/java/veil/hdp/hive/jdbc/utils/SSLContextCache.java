@@ -0,0 +1,209 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc.utils;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.ssl.SSLContextBuilder;
+import org.apache.http.ssl.SSLContexts;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import veil.hdp.hive.jdbc.HiveDriverProperty;
+import veil.hdp.hive.jdbc.HiveException;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.security.*;
+import java.security.cert.CertificateException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link SSLContext}s shared by the binary and http transports, keyed by trust and key store path, type and password.
+ * Building a context reads the store files; reusing one also reuses its client session cache, so reconnecting to a
+ * server resumes the previous TLS session instead of doing a full handshake.  A store is reloaded when its file's
+ * modification time changes.
+ */
+public final class SSLContextCache {
+
+    private static final Logger log = LogManager.getLogger(SSLContextCache.class);
+
+    private static final Map<List<String>, CachedContext> CONTEXTS = new ConcurrentHashMap<>();
+
+    private static final AtomicLong LOADS = new AtomicLong();
+    private static final AtomicLong FULL_HANDSHAKES = new AtomicLong();
+    private static final AtomicLong RESUMED_HANDSHAKES = new AtomicLong();
+
+    private SSLContextCache() {
+    }
+
+    /**
+     * @param properties connection properties
+     * @return context for the configured stores, or the JVM default context when no trust store is configured and two
+     * way ssl is off
+     */
+    public static SSLContext get(Properties properties) {
+
+        boolean twoWay = HiveDriverProperty.SSL_TWO_WAY_ENABLED.getBoolean(properties);
+
+        if (!twoWay && !HiveDriverProperty.SSL_TRUST_STORE_PATH.hasValue(properties)) {
+            try {
+                return SSLContext.getDefault();
+            } catch (NoSuchAlgorithmException e) {
+                throw new HiveException(e);
+            }
+        }
+
+        String trustStorePath = HiveDriverProperty.SSL_TRUST_STORE_PATH.get(properties);
+        String keyStorePath = twoWay ? HiveDriverProperty.SSL_KEY_STORE_PATH.get(properties) : null;
+
+        List<String> key = Arrays.asList(
+                trustStorePath,
+                HiveDriverProperty.SSL_TRUST_STORE_TYPE.get(properties),
+                DriverUtils.digest(HiveDriverProperty.SSL_TRUST_STORE_PASSWORD.get(properties)),
+                keyStorePath,
+                twoWay ? HiveDriverProperty.SSL_KEY_STORE_TYPE.get(properties) : null,
+                twoWay ? DriverUtils.digest(HiveDriverProperty.SSL_KEY_STORE_PASSWORD.get(properties)) : null);
+
+        long trustStoreModified = lastModified(trustStorePath);
+        long keyStoreModified = lastModified(keyStorePath);
+
+        CachedContext cached = CONTEXTS.get(key);
+
+        if (cached == null || cached.trustStoreModified != trustStoreModified || cached.keyStoreModified != keyStoreModified) {
+
+            cached = new CachedContext(buildContext(properties, twoWay), trustStoreModified, keyStoreModified);
+
+            CONTEXTS.put(key, cached);
+
+            LOADS.incrementAndGet();
+
+            log.debug("loaded ssl context for trust store [{}], key store [{}]", trustStorePath, keyStorePath);
+        }
+
+        return cached.context;
+    }
+
+    /**
+     * Counts the socket's handshake as full or resumed once it completes.  A resumed session was created before the
+     * socket was.
+     *
+     * @param socket socket that has not started its handshake
+     */
+    public static void trackHandshake(SSLSocket socket) {
+
+        long created = System.currentTimeMillis();
+
+        socket.addHandshakeCompletedListener(event -> {
+            if (event.getSession().getCreationTime() < created) {
+                RESUMED_HANDSHAKES.incrementAndGet();
+            } else {
+                FULL_HANDSHAKES.incrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * @return number of contexts built, including rebuilds after a store changed
+     */
+    public static long getLoads() {
+        return LOADS.get();
+    }
+
+    public static long getFullHandshakes() {
+        return FULL_HANDSHAKES.get();
+    }
+
+    public static long getResumedHandshakes() {
+        return RESUMED_HANDSHAKES.get();
+    }
+
+    public static void clear() {
+        CONTEXTS.clear();
+    }
+
+    private static SSLContext buildContext(Properties properties, boolean twoWay) {
+
+        try {
+            SSLContextBuilder builder = SSLContexts.custom();
+
+            if (HiveDriverProperty.SSL_TRUST_STORE_PATH.hasValue(properties)) {
+                builder.loadTrustMaterial(buildKeyStore(HiveDriverProperty.SSL_TRUST_STORE_PATH.get(properties), HiveDriverProperty.SSL_TRUST_STORE_TYPE.get(properties), password(properties, HiveDriverProperty.SSL_TRUST_STORE_PASSWORD)), null);
+            }
+
+            if (twoWay) {
+                char[] keyStorePassword = password(properties, HiveDriverProperty.SSL_KEY_STORE_PASSWORD);
+
+                builder.loadKeyMaterial(buildKeyStore(HiveDriverProperty.SSL_KEY_STORE_PATH.get(properties), HiveDriverProperty.SSL_KEY_STORE_TYPE.get(properties), keyStorePassword), keyStorePassword);
+            }
+
+            return builder.build();
+
+        } catch (NoSuchAlgorithmException | KeyManagementException | UnrecoverableKeyException | KeyStoreException e) {
+            throw new HiveException(e);
+        }
+    }
+
+    private static KeyStore buildKeyStore(String path, String type, char[] password) {
+
+        if (StringUtils.isBlank(path)) {
+            throw new IllegalArgumentException("keystore path is null!");
+        }
+
+        try {
+
+            KeyStore keyStore = KeyStore.getInstance(type);
+
+            try (FileInputStream fis = new FileInputStream(path)) {
+                keyStore.load(fis, password);
+            }
+
+            return keyStore;
+        } catch (CertificateException | IOException | NoSuchAlgorithmException | KeyStoreException e) {
+            throw new HiveException(e);
+        }
+    }
+
+    private static char[] password(Properties properties, HiveDriverProperty property) {
+        String password = property.get(properties);
+
+        return password != null ? password.toCharArray() : null;
+    }
+
+    private static long lastModified(String path) {
+        return StringUtils.isBlank(path) ? 0 : new File(path).lastModified();
+    }
+
+    private static class CachedContext {
+
+        private final SSLContext context;
+        private final long trustStoreModified;
+        private final long keyStoreModified;
+
+        CachedContext(SSLContext context, long trustStoreModified, long keyStoreModified) {
+            this.context = context;
+            this.trustStoreModified = trustStoreModified;
+            this.keyStoreModified = keyStoreModified;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc.utils;
+
+import com.google.common.base.Splitter;
+import com.google.common.hash.Hashing;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import veil.hdp.hive.jdbc.HiveDriverProperty;
+import veil.hdp.hive.jdbc.ServerSelection;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Chooses which discovered HS2 instance a connection goes to, using what this JVM has seen of each instance: the
+ * sessions it has open there, how long opening a session took and whether the last attempts failed.
+ * <p>
+ * An instance that fails to open a session is skipped for {@code zkBlacklistBackoff}, doubling with every further
+ * failure up to {@code zkBlacklistMaxBackoff}; a success clears it.  When every instance is blacklisted all of them are
+ * considered again rather than failing the connect outright.
+ * <ul>
+ * <li>{@code RANDOM} - any instance</li>
+ * <li>{@code LEAST_CONNECTIONS} - the instance with the fewest open sessions; ties are broken at random</li>
+ * <li>{@code LATENCY} - the faster of two random instances, by a moving average of session open time</li>
+ * <li>{@code STICKY} - the same instance for the same user while it stays available (rendezvous hashing)</li>
+ * </ul>
+ */
+public final class ServerSelector {
+
+    private static final Logger log = LogManager.getLogger(ServerSelector.class);
+
+    private static final String HOST_KEY = "hive.server2.thrift.bind.host";
+    private static final String PORT_KEY = "hive.server2.thrift.port";
+
+    // weight of the newest sample in the latency average
+    private static final double LATENCY_WEIGHT = 0.3;
+
+    private static final Map<String, Stats> STATS = new ConcurrentHashMap<>();
+
+    private ServerSelector() {
+    }
+
+    /**
+     * @param servers    data of each registered instance, as written by HS2
+     * @param properties supplies the strategy and, for {@code STICKY}, the user
+     * @return data of the chosen instance
+     */
+    public static String select(List<String> servers, Properties properties) {
+
+        long now = System.currentTimeMillis();
+
+        List<Candidate> candidates = new ArrayList<>(servers.size());
+
+        for (String server : servers) {
+            Candidate candidate = new Candidate(server);
+
+            if (!candidate.stats.isBlacklisted(now)) {
+                candidates.add(candidate);
+            }
+        }
+
+        if (candidates.isEmpty()) {
+            log.warn("every discovered hive server is blacklisted; considering all of them");
+
+            for (String server : servers) {
+                candidates.add(new Candidate(server));
+            }
+        }
+
+        ServerSelection selection = ServerSelection.valueOf(HiveDriverProperty.ZOOKEEPER_DISCOVERY_SELECTION.get(properties));
+
+        Candidate chosen;
+
+        switch (selection) {
+            case LEAST_CONNECTIONS:
+                chosen = leastConnections(candidates);
+                break;
+            case LATENCY:
+                chosen = latency(candidates);
+                break;
+            case STICKY:
+                chosen = sticky(candidates, HiveDriverProperty.USER.get(properties));
+                break;
+            default:
+                chosen = candidates.get(ThreadLocalRandom.current().nextInt(candidates.size()));
+        }
+
+        log.debug("selected hive server [{}] using [{}] from [{}] candidates", chosen.key, selection, candidates.size());
+
+        return chosen.data;
+    }
+
+    /**
+     * Records a session opened on the instance named by {@code properties}.
+     */
+    public static void opened(Properties properties, long elapsedNanos) {
+        if (HiveDriverProperty.ZOOKEEPER_DISCOVERY_ENABLED.getBoolean(properties)) {
+            stats(properties).opened(elapsedNanos);
+        }
+    }
+
+    public static void closed(Properties properties) {
+        if (HiveDriverProperty.ZOOKEEPER_DISCOVERY_ENABLED.getBoolean(properties)) {
+            stats(properties).closed();
+        }
+    }
+
+    public static void failed(Properties properties) {
+        if (HiveDriverProperty.ZOOKEEPER_DISCOVERY_ENABLED.getBoolean(properties)) {
+
+            long backoff = stats(properties).failed(HiveDriverProperty.ZOOKEEPER_DISCOVERY_BLACKLIST_BACKOFF.getInt(properties), HiveDriverProperty.ZOOKEEPER_DISCOVERY_BLACKLIST_MAX_BACKOFF.getInt(properties));
+
+            log.warn("blacklisting hive server [{}] for [{}] ms", key(properties), backoff);
+        }
+    }
+
+    public static int getOpenSessions(String host, int port) {
+        return stats(key(host, Integer.toString(port))).sessions;
+    }
+
+    public static boolean isBlacklisted(String host, int port) {
+        return stats(key(host, Integer.toString(port))).isBlacklisted(System.currentTimeMillis());
+    }
+
+    public static void clear() {
+        STATS.clear();
+    }
+
+    private static Candidate leastConnections(List<Candidate> candidates) {
+
+        Candidate chosen = null;
+        int ties = 0;
+
+        for (Candidate candidate : candidates) {
+            int sessions = candidate.stats.sessions;
+
+            if (chosen == null || sessions < chosen.stats.sessions) {
+                chosen = candidate;
+                ties = 1;
+            } else if (sessions == chosen.stats.sessions && ThreadLocalRandom.current().nextInt(++ties) == 0) {
+                // reservoir sampling keeps each tied candidate equally likely
+                chosen = candidate;
+            }
+        }
+
+        return chosen;
+    }
+
+    private static Candidate latency(List<Candidate> candidates) {
+
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+
+        if (second >= first) {
+            second++;
+        }
+
+        Candidate a = candidates.get(first);
+        Candidate b = candidates.get(second);
+
+        // an instance without samples averages 0, so new instances get tried
+        if (a.stats.latency != b.stats.latency) {
+            return a.stats.latency < b.stats.latency ? a : b;
+        }
+
+        return a.stats.sessions <= b.stats.sessions ? a : b;
+    }
+
+    private static Candidate sticky(List<Candidate> candidates, String user) {
+
+        Candidate chosen = null;
+        long best = Long.MIN_VALUE;
+
+        for (Candidate candidate : candidates) {
+            long weight = Hashing.murmur3_128().newHasher()
+                    .putString(user != null ? user : "", StandardCharsets.UTF_8)
+                    .putString(candidate.key, StandardCharsets.UTF_8)
+                    .hash().asLong();
+
+            if (chosen == null || weight > best) {
+                chosen = candidate;
+                best = weight;
+            }
+        }
+
+        return chosen;
+    }
+
+    static String key(Properties properties) {
+        return key(HiveDriverProperty.HOST_NAME.get(properties), HiveDriverProperty.PORT_NUMBER.get(properties));
+    }
+
+    static String key(String data) {
+        Map<String, String> config = Splitter.on(";").trimResults().omitEmptyStrings().withKeyValueSeparator("=").split(data);
+
+        return key(config.get(HOST_KEY), config.get(PORT_KEY));
+    }
+
+    private static String key(String host, String port) {
+        return host + ':' + port;
+    }
+
+    private static Stats stats(Properties properties) {
+        return stats(key(properties));
+    }
+
+    private static Stats stats(String key) {
+        return STATS.computeIfAbsent(key, k -> new Stats());
+    }
+
+    private static class Candidate {
+
+        private final String data;
+        private final String key;
+        private final Stats stats;
+
+        Candidate(String data) {
+            this.data = data;
+            this.key = key(data);
+            this.stats = stats(key);
+        }
+    }
+
+    private static class Stats {
+
+        // guarded by this
+        private int failures;
+
+        private volatile int sessions;
+        private volatile double latency;
+        private volatile long blacklistedUntil;
+
+        synchronized void opened(long elapsedNanos) {
+
+            double sample = TimeUnit.NANOSECONDS.toMicros(elapsedNanos);
+
+            latency = latency == 0 ? sample : latency + LATENCY_WEIGHT * (sample - latency);
+            sessions++;
+            failures = 0;
+            blacklistedUntil = 0;
+        }
+
+        synchronized void closed() {
+            if (sessions > 0) {
+                sessions--;
+            }
+        }
+
+        synchronized long failed(long backoff, long maxBackoff) {
+
+            failures++;
+
+            long delay = Math.min(maxBackoff, backoff << Math.min(failures - 1, 30));
+
+            blacklistedUntil = System.currentTimeMillis() + delay;
+
+            return delay;
+        }
+
+        boolean isBlacklisted(long now) {
+            return now < blacklistedUntil;
+        }
+    }
+}
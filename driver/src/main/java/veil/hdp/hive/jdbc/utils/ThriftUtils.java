@@ -16,6 +16,7 @@
 
 package veil.hdp.hive.jdbc.utils;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -23,16 +24,17 @@ import org.apache.thrift.TException;
 import org.apache.thrift.protocol.TBinaryProtocol;
 import org.apache.thrift.transport.TTransport;
 import org.apache.thrift.transport.TTransportException;
-import veil.hdp.hive.jdbc.ClientInvocationHandler;
 import veil.hdp.hive.jdbc.HiveDriverProperty;
 import veil.hdp.hive.jdbc.HiveException;
 import veil.hdp.hive.jdbc.bindings.*;
-import veil.hdp.hive.jdbc.bindings.TCLIService.Client;
 import veil.hdp.hive.jdbc.thrift.HiveThriftException;
 import veil.hdp.hive.jdbc.thrift.InvalidProtocolException;
+import veil.hdp.hive.jdbc.thrift.LockingThriftClient;
+import veil.hdp.hive.jdbc.thrift.StreamingHttpTransport;
+import veil.hdp.hive.jdbc.thrift.StreamingThriftClient;
+import veil.hdp.hive.jdbc.thrift.ThriftClient;
 import veil.hdp.hive.jdbc.thrift.ThriftTransport;
 
-import java.lang.reflect.Proxy;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
@@ -44,41 +46,55 @@ public final class ThriftUtils {
 
     private static final Logger log = LogManager.getLogger(ThriftUtils.class);
 
+    // opens are short lived; idle threads are reclaimed so connections that stay open hold no driver thread
+    private static final ExecutorService OPEN_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("open-thrift-transport-thread-%d").setDaemon(true).build());
+
 
     private ThriftUtils() {
     }
 
     public static void openTransport(TTransport transport, int timeout) {
 
-        ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "open-thrift-transport-thread"));
+        Future<?> future = OPEN_EXECUTOR.submit(() -> {
+            try {
+                transport.open();
+            } catch (TTransportException e) {
+                throw new HiveException(e);
+            }
+        });
 
         try {
 
-            Future future = executor.submit(() -> {
-                try {
-                    transport.open();
-                } catch (TTransportException e) {
-                    throw new HiveException(e);
-                }
-            });
-
             future.get(timeout, TimeUnit.MILLISECONDS);
 
         } catch (InterruptedException | ExecutionException e) {
+            abandonOpen(transport, future);
             throw new HiveException(e);
         } catch (TimeoutException e) {
+            abandonOpen(transport, future);
             throw new HiveException("The Thrift Transport did not open prior to Timeout.  If using Kerberos, double check that you have a valid client Principal by running klist.", e);
-        } finally {
-            executor.shutdown();
         }
 
     }
 
+    // closing the transport unblocks a connect or handshake still running on the open thread
+    private static void abandonOpen(TTransport transport, Future<?> future) {
+        future.cancel(true);
+        DriverUtils.close(transport);
+    }
+
+
+    public static ThriftClient createClient(ThriftTransport transport) {
+        TTransport tTransport = transport.getTransport();
 
-    public static TCLIService.Iface createClient(ThriftTransport transport) {
-        TCLIService.Iface client = new Client(new TBinaryProtocol(transport.getTransport()));
+        StreamingThriftClient client = new StreamingThriftClient(new TBinaryProtocol(tTransport));
+
+        if (tTransport instanceof StreamingHttpTransport) {
+            // don't hold a pooled http connection while the connection sits idle
+            return new LockingThriftClient(client, ((StreamingHttpTransport) tTransport)::releaseResponse);
+        }
 
-        return (TCLIService.Iface) Proxy.newProxyInstance(ThriftUtils.class.getClassLoader(), new Class[]{TCLIService.Iface.class}, new ClientInvocationHandler(client));
+        return new LockingThriftClient(client);
     }
 
 
@@ -110,18 +126,33 @@ public final class ThriftUtils {
     }
 
 
-    private static Map<String, String> buildSessionConfig(Properties properties) {
+    /**
+     * @return the hive configuration overlay carried in the connection properties; every property starting with {@code hive.}
+     */
+    public static Map<String, String> buildHiveConf(Properties properties) {
         Set<String> propertyNames = properties.stringPropertyNames();
 
-        Map<String, String> openSessionConfig = new HashMap<>(propertyNames.size() + 1);
+        Map<String, String> hiveConf = new HashMap<>(propertyNames.size());
 
         for (String property : propertyNames) {
             // no longer going to use HiveConf.ConfVars to validate properties.  it requires too many dependencies.  let server side deal with this.
             if (property.startsWith("hive.")) {
-                openSessionConfig.put("set:hiveconf:" + property, properties.getProperty(property));
+                hiveConf.put(property, properties.getProperty(property));
             }
         }
 
+        return hiveConf;
+    }
+
+    private static Map<String, String> buildSessionConfig(Properties properties) {
+        Map<String, String> hiveConf = buildHiveConf(properties);
+
+        Map<String, String> openSessionConfig = new HashMap<>(hiveConf.size() + 1);
+
+        for (Map.Entry<String, String> entry : hiveConf.entrySet()) {
+            openSessionConfig.put("set:hiveconf:" + entry.getKey(), entry.getValue());
+        }
+
         openSessionConfig.put("use:database", HiveDriverProperty.DATABASE_NAME.get(properties));
 
         return openSessionConfig;
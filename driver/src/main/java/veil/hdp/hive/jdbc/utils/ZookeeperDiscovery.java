@@ -0,0 +1,257 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc.utils;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.framework.api.CuratorWatcher;
+import org.apache.curator.framework.state.ConnectionState;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.WatchedEvent;
+import org.apache.zookeeper.Watcher.Event.EventType;
+import veil.hdp.hive.jdbc.HiveDriverProperty;
+import veil.hdp.hive.jdbc.HiveException;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps one long lived Zookeeper client per ensemble and the HS2 instances registered under each namespace in memory,
+ * so a connect reads memory instead of opening a Zookeeper session.  A child watch refreshes the list whenever an
+ * instance registers or goes away.
+ * <p>
+ * While the client is disconnected, or after a refresh fails, no watch is guaranteed to fire.  The list is still used
+ * for {@code zkMaxStaleness} after that; once that passes, connects read Zookeeper directly until it succeeds again.
+ */
+public final class ZookeeperDiscovery {
+
+    private static final Logger log = LogManager.getLogger(ZookeeperDiscovery.class);
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final Map<String, Ensemble> ENSEMBLES = new ConcurrentHashMap<>();
+
+    private static final ExecutorService REFRESHER = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("zookeeper-discovery-%d").setDaemon(true).build());
+
+    private static final AtomicLong HITS = new AtomicLong();
+    private static final AtomicLong LOADS = new AtomicLong();
+    private static final AtomicLong REFRESHES = new AtomicLong();
+
+    private ZookeeperDiscovery() {
+    }
+
+    /**
+     * @param authority  Zookeeper connect string
+     * @param properties supplies the namespace, retry wait and staleness bound
+     * @return data of each registered HS2 instance; never empty
+     */
+    public static List<String> getServers(String authority, Properties properties) {
+
+        Ensemble ensemble = ENSEMBLES.computeIfAbsent(authority, a -> new Ensemble(a, HiveDriverProperty.ZOOKEEPER_DISCOVERY_RETRY.getInt(properties)));
+
+        Namespace namespace = ensemble.namespaces.computeIfAbsent('/' + HiveDriverProperty.ZOOKEEPER_DISCOVERY_NAMESPACE.get(properties), path -> new Namespace(ensemble, path));
+
+        return namespace.get(HiveDriverProperty.ZOOKEEPER_DISCOVERY_MAX_STALENESS.getInt(properties));
+    }
+
+    /**
+     * @return number of lookups served from memory
+     */
+    public static long getHits() {
+        return HITS.get();
+    }
+
+    /**
+     * @return number of times an instance list was read from Zookeeper
+     */
+    public static long getLoads() {
+        return LOADS.get();
+    }
+
+    /**
+     * @return number of loads triggered by a watch or a reconnect rather than by a connect
+     */
+    public static long getRefreshes() {
+        return REFRESHES.get();
+    }
+
+    public static int getClientCount() {
+        return ENSEMBLES.size();
+    }
+
+    /**
+     * Closes every client and forgets every instance list.
+     */
+    public static void clear() {
+        for (String authority : new ArrayList<>(ENSEMBLES.keySet())) {
+            Ensemble ensemble = ENSEMBLES.remove(authority);
+
+            if (ensemble != null) {
+                DriverUtils.close(ensemble.client);
+            }
+        }
+    }
+
+    private static class Ensemble {
+
+        private final CuratorFramework client;
+        private final Map<String, Namespace> namespaces = new ConcurrentHashMap<>();
+
+        Ensemble(String authority, int retry) {
+            client = CuratorFrameworkFactory.builder().connectString(authority).retryPolicy(new RetryOneTime(retry)).build();
+
+            client.getConnectionStateListenable().addListener((c, state) -> stateChanged(state));
+
+            client.start();
+
+            log.debug("started shared zookeeper client for [{}]", authority);
+        }
+
+        private void stateChanged(ConnectionState state) {
+
+            log.debug("zookeeper connection state [{}]", state);
+
+            for (Namespace namespace : namespaces.values()) {
+                if (state == ConnectionState.RECONNECTED) {
+                    // the session may have expired, taking the watches with it, and changes may have been missed
+                    namespace.refresh();
+                } else if (!state.isConnected()) {
+                    namespace.markStale();
+                }
+            }
+        }
+    }
+
+    private static class Namespace implements CuratorWatcher {
+
+        private final Ensemble ensemble;
+        private final String path;
+
+        private volatile Map<String, String> servers;
+
+        // time the list stopped being kept current by its watch; 0 while it is
+        private volatile long staleSince;
+
+        Namespace(Ensemble ensemble, String path) {
+            this.ensemble = ensemble;
+            this.path = path;
+        }
+
+        List<String> get(long maxStaleness) {
+
+            Map<String, String> current = servers;
+
+            long stale = staleSince;
+
+            if (current != null && (stale == 0 || System.currentTimeMillis() - stale < maxStaleness)) {
+                HITS.incrementAndGet();
+
+                return values(current);
+            }
+
+            try {
+                return values(load());
+            } catch (Exception e) {
+                throw new HiveException(e);
+            }
+        }
+
+        @Override
+        public void process(WatchedEvent event) {
+            if (event.getType() == EventType.NodeChildrenChanged) {
+                refresh();
+            }
+        }
+
+        void refresh() {
+            REFRESHER.execute(() -> {
+                try {
+                    REFRESHES.incrementAndGet();
+
+                    load();
+                } catch (Exception e) {
+                    log.warn("unable to refresh hive servers under [" + path + ']', e);
+
+                    markStale();
+                }
+            });
+        }
+
+        void markStale() {
+            if (staleSince == 0) {
+                staleSince = System.currentTimeMillis();
+            }
+        }
+
+        private synchronized Map<String, String> load() throws Exception {
+
+            LOADS.incrementAndGet();
+
+            Map<String, String> previous = servers != null ? servers : Collections.emptyMap();
+
+            // re-arms the watch; zookeeper keeps a single registration for this watcher
+            List<String> children = ensemble.client.getChildren().usingWatcher(this).forPath(path);
+
+            Map<String, String> loaded = new LinkedHashMap<>(children.size());
+
+            for (String child : children) {
+
+                // hs2 registers an ephemeral node per instance and doesn't change its data
+                String data = previous.get(child);
+
+                if (data == null) {
+                    try {
+                        data = new String(ensemble.client.getData().forPath(path + '/' + child), UTF_8);
+                    } catch (KeeperException.NoNodeException e) {
+                        log.debug("hive server [{}] went away while loading", child);
+                        continue;
+                    }
+                }
+
+                loaded.put(child, data);
+            }
+
+            log.debug("loaded [{}] hive servers under [{}]", loaded.size(), path);
+
+            servers = Collections.unmodifiableMap(loaded);
+            staleSince = 0;
+
+            return servers;
+        }
+
+        private List<String> values(Map<String, String> current) {
+
+            if (current.isEmpty()) {
+                throw new HiveException("no hive servers are registered in zookeeper under [" + path + ']');
+            }
+
+            return new ArrayList<>(current.values());
+        }
+    }
+}
@@ -28,11 +28,13 @@ import veil.hdp.hive.jdbc.HiveDriverProperty;
 import veil.hdp.hive.jdbc.HiveException;
 
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
 import java.util.Random;
+import java.util.Set;
 
 final class ZookeeperUtils {
 
@@ -67,48 +69,90 @@ final class ZookeeperUtils {
          */
 
 
-        Random random = new Random();
+        HiveDriverProperty.ZOOKEEPER_DISCOVERY_CONNECT_STRING.set(properties, authority);
 
-        try (CuratorFramework zooKeeperClient = CuratorFrameworkFactory.builder().connectString(authority).retryPolicy(new RetryOneTime(retry)).build()) {
+        String hostData = HiveDriverProperty.ZOOKEEPER_DISCOVERY_CACHE_ENABLED.getBoolean(properties) ? selectServer(authority, properties) : loadServer(authority, zooKeeperNamespace, retry);
 
-            zooKeeperClient.start();
+        applyServer(hostData, properties);
+    }
 
-            List<String> hosts = zooKeeperClient.getChildren().forPath('/' + zooKeeperNamespace);
+    /**
+     * @param properties properties of a connect to a discovered server
+     * @param excluded   servers not to choose, as {@code host:port}
+     * @return copy of {@code properties} pointing at another discovered server, or null if there is none
+     */
+    static Properties nextServer(Properties properties, Set<String> excluded) {
 
-            String randomHost = hosts.get(random.nextInt(hosts.size()));
+        List<String> servers = new ArrayList<>();
 
-            String hostData = new String(zooKeeperClient.getData().forPath('/' + zooKeeperNamespace + '/' + randomHost), UTF_8);
+        for (String server : ZookeeperDiscovery.getServers(HiveDriverProperty.ZOOKEEPER_DISCOVERY_CONNECT_STRING.get(properties), properties)) {
+            if (!excluded.contains(ServerSelector.key(server))) {
+                servers.add(server);
+            }
+        }
 
-            Map<String, String> config = Splitter.on(";").trimResults().omitEmptyStrings().withKeyValueSeparator("=").split(hostData);
+        if (servers.isEmpty()) {
+            return null;
+        }
+
+        Properties next = new Properties();
+        next.putAll(properties);
 
-            for (Entry<String, String> entry : config.entrySet()) {
-                String value = StringUtils.trimToNull(entry.getValue());
+        applyServer(ServerSelector.select(servers, properties), next);
+
+        return next;
+    }
 
-                if (value != null) {
+    private static void applyServer(String hostData, Properties properties) {
 
-                    String key = entry.getKey();
+        Map<String, String> config = Splitter.on(";").trimResults().omitEmptyStrings().withKeyValueSeparator("=").split(hostData);
 
-                    HiveDriverProperty hiveDriverProperty = HiveDriverProperty.forAlias(key);
+        for (Entry<String, String> entry : config.entrySet()) {
+            String value = StringUtils.trimToNull(entry.getValue());
 
-                    if (hiveDriverProperty != null) {
+            if (value != null) {
 
-                        String originalValue = hiveDriverProperty.get(properties);
+                String key = entry.getKey();
 
-                        if (!value.equals(originalValue)) {
+                HiveDriverProperty hiveDriverProperty = HiveDriverProperty.forAlias(key);
 
-                            log.debug("updating existing property [{}] from zookeeper:  Old value [{}], New value [{}].  hive configuration parameter [{}].", hiveDriverProperty.getKey(), originalValue, value, key);
+                if (hiveDriverProperty != null) {
 
-                            hiveDriverProperty.set(properties, value);
-                        }
-                    } else {
+                    String originalValue = hiveDriverProperty.get(properties);
 
-                        log.warn("adding new property [{}] with value [{}] from zookeeper. this could likely be handled better by the driver.  possible bug!", key, value);
+                    if (!value.equals(originalValue)) {
 
-                        properties.setProperty(key, value);
+                        log.debug("updating existing property [{}] from zookeeper:  Old value [{}], New value [{}].  hive configuration parameter [{}].", hiveDriverProperty.getKey(), originalValue, value, key);
+
+                        hiveDriverProperty.set(properties, value);
                     }
+                } else {
+
+                    log.warn("adding new property [{}] with value [{}] from zookeeper. this could likely be handled better by the driver.  possible bug!", key, value);
+
+                    properties.setProperty(key, value);
                 }
             }
+        }
+    }
+
+    private static String selectServer(String authority, Properties properties) {
+        return ServerSelector.select(ZookeeperDiscovery.getServers(authority, properties), properties);
+    }
+
+    private static String loadServer(String authority, String zooKeeperNamespace, int retry) {
+
+        Random random = new Random();
+
+        try (CuratorFramework zooKeeperClient = CuratorFrameworkFactory.builder().connectString(authority).retryPolicy(new RetryOneTime(retry)).build()) {
+
+            zooKeeperClient.start();
+
+            List<String> hosts = zooKeeperClient.getChildren().forPath('/' + zooKeeperNamespace);
+
+            String randomHost = hosts.get(random.nextInt(hosts.size()));
 
+            return new String(zooKeeperClient.getData().forPath('/' + zooKeeperNamespace + '/' + randomHost), UTF_8);
 
         } catch (Exception e) {
             throw new HiveException(e);
@@ -0,0 +1,195 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import veil.hdp.hive.jdbc.bindings.*;
+import veil.hdp.hive.jdbc.data.ColumnBasedSet;
+import veil.hdp.hive.jdbc.data.ColumnData;
+import veil.hdp.hive.jdbc.data.Row;
+import veil.hdp.hive.jdbc.metadata.ColumnDescriptor;
+import veil.hdp.hive.jdbc.metadata.ColumnTypeDescriptor;
+import veil.hdp.hive.jdbc.metadata.HiveType;
+import veil.hdp.hive.jdbc.metadata.Schema;
+import veil.hdp.hive.jdbc.test.BaseTest;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ColumnBasedSetTest extends BaseTest {
+
+    private Schema schema;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+
+        List<ColumnDescriptor> descriptors = new ArrayList<>(4);
+        descriptors.add(ColumnDescriptor.builder().name("col_bigint").typeDescriptor(ColumnTypeDescriptor.builder().hiveType(HiveType.BIG_INT).build()).position(1).build());
+        descriptors.add(ColumnDescriptor.builder().name("col_int").typeDescriptor(ColumnTypeDescriptor.builder().hiveType(HiveType.INTEGER).build()).position(2).build());
+        descriptors.add(ColumnDescriptor.builder().name("col_double").typeDescriptor(ColumnTypeDescriptor.builder().hiveType(HiveType.DOUBLE).build()).position(3).build());
+        descriptors.add(ColumnDescriptor.builder().name("col_string").typeDescriptor(ColumnTypeDescriptor.builder().hiveType(HiveType.STRING).build()).position(4).build());
+
+        schema = Schema.builder().descriptors(descriptors).build();
+    }
+
+    @Test
+    public void testBuild() throws SQLException {
+
+        // row 1 is null in every column
+        byte[] nulls = {(byte) 0x02};
+
+        TRowSet rowSet = new TRowSet(0, new ArrayList<>(0));
+        rowSet.addToColumns(TColumn.i64Val(new TI64Column(Arrays.asList(1L, 0L, Long.MAX_VALUE), ByteBuffer.wrap(nulls))));
+        rowSet.addToColumns(TColumn.i32Val(new TI32Column(Arrays.asList(1, 0, Integer.MIN_VALUE), ByteBuffer.wrap(nulls))));
+        rowSet.addToColumns(TColumn.doubleVal(new TDoubleColumn(Arrays.asList(1.5d, 0d, -2.5d), ByteBuffer.wrap(nulls))));
+        rowSet.addToColumns(TColumn.stringVal(new TStringColumn(Arrays.asList("a", "", "c"), ByteBuffer.wrap(nulls))));
+
+        ColumnBasedSet columnBasedSet = ColumnBasedSet.builder().rowSet(rowSet).schema(schema).build();
+
+        assertEquals(3, columnBasedSet.getRowCount());
+        assertEquals(4, columnBasedSet.getColumnCount());
+
+        Row first = Row.builder().columnBasedSet(columnBasedSet).row(0).build();
+        assertEquals(Long.valueOf(1L), first.getColumn(1).asLong());
+        assertEquals(Integer.valueOf(1), first.getColumn(2).asInt());
+        assertEquals(Double.valueOf(1.5d), first.getColumn(3).asDouble());
+        assertEquals("a", first.getColumn(4).asString());
+
+        Row second = Row.builder().columnBasedSet(columnBasedSet).row(1).build();
+        assertNull(second.getColumn(4).asString());
+        assertNull(second.getColumn(1).asBoolean());
+
+        Row third = Row.builder().columnBasedSet(columnBasedSet).row(2).build();
+        assertEquals(Long.valueOf(Long.MAX_VALUE), third.getColumn(1).asLong());
+        assertEquals(Integer.valueOf(Integer.MIN_VALUE), third.getColumn(2).asInt());
+        assertEquals(Double.valueOf(-2.5d), third.getColumn(3).asDouble());
+    }
+
+    @Test
+    public void testTypedReads() throws SQLException {
+
+        byte[] nulls = {(byte) 0x02};
+
+        TRowSet rowSet = new TRowSet(0, new ArrayList<>(0));
+        rowSet.addToColumns(TColumn.i64Val(new TI64Column(Arrays.asList(7L, 0L, -7L), ByteBuffer.wrap(nulls))));
+        rowSet.addToColumns(TColumn.i32Val(new TI32Column(Arrays.asList(3, 0, -3), ByteBuffer.wrap(nulls))));
+        rowSet.addToColumns(TColumn.doubleVal(new TDoubleColumn(Arrays.asList(0.25d, 0d, 4d), ByteBuffer.wrap(nulls))));
+        rowSet.addToColumns(TColumn.stringVal(new TStringColumn(Arrays.asList("x", "", "42"), ByteBuffer.wrap(nulls))));
+
+        ColumnBasedSet columnBasedSet = ColumnBasedSet.builder().rowSet(rowSet).schema(schema).build();
+
+        List<ColumnData> columns = columnBasedSet.getColumns();
+
+        ColumnData bigints = columns.get(0);
+        assertFalse(bigints.isNull(0));
+        assertTrue(bigints.isNull(1));
+        assertEquals(7L, bigints.getLong(0));
+        assertEquals(-7, bigints.getInt(2));
+        assertEquals("-7", bigints.getString(2));
+
+        ColumnData ints = columns.get(1);
+        assertEquals(3, ints.getInt(0));
+        assertEquals(-3L, ints.getLong(2));
+
+        ColumnData doubles = columns.get(2);
+        assertEquals(0.25d, doubles.getDouble(0));
+        assertEquals(4f, doubles.getFloat(2));
+
+        ColumnData strings = columns.get(3);
+        assertTrue(strings.isNull(1));
+        assertEquals("x", strings.getString(0));
+        assertEquals(42, strings.getInt(2));
+    }
+
+    @Test
+    public void testConvertedStrings() throws SQLException {
+
+        List<ColumnDescriptor> descriptors = new ArrayList<>(3);
+        descriptors.add(ColumnDescriptor.builder().name("col_decimal").typeDescriptor(ColumnTypeDescriptor.builder().hiveType(HiveType.DECIMAL).build()).position(1).build());
+        descriptors.add(ColumnDescriptor.builder().name("col_timestamp").typeDescriptor(ColumnTypeDescriptor.builder().hiveType(HiveType.TIMESTAMP).build()).position(2).build());
+        descriptors.add(ColumnDescriptor.builder().name("col_date").typeDescriptor(ColumnTypeDescriptor.builder().hiveType(HiveType.DATE).build()).position(3).build());
+
+        byte[] nulls = {(byte) 0x01};
+
+        TRowSet rowSet = new TRowSet(0, new ArrayList<>(0));
+        rowSet.addToColumns(TColumn.stringVal(new TStringColumn(Arrays.asList("", "12.50", "not a number"), ByteBuffer.wrap(nulls))));
+        rowSet.addToColumns(TColumn.stringVal(new TStringColumn(Arrays.asList("", "2018-01-02 03:04:05.6", "not a timestamp"), ByteBuffer.wrap(nulls))));
+        rowSet.addToColumns(TColumn.stringVal(new TStringColumn(Arrays.asList("", "2018-01-02", "not a date"), ByteBuffer.wrap(nulls))));
+
+        // row 2 holds values that can't be parsed; building the page must not touch them
+        ColumnBasedSet columnBasedSet = ColumnBasedSet.builder().rowSet(rowSet).schema(Schema.builder().descriptors(descriptors).build()).build();
+
+        List<ColumnData> columns = columnBasedSet.getColumns();
+
+        assertNull(columns.get(0).getColumn(0).asBigDecimal());
+        assertNull(columns.get(1).getColumn(0).asTimestamp());
+
+        assertEquals(new BigDecimal("12.50"), columns.get(0).getColumn(1).asBigDecimal());
+        assertEquals("12.50", columns.get(0).getString(1));
+
+        Timestamp timestamp = columns.get(1).getColumn(1).asTimestamp();
+        assertEquals(Timestamp.valueOf("2018-01-02 03:04:05.6"), timestamp);
+
+        // the cached value is not shared with callers
+        timestamp.setNanos(0);
+        assertEquals(Timestamp.valueOf("2018-01-02 03:04:05.6"), columns.get(1).getColumn(1).asTimestamp());
+
+        assertEquals(Date.valueOf("2018-01-02"), columns.get(2).getColumn(1).asDate());
+        assertEquals("2018-01-02", columns.get(2).getString(1));
+
+        assertThrows(HiveException.class, () -> columns.get(1).getColumn(2));
+    }
+
+    @Test
+    public void testNullBitmap() {
+
+        List<Long> values = new ArrayList<>(20);
+
+        for (long i = 0; i < 20; i++) {
+            values.add(i);
+        }
+
+        // rows 0, 9 and 19 are null; trailing bytes past the row count are ignored
+        byte[] nulls = {(byte) 0x01, (byte) 0x02, (byte) 0x08, (byte) 0x00};
+
+        TRowSet rowSet = new TRowSet(0, new ArrayList<>(0));
+        rowSet.addToColumns(TColumn.i64Val(new TI64Column(values, ByteBuffer.wrap(nulls))));
+        rowSet.addToColumns(TColumn.i32Val(new TI32Column(new ArrayList<>(0), ByteBuffer.wrap(new byte[0]))));
+        rowSet.addToColumns(TColumn.doubleVal(new TDoubleColumn(new ArrayList<>(0), ByteBuffer.wrap(new byte[0]))));
+        rowSet.addToColumns(TColumn.stringVal(new TStringColumn(new ArrayList<>(0), ByteBuffer.wrap(new byte[0]))));
+
+        ColumnBasedSet columnBasedSet = ColumnBasedSet.builder().rowSet(rowSet).schema(schema).build();
+
+        ColumnData column = columnBasedSet.getColumns().get(0);
+
+        for (int row = 0; row < 20; row++) {
+            assertEquals(row == 0 || row == 9 || row == 19, column.isNull(row), "row " + row);
+        }
+
+        // an empty bitmap means no nulls
+        assertFalse(columnBasedSet.getColumns().get(1).isNull(0));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc;
+
+import org.junit.jupiter.api.Test;
+import veil.hdp.hive.jdbc.test.BaseTest;
+import veil.hdp.hive.jdbc.utils.FetchSizeTuner;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FetchSizeTunerTest extends BaseTest {
+
+    private static FetchSizeTuner tuner(int fetchSize, int maxRows) {
+        Properties properties = new Properties();
+        HiveDriverProperty.FETCH_SIZE_MIN.set(properties, 100);
+        HiveDriverProperty.FETCH_SIZE_MAX.set(properties, 10000);
+        HiveDriverProperty.FETCH_TARGET_BYTES.set(properties, 1000000);
+        HiveDriverProperty.FETCH_TARGET_LATENCY.set(properties, 1000);
+
+        return FetchSizeTuner.builder().properties(properties).fetchSize(fetchSize).maxRows(maxRows).build();
+    }
+
+    @Test
+    public void testGrowsForSmallFastPages() {
+        FetchSizeTuner tuner = tuner(1000, 0);
+
+        // 8 bytes a row, 1 ms per page; limited to doubling each time
+        tuner.update(1000, 8000, 1);
+        assertEquals(2000, tuner.getFetchSize());
+
+        tuner.update(2000, 16000, 1);
+        assertEquals(4000, tuner.getFetchSize());
+
+        tuner.update(4000, 32000, 1);
+        tuner.update(8000, 64000, 1);
+        assertEquals(10000, tuner.getFetchSize());
+    }
+
+    @Test
+    public void testShrinksForWidePages() {
+        FetchSizeTuner tuner = tuner(1000, 0);
+
+        // 4000 bytes a row; 250 rows fit the target
+        tuner.update(1000, 4000000, 10);
+        assertEquals(250, tuner.getFetchSize());
+
+        // never below the floor
+        tuner.update(250, 25000000, 10);
+        assertEquals(100, tuner.getFetchSize());
+    }
+
+    @Test
+    public void testShrinksForSlowPages() {
+        FetchSizeTuner tuner = tuner(1000, 0);
+
+        tuner.update(1000, 1000, 4000);
+        assertEquals(250, tuner.getFetchSize());
+    }
+
+    @Test
+    public void testIgnoresShortPagesAndHonorsMaxRows() {
+        FetchSizeTuner tuner = tuner(1000, 1500);
+
+        tuner.update(10, 80, 1);
+        assertEquals(1000, tuner.getFetchSize());
+
+        tuner.update(1000, 8000, 1);
+        assertEquals(1500, tuner.getFetchSize());
+    }
+
+    @Test
+    public void testLimitedByServerCap() {
+        FetchSizeTuner tuner = tuner(1000, 0);
+
+        tuner.update(1000, 8000, 1);
+        assertEquals(2000, tuner.getFetchSize());
+
+        // asked for 2000, the server returned its cap
+        tuner.limit(1500);
+        tuner.update(1500, 12000, 1);
+        assertEquals(1500, tuner.getFetchSize());
+    }
+}
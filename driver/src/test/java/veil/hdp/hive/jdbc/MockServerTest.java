@@ -0,0 +1,407 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package veil.hdp.hive.jdbc;
+
+import org.junit.jupiter.api.Test;
+import veil.hdp.hive.jdbc.bindings.TTypeId;
+import veil.hdp.hive.jdbc.test.BaseTest;
+import veil.hdp.hive.jdbc.test.server.MockCliService;
+import veil.hdp.hive.jdbc.test.server.MockHiveServer;
+import veil.hdp.hive.jdbc.test.server.MockHiveServer.MockTransport;
+import veil.hdp.hive.jdbc.test.server.ResultShape;
+import veil.hdp.hive.jdbc.thrift.HiveThriftException;
+import veil.hdp.hive.jdbc.utils.HttpClientRegistry;
+
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosPrincipal;
+import java.security.PrivilegedAction;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the driver against the in process mock HS2; no cluster needed.
+ */
+public class MockServerTest extends BaseTest {
+
+    private static final ResultShape SHAPE = ResultShape.builder()
+            .types(TTypeId.INT_TYPE, TTypeId.BIGINT_TYPE, TTypeId.DOUBLE_TYPE, TTypeId.BOOLEAN_TYPE, TTypeId.STRING_TYPE)
+            .rows(2500)
+            .nullEvery(7)
+            .build();
+
+    private static Connection connect(MockHiveServer server, Properties properties) throws SQLException {
+        return new HiveDriver().connect(server.getUrl(), properties);
+    }
+
+    private static Properties fetchSize(int fetchSize) {
+        Properties properties = new Properties();
+        properties.setProperty(HiveDriverProperty.FETCH_SIZE.getKey(), Integer.toString(fetchSize));
+        return properties;
+    }
+
+    private static long verify(ResultSet rs, ResultShape shape) throws SQLException {
+        long row = 0;
+
+        while (rs.next()) {
+            for (int column = 0; column < shape.getTypes().length; column++) {
+                Object expected = shape.value(row, column);
+                Object actual = rs.getObject(column + 1);
+
+                if (expected == null) {
+                    assertNull(actual, "row " + row + " column " + column);
+                } else {
+                    assertEquals(expected.toString(), actual.toString(), "row " + row + " column " + column);
+                }
+            }
+
+            row++;
+        }
+
+        return row;
+    }
+
+    @Test
+    public void testQueryOverEachTransport() throws Exception {
+        for (MockTransport transport : MockTransport.values()) {
+
+            MockCliService service = MockCliService.builder().shape(SHAPE).build();
+
+            try (MockHiveServer server = MockHiveServer.builder().transport(transport).service(service).build()) {
+
+                try (Connection connection = connect(server, fetchSize(1000));
+                     Statement statement = connection.createStatement();
+                     ResultSet rs = statement.executeQuery("select * from mock")) {
+
+                    assertEquals(SHAPE.getRows(), verify(rs, SHAPE), transport.name());
+                }
+
+                // 1000 + 1000 + 500; the short page ends the fetch
+                assertEquals(3, service.getCallCount("FetchResults"), transport.name());
+                assertEquals(1, service.getCallCount("GetResultSetMetadata"), transport.name());
+                assertEquals(0, service.getOpenSessionCount(), transport.name());
+                assertEquals(0, service.getOpenOperationCount(), transport.name());
+            }
+        }
+    }
+
+    @Test
+    public void testMetaDataBeforeFirstFetch() throws Exception {
+        MockCliService service = MockCliService.builder().shape(SHAPE).build();
+
+        try (MockHiveServer server = MockHiveServer.builder().service(service).build();
+             Connection connection = connect(server, new Properties());
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select * from mock")) {
+
+            assertEquals(0, service.getCallCount("GetResultSetMetadata"));
+            assertEquals(SHAPE.getTypes().length, rs.getMetaData().getColumnCount());
+            assertEquals(SHAPE.getRows(), verify(rs, SHAPE));
+            assertEquals(1, service.getCallCount("GetResultSetMetadata"));
+        }
+    }
+
+    @Test
+    public void testAdaptiveFetchAboveServerCap() throws Exception {
+        // like hive.server2.thrift.resultset.max.fetch.size; the tuner grows past it from the first page
+        MockCliService service = MockCliService.builder().shape(SHAPE).maxFetchSize(700).build();
+
+        Properties properties = fetchSize(500);
+        properties.setProperty(HiveDriverProperty.FETCH_SIZE_ADAPTIVE_ENABLED.getKey(), "true");
+        properties.setProperty(HiveDriverProperty.FETCH_SIZE_MAX.getKey(), "5000");
+
+        try (MockHiveServer server = MockHiveServer.builder().service(service).build();
+             Connection connection = connect(server, properties);
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select * from mock")) {
+
+            assertEquals(SHAPE.getRows(), verify(rs, SHAPE));
+        }
+    }
+
+    @Test
+    public void testSocketOptions() throws Exception {
+        for (MockTransport transport : new MockTransport[]{MockTransport.BINARY, MockTransport.BINARY_NOSASL}) {
+
+            Properties properties = fetchSize(500);
+            // smaller than most reads so both the buffered and the direct read paths are taken
+            properties.setProperty(HiveDriverProperty.THRIFT_TRANSPORT_BUFFER_SIZE.getKey(), "64");
+            properties.setProperty(HiveDriverProperty.THRIFT_SOCKET_RECEIVE_BUFFER_SIZE.getKey(), "262144");
+            properties.setProperty(HiveDriverProperty.THRIFT_SOCKET_TCP_NO_DELAY.getKey(), "false");
+
+            try (MockHiveServer server = MockHiveServer.builder().transport(transport).service(MockCliService.builder().shape(SHAPE).build()).build();
+                 Connection connection = connect(server, properties);
+                 Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("select * from mock")) {
+
+                assertEquals(SHAPE.getRows(), verify(rs, SHAPE), transport.name());
+            }
+        }
+    }
+
+    @Test
+    public void testHttpPool() throws Exception {
+        MockCliService service = MockCliService.builder().shape(SHAPE).build();
+
+        Properties properties = fetchSize(1000);
+        properties.setProperty(HiveDriverProperty.HTTP_POOL_ENABLED.getKey(), "true");
+
+        try (MockHiveServer server = MockHiveServer.builder().transport(MockTransport.HTTP).service(service).build();
+             Connection connection = connect(server, properties);
+             Statement statement = connection.createStatement()) {
+
+            // the first result is abandoned part way; its connection must still go back to the pool
+            try (ResultSet rs = statement.executeQuery("select * from mock")) {
+                assertTrue(rs.next());
+            }
+
+            try (ResultSet rs = statement.executeQuery("select * from mock")) {
+                assertEquals(SHAPE.getRows(), verify(rs, SHAPE));
+            }
+        }
+    }
+
+    @Test
+    public void testSharedHttpClient() throws Exception {
+        MockCliService service = MockCliService.builder().shape(SHAPE).build();
+
+        Properties properties = fetchSize(1000);
+        properties.setProperty(HiveDriverProperty.HTTP_POOL_MAX_PER_ROUTE.getKey(), "1");
+        properties.setProperty(HiveDriverProperty.HTTP_KEEP_ALIVE_TIMEOUT.getKey(), "100");
+
+        int before = HttpClientRegistry.getClientCount();
+
+        try (MockHiveServer server = MockHiveServer.builder().transport(MockTransport.HTTP).service(service).build()) {
+
+            try (Connection first = connect(server, properties);
+                 Connection second = connect(server, properties);
+                 Statement firstStatement = first.createStatement();
+                 Statement secondStatement = second.createStatement();
+                 ResultSet firstRs = firstStatement.executeQuery("select * from mock");
+                 ResultSet secondRs = secondStatement.executeQuery("select * from mock")) {
+
+                assertEquals(before + 1, HttpClientRegistry.getClientCount());
+
+                // one pooled http connection between them; each is released once its call completes
+                assertEquals(SHAPE.getRows(), verify(firstRs, SHAPE));
+                assertEquals(SHAPE.getRows(), verify(secondRs, SHAPE));
+            }
+
+            long deadline = System.currentTimeMillis() + 5000;
+
+            while (HttpClientRegistry.getClientCount() > before && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+
+            assertEquals(before, HttpClientRegistry.getClientCount());
+        }
+    }
+
+    @Test
+    public void testSharedHttpPoolWaitIsBounded() throws Exception {
+        MockCliService service = MockCliService.builder().shape(SHAPE).executeLatency(3000).statusLatency(3000).build();
+
+        Properties properties = new Properties();
+        properties.setProperty(HiveDriverProperty.HTTP_POOL_MAX_PER_ROUTE.getKey(), "1");
+        properties.setProperty(HiveDriverProperty.THRIFT_TRANSPORT_TIMEOUT.getKey(), "200");
+
+        try (MockHiveServer server = MockHiveServer.builder().transport(MockTransport.HTTP).service(service).build();
+             Connection polling = connect(server, properties);
+             Connection waiting = connect(server, properties);
+             HiveStatement pollingStatement = polling.createStatement().unwrap(HiveStatement.class);
+             Statement waitingStatement = waiting.createStatement()) {
+
+            pollingStatement.executeAsync("select * from mock");
+
+            // wait for the long poll to take the only pooled connection
+            long deadline = System.currentTimeMillis() + 5000;
+
+            while (service.getCallCount("GetOperationStatus") == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            long start = System.currentTimeMillis();
+
+            assertThrows(HiveThriftException.class, () -> waitingStatement.executeQuery("select * from mock"));
+            assertTrue(System.currentTimeMillis() - start < 2000, "waited out the long poll for a pooled connection");
+        }
+    }
+
+    @Test
+    public void testFailedHttpClientBuildIsNotShared() {
+        Properties properties = new Properties();
+        properties.setProperty(HiveDriverProperty.TRANSPORT_MODE.getKey(), "http");
+        properties.setProperty(HiveDriverProperty.SSL_ENABLED.getKey(), "true");
+        properties.setProperty(HiveDriverProperty.SSL_TRUST_STORE_PATH.getKey(), "/does/not/exist.jks");
+
+        int before = HttpClientRegistry.getClientCount();
+
+        // the failed entry is removed, so the next connect tries again rather than waiting on it
+        for (int i = 0; i < 2; i++) {
+            assertThrows(RuntimeException.class, () -> HttpClientRegistry.acquire(properties));
+            assertEquals(before, HttpClientRegistry.getClientCount());
+        }
+    }
+
+    @Test
+    public void testHttpClientPerPreAuthIdentity() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(HiveDriverProperty.TRANSPORT_MODE.getKey(), "http");
+        properties.setProperty(HiveDriverProperty.AUTHENTICATION_MODE.getKey(), "KERBEROS");
+        properties.setProperty(HiveDriverProperty.KERBEROS_MODE.getKey(), "PREAUTH");
+
+        Subject alice = new Subject(false, Collections.singleton(new KerberosPrincipal("alice@EXAMPLE.COM")), Collections.emptySet(), Collections.emptySet());
+        Subject bob = new Subject(false, Collections.singleton(new KerberosPrincipal("bob@EXAMPLE.COM")), Collections.emptySet(), Collections.emptySet());
+        Subject aliceAgain = new Subject(false, Collections.singleton(new KerberosPrincipal("alice@EXAMPLE.COM")), Collections.emptySet(), Collections.emptySet());
+
+        PrivilegedAction<HttpClientRegistry.Lease> acquire = () -> HttpClientRegistry.acquire(properties);
+
+        try (HttpClientRegistry.Lease aliceLease = Subject.doAs(alice, acquire);
+             HttpClientRegistry.Lease bobLease = Subject.doAs(bob, acquire);
+             HttpClientRegistry.Lease aliceAgainLease = Subject.doAs(aliceAgain, acquire)) {
+
+            // each identity gets its own client, and with it its own cookie store
+            assertNotSame(aliceLease.getClient(), bobLease.getClient());
+            assertSame(aliceLease.getClient(), aliceAgainLease.getClient());
+        }
+    }
+
+    @Test
+    public void testStatusPolling() throws Exception {
+        MockCliService service = MockCliService.builder().shape(SHAPE).runningPolls(3).build();
+
+        try (MockHiveServer server = MockHiveServer.builder().service(service).build();
+             Connection connection = connect(server, new Properties());
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select * from mock")) {
+
+            assertEquals(4, service.getCallCount("GetOperationStatus"));
+            assertEquals(SHAPE.getRows(), verify(rs, SHAPE));
+        }
+    }
+
+    @Test
+    public void testExecuteAsync() throws Exception {
+        MockCliService service = MockCliService.builder().shape(SHAPE).executeLatency(50).build();
+
+        try (MockHiveServer server = MockHiveServer.builder().transport(MockTransport.HTTP).service(service).build();
+             Connection connection = connect(server, new Properties());
+             HiveStatement statement = connection.createStatement().unwrap(HiveStatement.class);
+             ResultSet rs = statement.executeAsync("select * from mock").get(10, TimeUnit.SECONDS)) {
+
+            assertEquals(SHAPE.getRows(), verify(rs, SHAPE));
+        }
+    }
+
+    @Test
+    public void testExecuteAsyncBehindLongPolls() throws Exception {
+        MockCliService slowService = MockCliService.builder().shape(SHAPE).executeLatency(2000).statusLatency(2000).build();
+        MockCliService fastService = MockCliService.builder().shape(SHAPE).build();
+
+        List<Connection> connections = new ArrayList<>();
+
+        try (MockHiveServer slow = MockHiveServer.builder().service(slowService).workerThreads(40).build();
+             MockHiveServer fast = MockHiveServer.builder().service(fastService).build()) {
+
+            try {
+                // enough long running statements to occupy every status thread if polls shared a fixed pool
+                for (int i = 0; i < 32; i++) {
+                    Connection connection = connect(slow, new Properties());
+                    connections.add(connection);
+                    connection.createStatement().unwrap(HiveStatement.class).executeAsync("select * from mock");
+                }
+
+                List<CompletableFuture<ResultSet>> futures = new ArrayList<>();
+
+                for (int i = 0; i < 8; i++) {
+                    Connection connection = connect(fast, new Properties());
+                    connections.add(connection);
+                    futures.add(connection.createStatement().unwrap(HiveStatement.class).executeAsync("select * from mock"));
+                }
+
+                // the quick statements finish without waiting out the slow statements' long polls
+                for (CompletableFuture<ResultSet> future : futures) {
+                    assertNotNull(future.get(1, TimeUnit.SECONDS));
+                }
+
+            } finally {
+                for (Connection connection : connections) {
+                    connection.close();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPrefetch() throws Exception {
+        MockCliService service = MockCliService.builder().shape(SHAPE).pageLatency(5).build();
+
+        Properties properties = fetchSize(100);
+        properties.setProperty(HiveDriverProperty.FETCH_PREFETCH_DEPTH.getKey(), "3");
+
+        try (MockHiveServer server = MockHiveServer.builder().service(service).build();
+             Connection connection = connect(server, properties);
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select * from mock")) {
+
+            assertEquals(SHAPE.getRows(), verify(rs, SHAPE));
+        }
+    }
+
+    @Test
+    public void testNoResultSet() throws Exception {
+        try (MockHiveServer server = MockHiveServer.builder().transport(MockTransport.BINARY_NOSASL).build();
+             Connection connection = connect(server, new Properties());
+             Statement statement = connection.createStatement()) {
+
+            assertFalse(statement.execute("use mock"));
+            assertNull(statement.getResultSet());
+        }
+    }
+
+    @Test
+    public void testInjectedFailures() throws Exception {
+        MockCliService service = MockCliService.builder().shape(SHAPE).executeFailureRate(1).build();
+
+        try (MockHiveServer server = MockHiveServer.builder().service(service).build();
+             Connection connection = connect(server, new Properties());
+             Statement statement = connection.createStatement()) {
+
+            assertThrows(HiveThriftException.class, () -> statement.executeQuery("select * from mock"));
+        }
+
+        service = MockCliService.builder().shape(SHAPE).fetchFailureRate(1).build();
+
+        try (MockHiveServer server = MockHiveServer.builder().service(service).build();
+             Connection connection = connect(server, new Properties());
+             Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select * from mock")) {
+
+            assertThrows(HiveThriftException.class, rs::next);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc;
+
+import org.junit.jupiter.api.Test;
+import veil.hdp.hive.jdbc.test.BaseTest;
+import veil.hdp.hive.jdbc.utils.PollingBackoff;
+
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PollingBackoffTest extends BaseTest {
+
+    @Test
+    public void testBackoff() {
+        Properties properties = new Properties();
+        HiveDriverProperty.STATUS_POLL_INITIAL_DELAY.set(properties, 10);
+        HiveDriverProperty.STATUS_POLL_MAX_INTERVAL.set(properties, 100);
+        HiveDriverProperty.STATUS_POLL_JITTER.set(properties, "0");
+
+        PollingBackoff backoff = PollingBackoff.builder().properties(properties).build();
+
+        assertEquals(10, backoff.nextDelay());
+        assertEquals(20, backoff.nextDelay());
+        assertEquals(40, backoff.nextDelay());
+        assertEquals(80, backoff.nextDelay());
+        assertEquals(100, backoff.nextDelay());
+        assertEquals(100, backoff.nextDelay());
+    }
+
+    @Test
+    public void testJitter() {
+        Properties properties = new Properties();
+        HiveDriverProperty.STATUS_POLL_INITIAL_DELAY.set(properties, 100);
+        HiveDriverProperty.STATUS_POLL_MULTIPLIER.set(properties, "1");
+        HiveDriverProperty.STATUS_POLL_JITTER.set(properties, "0.5");
+
+        PollingBackoff backoff = PollingBackoff.builder().properties(properties).build();
+
+        for (int i = 0; i < 100; i++) {
+            long delay = backoff.nextDelay();
+            assertTrue(delay >= 50 && delay <= 150, "delay " + delay);
+        }
+    }
+
+    @Test
+    public void testZeroInitialDelay() {
+        Properties properties = new Properties();
+        HiveDriverProperty.STATUS_POLL_INITIAL_DELAY.set(properties, 0);
+        HiveDriverProperty.STATUS_POLL_MAX_INTERVAL.set(properties, 0);
+        HiveDriverProperty.STATUS_POLL_JITTER.set(properties, "0");
+
+        PollingBackoff backoff = PollingBackoff.builder().properties(properties).build();
+
+        // the first poll may follow immediately; after that the wait has to grow
+        assertEquals(0, backoff.nextDelay());
+        assertEquals(1, backoff.nextDelay());
+
+        HiveDriverProperty.STATUS_POLL_MAX_INTERVAL.set(properties, 100);
+
+        backoff = PollingBackoff.builder().properties(properties).build();
+
+        assertEquals(0, backoff.nextDelay());
+        assertEquals(2, backoff.nextDelay());
+        assertEquals(4, backoff.nextDelay());
+    }
+}
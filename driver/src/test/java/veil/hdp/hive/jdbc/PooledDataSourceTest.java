@@ -0,0 +1,286 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package veil.hdp.hive.jdbc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import veil.hdp.hive.jdbc.test.BaseTest;
+import veil.hdp.hive.jdbc.test.server.MockCliService;
+import veil.hdp.hive.jdbc.test.server.MockHiveServer;
+import veil.hdp.hive.jdbc.utils.QueryUtils;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.PooledConnection;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PooledDataSourceTest extends BaseTest {
+
+    private MockCliService service;
+    private MockHiveServer server;
+    private HivePooledDataSource dataSource;
+
+    @BeforeEach
+    public void setUp() {
+        service = MockCliService.builder().build();
+        server = MockHiveServer.builder().service(service).build();
+
+        dataSource = new HivePooledDataSource();
+        configure(dataSource);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        dataSource.close();
+        server.close();
+    }
+
+    private void configure(HiveDataSource ds) {
+        ds.setHost(server.getHost());
+        ds.setPort(server.getPort());
+        ds.setDatabase("tests");
+    }
+
+    private static void query(Connection connection) throws Exception {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("select * from mock")) {
+            while (rs.next()) {
+                rs.getInt(1);
+            }
+        }
+    }
+
+    @Test
+    public void testSessionReuse() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            try (Connection connection = dataSource.getConnection()) {
+                query(connection);
+            }
+        }
+
+        assertEquals(1, service.getCallCount("OpenSession"));
+        assertEquals(1, dataSource.getIdleConnections());
+        assertEquals(0, dataSource.getActiveConnections());
+
+        dataSource.close();
+
+        assertEquals(0, service.getOpenSessionCount());
+    }
+
+    @Test
+    public void testResetOnReturn() throws Exception {
+        try (Connection connection = dataSource.getConnection()) {
+            query(connection);
+        }
+
+        // nothing changed; returning is free
+        assertEquals(1, service.getCallCount("ExecuteStatement"));
+
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setSchema("other");
+        }
+
+        // USE other, then RESET and USE tests on return
+        assertEquals(4, service.getCallCount("ExecuteStatement"));
+
+        try (Connection connection = dataSource.getConnection()) {
+            query(connection);
+        }
+
+        assertEquals(5, service.getCallCount("ExecuteStatement"));
+        assertEquals(1, service.getCallCount("OpenSession"));
+    }
+
+    @Test
+    public void testSessionStateDetection() throws Exception {
+        assertFalse(QueryUtils.changesSessionState("select * from mock"));
+        assertFalse(QueryUtils.changesSessionState("-- nightly\n/* report */ (SELECT 1)"));
+        assertFalse(QueryUtils.changesSessionState("describe mock"));
+
+        assertTrue(QueryUtils.changesSessionState("create temporary table t as select 1"));
+        assertTrue(QueryUtils.changesSessionState("CREATE TEMPORARY MACRO m(x int) x + 1"));
+        assertTrue(QueryUtils.changesSessionState("-- tune\nset hive.exec.parallel=true"));
+        assertTrue(QueryUtils.changesSessionState("/* switch */ use other"));
+        assertTrue(QueryUtils.changesSessionState("selectivity"));
+
+        // configuration and the current database can be reset; temporary objects, resources and variables can't
+        assertTrue(QueryUtils.isResettable("select * from mock"));
+        assertTrue(QueryUtils.isResettable("set hive.exec.parallel=true"));
+        assertTrue(QueryUtils.isResettable("/* switch */ use other"));
+        assertFalse(QueryUtils.isResettable("create temporary table t as select 1"));
+        assertFalse(QueryUtils.isResettable("-- udf\nadd jar /tmp/udf.jar"));
+        assertFalse(QueryUtils.isResettable("set hivevar:day=1"));
+        assertFalse(QueryUtils.isResettable("settle"));
+    }
+
+    @Test
+    public void testTemporaryObjectsNotShared() throws Exception {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("create temporary function f as 'mock.F'");
+
+            assertEquals(Collections.singleton("f"), service.getTemporaryObjects());
+        }
+
+        // RESET wouldn't drop the function, so the session is closed rather than reused
+        assertEquals(0, dataSource.getIdleConnections());
+        assertEquals(0, service.getOpenSessionCount());
+        assertEquals(1, service.getCallCount("ExecuteStatement"));
+
+        try (Connection connection = dataSource.getConnection()) {
+            query(connection);
+
+            assertTrue(service.getTemporaryObjects().isEmpty());
+        }
+
+        assertEquals(2, service.getCallCount("OpenSession"));
+        assertEquals(1, dataSource.getIdleConnections());
+    }
+
+    @Test
+    public void testChildrenClosedOnReturn() throws Exception {
+        Statement statement;
+        ResultSet rs;
+        PreparedStatement prepared;
+
+        try (Connection connection = dataSource.getConnection()) {
+            statement = connection.createStatement();
+            rs = statement.executeQuery("select * from mock");
+            prepared = connection.prepareStatement("select * from mock");
+            prepared.executeQuery();
+
+            assertEquals(2, service.getOpenOperationCount());
+        }
+
+        assertTrue(statement.isClosed());
+        assertTrue(rs.isClosed());
+        assertTrue(prepared.isClosed());
+        assertEquals(0, service.getOpenOperationCount());
+        assertEquals(1, service.getOpenSessionCount());
+    }
+
+    @Test
+    public void testBorrowTimeout() throws Exception {
+        dataSource.setMaxTotal(1);
+        dataSource.setMaxIdle(1);
+        dataSource.setBorrowTimeout(50);
+
+        try (Connection connection = dataSource.getConnection()) {
+            assertEquals(1, dataSource.getActiveConnections());
+            assertThrows(SQLTransientConnectionException.class, () -> dataSource.getConnection());
+        }
+
+        try (Connection connection = dataSource.getConnection()) {
+            query(connection);
+        }
+    }
+
+    @Test
+    public void testMaxLifetime() throws Exception {
+        dataSource.setMaxLifetime(1);
+
+        try (Connection connection = dataSource.getConnection()) {
+            Thread.sleep(5);
+        }
+
+        assertEquals(0, dataSource.getIdleConnections());
+        assertEquals(0, service.getOpenSessionCount());
+
+        try (Connection connection = dataSource.getConnection()) {
+            query(connection);
+        }
+
+        assertEquals(2, service.getCallCount("OpenSession"));
+    }
+
+    @Test
+    public void testAbortDiscardsSession() throws Exception {
+        Connection connection = dataSource.getConnection();
+
+        connection.abort(null);
+
+        assertTrue(connection.isClosed());
+        assertEquals(0, dataSource.getIdleConnections());
+        assertEquals(0, dataSource.getActiveConnections());
+        assertEquals(0, service.getOpenSessionCount());
+    }
+
+    @Test
+    public void testMinIdle() throws Exception {
+        dataSource.setMinIdle(2);
+        dataSource.setMaxIdle(2);
+
+        try (Connection connection = dataSource.getConnection()) {
+            query(connection);
+        }
+
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while (dataSource.getIdleConnections() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(2, dataSource.getIdleConnections());
+    }
+
+    @Test
+    public void testPooledConnectionEvents() throws Exception {
+        HiveConnectionPoolDataSource poolDataSource = new HiveConnectionPoolDataSource();
+        configure(poolDataSource);
+
+        PooledConnection pooledConnection = poolDataSource.getPooledConnection();
+
+        AtomicInteger closed = new AtomicInteger();
+
+        pooledConnection.addConnectionEventListener(new ConnectionEventListener() {
+            @Override
+            public void connectionClosed(ConnectionEvent event) {
+                closed.incrementAndGet();
+            }
+
+            @Override
+            public void connectionErrorOccurred(ConnectionEvent event) {
+                fail(event.getSQLException());
+            }
+        });
+
+        Connection first = pooledConnection.getConnection();
+        first.close();
+        first.close();
+
+        try (Connection second = pooledConnection.getConnection()) {
+            query(second);
+        }
+
+        assertEquals(2, closed.get());
+        assertEquals(1, service.getOpenSessionCount());
+
+        pooledConnection.close();
+
+        assertEquals(0, service.getOpenSessionCount());
+    }
+}
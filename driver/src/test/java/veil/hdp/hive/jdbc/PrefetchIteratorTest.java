@@ -0,0 +1,174 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc;
+
+import org.junit.jupiter.api.Test;
+import veil.hdp.hive.jdbc.bindings.TColumn;
+import veil.hdp.hive.jdbc.bindings.TI64Column;
+import veil.hdp.hive.jdbc.bindings.TRowSet;
+import veil.hdp.hive.jdbc.data.ColumnBasedSet;
+import veil.hdp.hive.jdbc.metadata.ColumnDescriptor;
+import veil.hdp.hive.jdbc.metadata.ColumnTypeDescriptor;
+import veil.hdp.hive.jdbc.metadata.HiveType;
+import veil.hdp.hive.jdbc.metadata.Schema;
+import veil.hdp.hive.jdbc.test.BaseTest;
+import veil.hdp.hive.jdbc.utils.PrefetchIterator;
+import veil.hdp.hive.jdbc.utils.ResultSetCursor;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PrefetchIteratorTest extends BaseTest {
+
+    private static final int FETCH_SIZE = 10;
+
+    private final Schema schema = Schema.builder().descriptors(Collections.singletonList(ColumnDescriptor.builder().name("col_bigint").typeDescriptor(ColumnTypeDescriptor.builder().hiveType(HiveType.BIG_INT).build()).position(1).build())).build();
+
+    private ColumnBasedSet page(int start, int rows) {
+        List<Long> values = new ArrayList<>(rows);
+
+        for (long i = start; i < start + rows; i++) {
+            values.add(i);
+        }
+
+        TRowSet rowSet = new TRowSet(0, new ArrayList<>(0));
+        rowSet.addToColumns(TColumn.i64Val(new TI64Column(values, ByteBuffer.wrap(new byte[0]))));
+
+        return ColumnBasedSet.builder().rowSet(rowSet).schema(schema).build();
+    }
+
+    @Test
+    public void testReadsAllRows() throws Exception {
+
+        AtomicInteger fetches = new AtomicInteger();
+
+        // 3 full pages and a short one
+        Iterator<ColumnBasedSet> source = new Iterator<ColumnBasedSet>() {
+            @Override
+            public boolean hasNext() {
+                return fetches.get() < 4;
+            }
+
+            @Override
+            public ColumnBasedSet next() {
+                int fetch = fetches.getAndIncrement();
+                return page(fetch * FETCH_SIZE, fetch < 3 ? FETCH_SIZE : 5);
+            }
+        };
+
+        ResultSetCursor cursor = new ResultSetCursor(new PrefetchIterator(source, 2, Long.MAX_VALUE));
+
+        long expected = 0;
+
+        while (cursor.next()) {
+            assertEquals(expected++, cursor.getColumnData(1).getLong(cursor.getPageRow()));
+        }
+
+        assertEquals(35, expected);
+        assertEquals(4, fetches.get());
+    }
+
+    @Test
+    public void testQueueDepthAndClose() throws Exception {
+
+        AtomicInteger fetches = new AtomicInteger();
+        CountDownLatch blocked = new CountDownLatch(3);
+
+        Iterator<ColumnBasedSet> source = new Iterator<ColumnBasedSet>() {
+            @Override
+            public boolean hasNext() {
+                blocked.countDown();
+                return true;
+            }
+
+            @Override
+            public ColumnBasedSet next() {
+                return page(fetches.getAndIncrement() * FETCH_SIZE, FETCH_SIZE);
+            }
+        };
+
+        PrefetchIterator iterator = new PrefetchIterator(source, 2, Long.MAX_VALUE);
+
+        // two pages queued, producer waits for room before asking for a third
+        assertFalse(blocked.await(500, TimeUnit.MILLISECONDS));
+        assertEquals(2, fetches.get());
+
+        assertTrue(iterator.hasNext());
+        assertEquals(0L, iterator.next().getColumns().get(0).getLong(0));
+
+        assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+        iterator.close();
+
+        int fetched = fetches.get();
+
+        assertFalse(iterator.hasNext());
+
+        Thread.sleep(200);
+        assertTrue(fetches.get() <= fetched + 1);
+    }
+
+    @Test
+    public void testFailure() {
+
+        Iterator<ColumnBasedSet> source = new Iterator<ColumnBasedSet>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public ColumnBasedSet next() {
+                throw new HiveException("fetch failed");
+            }
+        };
+
+        PrefetchIterator iterator = new PrefetchIterator(source, 2, Long.MAX_VALUE);
+
+        HiveException e = assertThrows(HiveException.class, iterator::hasNext);
+        assertEquals("fetch failed", e.getMessage());
+    }
+
+    @Test
+    public void testErrorIsNotEndOfData() {
+
+        Iterator<ColumnBasedSet> source = new Iterator<ColumnBasedSet>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public ColumnBasedSet next() {
+                throw new OutOfMemoryError("decode failed");
+            }
+        };
+
+        PrefetchIterator iterator = new PrefetchIterator(source, 2, Long.MAX_VALUE);
+
+        OutOfMemoryError e = assertThrows(OutOfMemoryError.class, iterator::hasNext);
+        assertEquals("decode failed", e.getMessage());
+    }
+}
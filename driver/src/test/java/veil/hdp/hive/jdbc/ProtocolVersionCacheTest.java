@@ -0,0 +1,140 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+
+package veil.hdp.hive.jdbc;
+
+import org.junit.jupiter.api.Test;
+import veil.hdp.hive.jdbc.bindings.TProtocolVersion;
+import veil.hdp.hive.jdbc.test.BaseTest;
+import veil.hdp.hive.jdbc.test.server.MockCliService;
+import veil.hdp.hive.jdbc.test.server.MockHiveServer;
+import veil.hdp.hive.jdbc.thrift.ProtocolVersionCache;
+
+import java.sql.Connection;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ProtocolVersionCacheTest extends BaseTest {
+
+    private static MockCliService olderServer() {
+        return MockCliService.builder().protocolVersion(TProtocolVersion.HIVE_CLI_SERVICE_PROTOCOL_V8).strictProtocol(true).build();
+    }
+
+    private static Properties protocol(int version, int ttl) {
+        Properties properties = new Properties();
+        properties.setProperty(HiveDriverProperty.THRIFT_PROTOCOL_VERSION.getKey(), Integer.toString(version));
+        properties.setProperty(HiveDriverProperty.THRIFT_PROTOCOL_VERSION_CACHE_TTL.getKey(), Integer.toString(ttl));
+        return properties;
+    }
+
+    @Test
+    public void testSecondSessionSkipsProbing() throws Exception {
+        MockCliService service = olderServer();
+
+        try (MockHiveServer server = MockHiveServer.builder().service(service).build()) {
+
+            long downgrades = ProtocolVersionCache.getDowngrades();
+
+            Properties properties = protocol(TProtocolVersion.HIVE_CLI_SERVICE_PROTOCOL_V10.getValue(), 60000);
+
+            try (Connection connection = new HiveDriver().connect(server.getUrl(), properties)) {
+                assertEquals(3, service.getCallCount("OpenSession"));
+            }
+
+            assertEquals(downgrades + 2, ProtocolVersionCache.getDowngrades());
+
+            long hits = ProtocolVersionCache.getHits();
+
+            try (Connection connection = new HiveDriver().connect(server.getUrl(), properties)) {
+                assertEquals(4, service.getCallCount("OpenSession"));
+            }
+
+            assertEquals(hits + 1, ProtocolVersionCache.getHits());
+            assertEquals(downgrades + 2, ProtocolVersionCache.getDowngrades());
+        }
+    }
+
+    @Test
+    public void testExpiresDespiteReuse() throws Exception {
+        MockCliService service = olderServer();
+
+        try (MockHiveServer server = MockHiveServer.builder().service(service).build()) {
+
+            Properties properties = protocol(TProtocolVersion.HIVE_CLI_SERVICE_PROTOCOL_V10.getValue(), 500);
+
+            try (Connection connection = new HiveDriver().connect(server.getUrl(), properties)) {
+                assertEquals(3, service.getCallCount("OpenSession"));
+            }
+
+            Thread.sleep(300);
+
+            // a hit doesn't restart the entry's lifetime
+            try (Connection connection = new HiveDriver().connect(server.getUrl(), properties)) {
+                assertEquals(4, service.getCallCount("OpenSession"));
+            }
+
+            Thread.sleep(300);
+
+            try (Connection connection = new HiveDriver().connect(server.getUrl(), properties)) {
+                assertEquals(7, service.getCallCount("OpenSession"));
+            }
+
+            long hits = ProtocolVersionCache.getHits();
+
+            // the probe after expiry caches the version again
+            try (Connection connection = new HiveDriver().connect(server.getUrl(), properties)) {
+                assertEquals(8, service.getCallCount("OpenSession"));
+            }
+
+            assertEquals(hits + 1, ProtocolVersionCache.getHits());
+        }
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        MockCliService service = olderServer();
+
+        try (MockHiveServer server = MockHiveServer.builder().service(service).build()) {
+
+            Properties properties = protocol(TProtocolVersion.HIVE_CLI_SERVICE_PROTOCOL_V9.getValue(), 0);
+
+            for (int i = 1; i <= 2; i++) {
+                try (Connection connection = new HiveDriver().connect(server.getUrl(), properties)) {
+                    assertEquals(i * 2, service.getCallCount("OpenSession"));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testConfiguredVersionIsCeiling() throws Exception {
+        MockCliService service = MockCliService.builder().build();
+
+        try (MockHiveServer server = MockHiveServer.builder().service(service).build()) {
+
+            try (Connection connection = new HiveDriver().connect(server.getUrl(), protocol(TProtocolVersion.HIVE_CLI_SERVICE_PROTOCOL_V10.getValue(), 60000))) {
+                assertEquals(1, service.getCallCount("OpenSession"));
+            }
+
+            // a cached V10 doesn't raise a connection configured for V8
+            try (Connection connection = new HiveDriver().connect(server.getUrl(), protocol(TProtocolVersion.HIVE_CLI_SERVICE_PROTOCOL_V8.getValue(), 60000))) {
+                assertEquals(2, service.getCallCount("OpenSession"));
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import veil.hdp.hive.jdbc.test.BaseTest;
+import veil.hdp.hive.jdbc.utils.SSLContextCache;
+
+import javax.net.ssl.SSLContext;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.security.KeyStore;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SSLContextCacheTest extends BaseTest {
+
+    private static final String PASSWORD = "changeit";
+
+    private File trustStore;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        trustStore = File.createTempFile("truststore", ".jks");
+
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        keyStore.load(null, PASSWORD.toCharArray());
+
+        try (FileOutputStream out = new FileOutputStream(trustStore)) {
+            keyStore.store(out, PASSWORD.toCharArray());
+        }
+
+        SSLContextCache.clear();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        trustStore.delete();
+    }
+
+    @Test
+    public void testContextIsReused() {
+        Properties properties = properties();
+
+        long loads = SSLContextCache.getLoads();
+
+        SSLContext first = SSLContextCache.get(properties);
+
+        assertSame(first, SSLContextCache.get(properties()));
+        assertEquals(loads + 1, SSLContextCache.getLoads());
+    }
+
+    @Test
+    public void testReloadedWhenStoreChanges() {
+        SSLContext first = SSLContextCache.get(properties());
+
+        assertTrue(trustStore.setLastModified(trustStore.lastModified() + 10000));
+
+        SSLContext second = SSLContextCache.get(properties());
+
+        assertNotSame(first, second);
+        assertSame(second, SSLContextCache.get(properties()));
+    }
+
+    @Test
+    public void testDefaultContext() throws Exception {
+        assertSame(SSLContext.getDefault(), SSLContextCache.get(new Properties()));
+    }
+
+    private Properties properties() {
+        Properties properties = new Properties();
+        properties.setProperty(HiveDriverProperty.SSL_TRUST_STORE_PATH.getKey(), trustStore.getAbsolutePath());
+        properties.setProperty(HiveDriverProperty.SSL_TRUST_STORE_PASSWORD.getKey(), PASSWORD);
+        return properties;
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc;
+
+import org.apache.thrift.transport.TTransportException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import veil.hdp.hive.jdbc.bindings.TStatus;
+import veil.hdp.hive.jdbc.bindings.TStatusCode;
+import veil.hdp.hive.jdbc.test.BaseTest;
+import veil.hdp.hive.jdbc.test.server.MockCliService;
+import veil.hdp.hive.jdbc.test.server.MockHiveServer;
+import veil.hdp.hive.jdbc.thrift.HiveThriftException;
+import veil.hdp.hive.jdbc.thrift.ThriftSession;
+import veil.hdp.hive.jdbc.utils.HiveExceptionUtils;
+import veil.hdp.hive.jdbc.utils.ServerSelector;
+
+import javax.security.sasl.SaslException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServerSelectorTest extends BaseTest {
+
+    private static final String FIRST = server("first");
+    private static final String SECOND = server("second");
+    private static final String THIRD = server("third");
+
+    private static final List<String> SERVERS = Arrays.asList(FIRST, SECOND, THIRD);
+
+    @BeforeEach
+    public void setUp() {
+        ServerSelector.clear();
+    }
+
+    private static String server(String host) {
+        return "hive.server2.thrift.bind.host=" + host + ";hive.server2.thrift.port=10000;hive.server2.transport.mode=binary";
+    }
+
+    private static Properties properties(ServerSelection selection) {
+        Properties properties = new Properties();
+        properties.setProperty(HiveDriverProperty.ZOOKEEPER_DISCOVERY_ENABLED.getKey(), "true");
+        properties.setProperty(HiveDriverProperty.ZOOKEEPER_DISCOVERY_SELECTION.getKey(), selection.name());
+        return properties;
+    }
+
+    // what ZookeeperUtils leaves behind once a server is chosen
+    private static Properties connectedTo(String host) {
+        Properties properties = properties(ServerSelection.RANDOM);
+        HiveDriverProperty.HOST_NAME.set(properties, host);
+        HiveDriverProperty.PORT_NUMBER.set(properties, 10000);
+        return properties;
+    }
+
+    @Test
+    public void testLeastConnections() {
+        ServerSelector.opened(connectedTo("first"), 1000);
+        ServerSelector.opened(connectedTo("first"), 1000);
+        ServerSelector.opened(connectedTo("second"), 1000);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(THIRD, ServerSelector.select(SERVERS, properties(ServerSelection.LEAST_CONNECTIONS)));
+        }
+
+        ServerSelector.closed(connectedTo("second"));
+        ServerSelector.opened(connectedTo("third"), 1000);
+        ServerSelector.opened(connectedTo("third"), 1000);
+
+        assertEquals(0, ServerSelector.getOpenSessions("second", 10000));
+        assertEquals(SECOND, ServerSelector.select(SERVERS, properties(ServerSelection.LEAST_CONNECTIONS)));
+    }
+
+    @Test
+    public void testBlacklist() {
+        ServerSelector.failed(connectedTo("first"));
+        ServerSelector.failed(connectedTo("second"));
+
+        assertTrue(ServerSelector.isBlacklisted("first", 10000));
+
+        for (ServerSelection selection : ServerSelection.values()) {
+            for (int i = 0; i < 20; i++) {
+                assertEquals(THIRD, ServerSelector.select(SERVERS, properties(selection)), selection.name());
+            }
+        }
+
+        ServerSelector.failed(connectedTo("third"));
+
+        // nothing left that isn't blacklisted; every server is a candidate again
+        assertNotNull(ServerSelector.select(SERVERS, properties(ServerSelection.RANDOM)));
+
+        ServerSelector.opened(connectedTo("first"), 1000);
+
+        assertFalse(ServerSelector.isBlacklisted("first", 10000));
+    }
+
+    @Test
+    public void testTransportFailures() {
+        assertTrue(HiveExceptionUtils.isTransportFailure(new HiveException(new TTransportException(new ConnectException("Connection refused")))));
+        assertTrue(HiveExceptionUtils.isTransportFailure(new HiveException("did not open", new TimeoutException())));
+        assertTrue(HiveExceptionUtils.isTransportFailure(new HiveThriftException(new TTransportException(new SocketException("Connection reset")))));
+
+        assertFalse(HiveExceptionUtils.isTransportFailure(new HiveException(new TTransportException(new SaslException("GSS initiate failed", new SocketTimeoutException())))));
+        assertFalse(HiveExceptionUtils.isTransportFailure(new HiveException(new TTransportException("Peer indicated failure: Error validating the login"))));
+
+        // the server's own stack trace hangs off an error status; its socket problems aren't ours
+        HiveThriftException status = new HiveThriftException(new TStatus(TStatusCode.ERROR_STATUS));
+        status.initCause(new SocketTimeoutException("metastore read timed out"));
+        assertFalse(HiveExceptionUtils.isTransportFailure(status));
+    }
+
+    @Test
+    public void testOnlyTransportFailuresBlacklist() throws Exception {
+        MockCliService service = MockCliService.builder().sessionFailureRate(1).build();
+
+        try (MockHiveServer server = MockHiveServer.builder().service(service).build()) {
+
+            Properties rejected = properties(ServerSelection.RANDOM);
+            HiveDriverProperty.HOST_NAME.set(rejected, server.getHost());
+            HiveDriverProperty.PORT_NUMBER.set(rejected, server.getPort());
+
+            assertThrows(HiveThriftException.class, () -> ThriftSession.builder().properties(rejected).build());
+            assertFalse(ServerSelector.isBlacklisted(server.getHost(), server.getPort()));
+        }
+
+        int port;
+
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+
+        Properties unreachable = properties(ServerSelection.RANDOM);
+        HiveDriverProperty.HOST_NAME.set(unreachable, "localhost");
+        HiveDriverProperty.PORT_NUMBER.set(unreachable, port);
+
+        assertThrows(HiveException.class, () -> ThriftSession.builder().properties(unreachable).build());
+        assertTrue(ServerSelector.isBlacklisted("localhost", port));
+    }
+
+    @Test
+    public void testLatency() {
+        ServerSelector.opened(connectedTo("first"), 1000000);
+        ServerSelector.opened(connectedTo("second"), 50000000);
+
+        List<String> servers = Arrays.asList(FIRST, SECOND);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(FIRST, ServerSelector.select(servers, properties(ServerSelection.LATENCY)));
+        }
+    }
+
+    @Test
+    public void testSticky() {
+        Set<String> chosen = new HashSet<>();
+
+        for (int user = 0; user < 30; user++) {
+            Properties properties = properties(ServerSelection.STICKY);
+            HiveDriverProperty.USER.set(properties, "user" + user);
+
+            String server = ServerSelector.select(SERVERS, properties);
+
+            for (int i = 0; i < 5; i++) {
+                assertEquals(server, ServerSelector.select(SERVERS, properties));
+            }
+
+            chosen.add(server);
+        }
+
+        // users spread over the servers
+        assertTrue(chosen.size() > 1);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import veil.hdp.hive.jdbc.security.ServiceTicketCache;
+import veil.hdp.hive.jdbc.test.BaseTest;
+import veil.hdp.hive.jdbc.utils.Constants;
+
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosPrincipal;
+import javax.security.auth.kerberos.KerberosTicket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ServiceTicketCacheTest extends BaseTest {
+
+    private static final String SERVER = "hive/hs2.example.com@EXAMPLE.COM";
+
+    private final AtomicInteger kdcRequests = new AtomicInteger();
+
+    private ExecutorService executor;
+    private String useSubjectCredsOnly;
+
+    @BeforeEach
+    public void setUp() {
+        executor = Executors.newCachedThreadPool();
+        useSubjectCredsOnly = System.getProperty(Constants.JAVAX_SECURITY_AUTH_USE_SUBJECT_CREDS_ONLY);
+
+        System.setProperty(Constants.JAVAX_SECURITY_AUTH_USE_SUBJECT_CREDS_ONLY, Boolean.TRUE.toString());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+
+        if (useSubjectCredsOnly == null) {
+            System.clearProperty(Constants.JAVAX_SECURITY_AUTH_USE_SUBJECT_CREDS_ONLY);
+        } else {
+            System.setProperty(Constants.JAVAX_SECURITY_AUTH_USE_SUBJECT_CREDS_ONLY, useSubjectCredsOnly);
+        }
+    }
+
+    private static Subject subject() {
+        return new Subject(false, Collections.emptySet(), Collections.emptySet(), Collections.emptySet());
+    }
+
+    // stands in for jgss: without a ticket in the subject it goes to the kdc and stores the one it gets back
+    private ServiceTicketCache.TokenBuilder token(Subject subject, CountDownLatch kdc) {
+        return () -> {
+            if (subject.getPrivateCredentials(KerberosTicket.class).isEmpty()) {
+                kdcRequests.incrementAndGet();
+
+                try {
+                    kdc.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                long now = System.currentTimeMillis();
+
+                subject.getPrivateCredentials().add(new KerberosTicket(new byte[1],
+                        new KerberosPrincipal("user@EXAMPLE.COM"),
+                        new KerberosPrincipal(SERVER),
+                        new byte[16], 17, new boolean[32],
+                        new Date(now), new Date(now), new Date(now + 60000), null, null));
+            }
+
+            return new byte[1];
+        };
+    }
+
+    @Test
+    public void testConcurrentRequestsShareTicket() throws Exception {
+        long ticketRequests = ServiceTicketCache.getTicketRequests();
+
+        Subject subject = subject();
+        CountDownLatch kdc = new CountDownLatch(1);
+
+        List<Future<byte[]>> tokens = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            tokens.add(executor.submit(() -> ServiceTicketCache.getToken(subject, SERVER, token(subject, kdc))));
+        }
+
+        Thread.sleep(200);
+
+        kdc.countDown();
+
+        for (Future<byte[]> token : tokens) {
+            assertNotNull(token.get(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, kdcRequests.get());
+        assertEquals(ticketRequests + 1, ServiceTicketCache.getTicketRequests());
+    }
+
+    @Test
+    public void testSubjectsDoNotWaitForEachOther() throws Exception {
+        Subject first = subject();
+        Subject second = subject();
+
+        CountDownLatch slow = new CountDownLatch(1);
+        CountDownLatch fast = new CountDownLatch(0);
+
+        try {
+            Future<byte[]> blocked = executor.submit(() -> ServiceTicketCache.getToken(first, SERVER, token(first, slow)));
+
+            Thread.sleep(200);
+
+            // same service principal, different subject; must not queue behind the first subject's kdc request
+            Future<byte[]> other = executor.submit(() -> ServiceTicketCache.getToken(second, SERVER, token(second, fast)));
+
+            assertNotNull(other.get(1, TimeUnit.SECONDS));
+            assertFalse(blocked.isDone());
+
+        } finally {
+            slow.countDown();
+        }
+
+        assertEquals(2, kdcRequests.get());
+    }
+
+    @Test
+    public void testNoWaitWithoutSubjectCredentials() throws Exception {
+        System.setProperty(Constants.JAVAX_SECURITY_AUTH_USE_SUBJECT_CREDS_ONLY, Boolean.FALSE.toString());
+
+        long ticketRequests = ServiceTicketCache.getTicketRequests();
+
+        Subject subject = subject();
+        CountDownLatch slow = new CountDownLatch(1);
+
+        try {
+            executor.submit(() -> ServiceTicketCache.getToken(subject, SERVER, token(subject, slow)));
+
+            Thread.sleep(200);
+
+            // jgss wouldn't keep the ticket in the subject, so there is nothing to wait for
+            Future<byte[]> other = executor.submit(() -> ServiceTicketCache.getToken(subject, SERVER, () -> new byte[1]));
+
+            assertNotNull(other.get(1, TimeUnit.SECONDS));
+
+        } finally {
+            slow.countDown();
+        }
+
+        assertEquals(ticketRequests, ServiceTicketCache.getTicketRequests());
+    }
+}
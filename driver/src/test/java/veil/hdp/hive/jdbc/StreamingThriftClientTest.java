@@ -0,0 +1,238 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc;
+
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TBinaryProtocol;
+import org.apache.thrift.protocol.TMessage;
+import org.apache.thrift.protocol.TMessageType;
+import org.apache.thrift.protocol.TProtocol;
+import org.apache.thrift.transport.TMemoryBuffer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import veil.hdp.hive.jdbc.bindings.*;
+import veil.hdp.hive.jdbc.data.Column;
+import veil.hdp.hive.jdbc.data.ColumnBasedSet;
+import veil.hdp.hive.jdbc.data.Row;
+import veil.hdp.hive.jdbc.metadata.ColumnDescriptor;
+import veil.hdp.hive.jdbc.metadata.ColumnTypeDescriptor;
+import veil.hdp.hive.jdbc.metadata.HiveType;
+import veil.hdp.hive.jdbc.metadata.Schema;
+import veil.hdp.hive.jdbc.test.BaseTest;
+import veil.hdp.hive.jdbc.thrift.HiveThriftException;
+import veil.hdp.hive.jdbc.thrift.StreamingThriftClient;
+import veil.hdp.hive.jdbc.utils.ThriftUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StreamingThriftClientTest extends BaseTest {
+
+    private static final HiveType[] TYPES = {HiveType.BOOLEAN, HiveType.TINY_INT, HiveType.SMALL_INT, HiveType.INTEGER, HiveType.BIG_INT, HiveType.DOUBLE, HiveType.STRING, HiveType.BINARY};
+
+    private Schema schema;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+
+        List<ColumnDescriptor> descriptors = new ArrayList<>(TYPES.length);
+
+        for (int i = 0; i < TYPES.length; i++) {
+            descriptors.add(ColumnDescriptor.builder().name("col_" + i).typeDescriptor(ColumnTypeDescriptor.builder().hiveType(TYPES[i]).build()).position(i + 1).build());
+        }
+
+        schema = Schema.builder().descriptors(descriptors).build();
+    }
+
+    @Test
+    public void testFetchColumnBasedSet() throws Exception {
+
+        TRowSet rowSet = buildRowSet();
+
+        TFetchResultsResp resp = new TFetchResultsResp(new TStatus(TStatusCode.SUCCESS_STATUS));
+        resp.setHasMoreRows(false);
+        resp.setResults(rowSet);
+
+        ColumnBasedSet streamed = fetch(resp);
+        ColumnBasedSet built = ColumnBasedSet.builder().rowSet(rowSet).schema(schema).build();
+
+        assertEquals(built.getRowCount(), streamed.getRowCount());
+        assertEquals(built.getColumnCount(), streamed.getColumnCount());
+
+        for (int row = 0; row < built.getRowCount(); row++) {
+            Row expected = Row.builder().columnBasedSet(built).row(row).build();
+            Row actual = Row.builder().columnBasedSet(streamed).row(row).build();
+
+            for (int position = 1; position <= TYPES.length; position++) {
+                Column expectedColumn = expected.getColumn(position);
+                Column actualColumn = actual.getColumn(position);
+
+                assertEquals(expectedColumn.getValue(), actualColumn.getValue(), "row " + row + ", column " + position);
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyRowSet() throws Exception {
+
+        TFetchResultsResp resp = new TFetchResultsResp(new TStatus(TStatusCode.SUCCESS_STATUS));
+        resp.setResults(new TRowSet(0, new ArrayList<>(0)));
+
+        assertNull(fetch(resp));
+    }
+
+    @Test
+    public void testErrorStatus() {
+
+        TStatus status = new TStatus(TStatusCode.ERROR_STATUS);
+        status.setErrorMessage("expected");
+
+        assertThrows(HiveThriftException.class, () -> fetch(new TFetchResultsResp(status)));
+    }
+
+    @Test
+    public void testPipelinedFetch() throws Exception {
+
+        TGetResultSetMetadataResp metadataResp = new TGetResultSetMetadataResp(new TStatus(TStatusCode.SUCCESS_STATUS));
+        metadataResp.setSchema(buildTableSchema());
+
+        TRowSet rowSet = new TRowSet(0, new ArrayList<>(0));
+        rowSet.addToColumns(TColumn.i32Val(new TI32Column(Arrays.asList(1, 2), ByteBuffer.allocate(0))));
+        rowSet.addToColumns(TColumn.stringVal(new TStringColumn(Arrays.asList("a", "b"), ByteBuffer.allocate(0))));
+
+        TFetchResultsResp resp = new TFetchResultsResp(new TStatus(TStatusCode.SUCCESS_STATUS));
+        resp.setResults(rowSet);
+
+        TMemoryBuffer in = new TMemoryBuffer(1024);
+        writeReplies(in, metadataResp, resp);
+
+        Schema[] loaded = new Schema[1];
+
+        ColumnBasedSet columnBasedSet = newClient(in).fetchColumnBasedSet(new TGetResultSetMetadataReq(operationHandle()), fetchRequest(), metadata -> {
+            loaded[0] = Schema.builder().tableSchema(metadata.getSchema()).build();
+            return loaded[0];
+        });
+
+        assertEquals(2, loaded[0].getColumnCount());
+        assertEquals("id", loaded[0].getColumn(1).getName());
+        assertEquals(2, columnBasedSet.getRowCount());
+        assertEquals("b", Row.builder().columnBasedSet(columnBasedSet).row(1).build().getColumn(2).getValue());
+        assertEquals(0, in.read(new byte[1], 0, 1));
+    }
+
+    @Test
+    public void testPipelinedFetchSkipsPageOnMetadataError() throws Exception {
+
+        TStatus status = new TStatus(TStatusCode.ERROR_STATUS);
+        status.setErrorMessage("expected");
+
+        TFetchResultsResp resp = new TFetchResultsResp(new TStatus(TStatusCode.SUCCESS_STATUS));
+        resp.setResults(buildRowSet());
+
+        TMemoryBuffer in = new TMemoryBuffer(1024);
+        writeReplies(in, new TGetResultSetMetadataResp(status), resp);
+
+        StreamingThriftClient client = newClient(in);
+
+        assertThrows(HiveThriftException.class, () -> client.fetchColumnBasedSet(new TGetResultSetMetadataReq(operationHandle()), fetchRequest(), metadata -> {
+            ThriftUtils.checkStatus(metadata.getStatus());
+            return schema;
+        }));
+
+        // the page reply was read past so the transport is still usable
+        assertEquals(0, in.read(new byte[1], 0, 1));
+    }
+
+    private static void writeReplies(TMemoryBuffer in, TGetResultSetMetadataResp metadataResp, TFetchResultsResp resp) throws TException {
+
+        TProtocol replyProtocol = new TBinaryProtocol(in);
+
+        TCLIService.GetResultSetMetadata_result metadataResult = new TCLIService.GetResultSetMetadata_result();
+        metadataResult.setSuccess(metadataResp);
+
+        replyProtocol.writeMessageBegin(new TMessage("GetResultSetMetadata", TMessageType.REPLY, 1));
+        metadataResult.write(replyProtocol);
+        replyProtocol.writeMessageEnd();
+
+        TCLIService.FetchResults_result result = new TCLIService.FetchResults_result();
+        result.setSuccess(resp);
+
+        replyProtocol.writeMessageBegin(new TMessage("FetchResults", TMessageType.REPLY, 2));
+        result.write(replyProtocol);
+        replyProtocol.writeMessageEnd();
+    }
+
+    private static StreamingThriftClient newClient(TMemoryBuffer in) {
+        return new StreamingThriftClient(new TBinaryProtocol(in), new TBinaryProtocol(new TMemoryBuffer(1024)));
+    }
+
+    private static TOperationHandle operationHandle() {
+        return new TOperationHandle(new THandleIdentifier(ByteBuffer.allocate(16), ByteBuffer.allocate(16)), TOperationType.EXECUTE_STATEMENT, true);
+    }
+
+    private static TFetchResultsReq fetchRequest() {
+        return new TFetchResultsReq(operationHandle(), TFetchOrientation.FETCH_NEXT, 100);
+    }
+
+    private static TTableSchema buildTableSchema() {
+
+        TTableSchema tableSchema = new TTableSchema(new ArrayList<>(2));
+        tableSchema.addToColumns(new TColumnDesc("id", new TTypeDesc(Arrays.asList(TTypeEntry.primitiveEntry(new TPrimitiveTypeEntry(TTypeId.INT_TYPE)))), 1));
+        tableSchema.addToColumns(new TColumnDesc("name", new TTypeDesc(Arrays.asList(TTypeEntry.primitiveEntry(new TPrimitiveTypeEntry(TTypeId.STRING_TYPE)))), 2));
+
+        return tableSchema;
+    }
+
+    private ColumnBasedSet fetch(TFetchResultsResp resp) throws TException {
+
+        TMemoryBuffer in = new TMemoryBuffer(1024);
+        TProtocol replyProtocol = new TBinaryProtocol(in);
+
+        TCLIService.FetchResults_result result = new TCLIService.FetchResults_result();
+        result.setSuccess(resp);
+
+        // the client increments its sequence id before sending, so the first reply must carry 1
+        replyProtocol.writeMessageBegin(new TMessage("FetchResults", TMessageType.REPLY, 1));
+        result.write(replyProtocol);
+        replyProtocol.writeMessageEnd();
+
+        return newClient(in).fetchColumnBasedSet(fetchRequest(), schema);
+    }
+
+    private static TRowSet buildRowSet() {
+
+        // second row is null in every column
+        ByteBuffer nulls = ByteBuffer.wrap(new byte[]{(byte) 0x02});
+
+        TRowSet rowSet = new TRowSet(0, new ArrayList<>(0));
+        rowSet.addToColumns(TColumn.boolVal(new TBoolColumn(Arrays.asList(true, false, false), nulls.duplicate())));
+        rowSet.addToColumns(TColumn.byteVal(new TByteColumn(Arrays.asList((byte) 1, (byte) 0, Byte.MIN_VALUE), nulls.duplicate())));
+        rowSet.addToColumns(TColumn.i16Val(new TI16Column(Arrays.asList((short) 1, (short) 0, Short.MAX_VALUE), nulls.duplicate())));
+        rowSet.addToColumns(TColumn.i32Val(new TI32Column(Arrays.asList(1, 0, Integer.MIN_VALUE), nulls.duplicate())));
+        rowSet.addToColumns(TColumn.i64Val(new TI64Column(Arrays.asList(1L, 0L, Long.MAX_VALUE), nulls.duplicate())));
+        rowSet.addToColumns(TColumn.doubleVal(new TDoubleColumn(Arrays.asList(1.5d, 0d, -2.5d), nulls.duplicate())));
+        rowSet.addToColumns(TColumn.stringVal(new TStringColumn(Arrays.asList("a", "", "c"), nulls.duplicate())));
+        rowSet.addToColumns(TColumn.binaryVal(new TBinaryColumn(Arrays.asList(ByteBuffer.wrap(new byte[]{1}), ByteBuffer.allocate(0), ByteBuffer.wrap(new byte[]{3})), nulls.duplicate())));
+
+        return rowSet;
+    }
+
+}
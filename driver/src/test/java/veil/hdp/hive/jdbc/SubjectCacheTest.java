@@ -0,0 +1,158 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import veil.hdp.hive.jdbc.security.SubjectCache;
+import veil.hdp.hive.jdbc.test.BaseTest;
+
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosPrincipal;
+import javax.security.auth.kerberos.KerberosTicket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SubjectCacheTest extends BaseTest {
+
+    private final AtomicInteger logins = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        SubjectCache.clear();
+    }
+
+    private Subject login(long lifetime) {
+        logins.incrementAndGet();
+
+        long now = System.currentTimeMillis();
+
+        KerberosTicket tgt = new KerberosTicket(new byte[1],
+                new KerberosPrincipal("user@EXAMPLE.COM"),
+                new KerberosPrincipal("krbtgt/EXAMPLE.COM@EXAMPLE.COM"),
+                new byte[16], 17, new boolean[32],
+                new Date(now), new Date(now), new Date(now + lifetime), null, null);
+
+        return new Subject(false, Collections.emptySet(), Collections.emptySet(), Collections.singleton(tgt));
+    }
+
+    private static List<String> key(String user) {
+        return Arrays.asList("KEYTAB", user, "/tmp/test.keytab");
+    }
+
+    @Test
+    public void testSubjectIsShared() throws Exception {
+        long hits = SubjectCache.getHits();
+
+        Subject first = SubjectCache.get(key("first"), () -> login(60000));
+
+        assertSame(first, SubjectCache.get(key("first"), () -> login(60000)));
+        assertNotSame(first, SubjectCache.get(key("second"), () -> login(60000)));
+
+        assertEquals(2, logins.get());
+        assertEquals(hits + 1, SubjectCache.getHits());
+    }
+
+    @Test
+    public void testRenewedBeforeExpiry() throws Exception {
+        long renewals = SubjectCache.getRenewals();
+
+        Subject first = SubjectCache.get(key("renewed"), () -> login(500));
+
+        // keep the subject in use past the point where 80% of its lifetime has gone
+        long deadline = System.currentTimeMillis() + 5000;
+
+        Subject current = first;
+
+        while (current == first && System.currentTimeMillis() < deadline) {
+            Thread.sleep(25);
+            current = SubjectCache.get(key("renewed"), () -> login(500));
+        }
+
+        assertNotSame(first, current);
+        assertTrue(SubjectCache.getRenewals() > renewals);
+    }
+
+    @Test
+    public void testRenewalDoesNotBlockCallers() throws Exception {
+        CountDownLatch renewing = new CountDownLatch(1);
+        CountDownLatch kdc = new CountDownLatch(1);
+
+        SubjectCache.Login slowRenewal = () -> {
+            if (logins.get() == 0) {
+                return login(1000);
+            }
+
+            renewing.countDown();
+
+            try {
+                kdc.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            return login(60000);
+        };
+
+        Subject first = SubjectCache.get(key("slow"), slowRenewal);
+
+        // keep it in use until the renewal is waiting on the KDC
+        long deadline = System.currentTimeMillis() + 5000;
+
+        while (renewing.getCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            SubjectCache.get(key("slow"), slowRenewal);
+        }
+
+        assertEquals(0, renewing.getCount());
+
+        long start = System.currentTimeMillis();
+
+        assertSame(first, SubjectCache.get(key("slow"), slowRenewal));
+        assertTrue(System.currentTimeMillis() - start < 200, "waited on the renewal");
+
+        kdc.countDown();
+
+        Subject current = first;
+
+        while (current == first && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            current = SubjectCache.get(key("slow"), slowRenewal);
+        }
+
+        assertNotSame(first, current);
+    }
+
+    @Test
+    public void testUnusedSubjectIsDropped() throws Exception {
+        long renewals = SubjectCache.getRenewals();
+
+        Subject first = SubjectCache.get(key("unused"), () -> login(200));
+
+        Thread.sleep(400);
+
+        assertNotSame(first, SubjectCache.get(key("unused"), () -> login(60000)));
+        assertEquals(renewals, SubjectCache.getRenewals());
+        assertEquals(2, logins.get());
+    }
+}
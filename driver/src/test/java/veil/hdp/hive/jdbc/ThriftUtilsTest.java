@@ -0,0 +1,94 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc;
+
+import org.apache.thrift.transport.TTransport;
+import org.junit.jupiter.api.Test;
+import veil.hdp.hive.jdbc.test.BaseTest;
+import veil.hdp.hive.jdbc.utils.ThriftUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ThriftUtilsTest extends BaseTest {
+
+    @Test
+    public void testOpenTimeoutClosesTransport() throws Exception {
+
+        HangingTransport transport = new HangingTransport();
+
+        assertThrows(HiveException.class, () -> ThriftUtils.openTransport(transport, 100));
+
+        assertTrue(transport.closeCalled);
+        assertTrue(transport.released.await(5, TimeUnit.SECONDS));
+        assertFalse(transport.isOpen());
+    }
+
+    @Test
+    public void testOpen() {
+
+        HangingTransport transport = new HangingTransport();
+        transport.released.countDown();
+
+        ThriftUtils.openTransport(transport, 1000);
+
+        assertTrue(transport.isOpen());
+    }
+
+    /**
+     * Blocks in open() until closed, like a connect or SASL handshake that gets no answer.
+     */
+    private static class HangingTransport extends TTransport {
+
+        private final CountDownLatch released = new CountDownLatch(1);
+        private volatile boolean open;
+        private volatile boolean closeCalled;
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void open() {
+            try {
+                released.await();
+                open = !closeCalled;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void close() {
+            closeCalled = true;
+            open = false;
+            released.countDown();
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) {
+            return 0;
+        }
+
+        @Override
+        public void write(byte[] buf, int off, int len) {
+        }
+    }
+}
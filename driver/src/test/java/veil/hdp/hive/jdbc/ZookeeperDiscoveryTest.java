@@ -0,0 +1,323 @@
+/*
+ *    Copyright 2018 Timothy J Veil
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *        http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+
+package veil.hdp.hive.jdbc;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.CuratorFrameworkFactory;
+import org.apache.curator.retry.RetryOneTime;
+import org.apache.curator.test.TestingServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import veil.hdp.hive.jdbc.test.BaseTest;
+import veil.hdp.hive.jdbc.test.server.MockCliService;
+import veil.hdp.hive.jdbc.test.server.MockHiveServer;
+import veil.hdp.hive.jdbc.thrift.HiveThriftException;
+import veil.hdp.hive.jdbc.utils.ConnectFailover;
+import veil.hdp.hive.jdbc.utils.DriverUtils;
+import veil.hdp.hive.jdbc.utils.ServerSelector;
+import veil.hdp.hive.jdbc.utils.ZookeeperDiscovery;
+
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosPrincipal;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ZookeeperDiscoveryTest extends BaseTest {
+
+    private static final String NAMESPACE = "/hiveserver2";
+
+    private TestingServer server;
+    private CuratorFramework client;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        ZookeeperDiscovery.clear();
+
+        server = new TestingServer();
+
+        client = CuratorFrameworkFactory.newClient(server.getConnectString(), new RetryOneTime(100));
+        client.start();
+
+        register("serverUri=first:10000;version=3.1.0;sequence=0000000001", "first", 10000);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        ZookeeperDiscovery.clear();
+
+        client.close();
+        server.close();
+    }
+
+    private void register(String node, String host, int port) throws Exception {
+        String data = "hive.server2.thrift.bind.host=" + host + ";hive.server2.thrift.port=" + port + ";hive.server2.transport.mode=binary";
+
+        client.create().creatingParentsIfNeeded().forPath(NAMESPACE + '/' + node, data.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<String> servers() {
+        return ZookeeperDiscovery.getServers(server.getConnectString(), new Properties());
+    }
+
+    private List<String> awaitServers(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+
+        List<String> servers = servers();
+
+        while (servers.size() != count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            servers = servers();
+        }
+
+        return servers;
+    }
+
+    @Test
+    public void testConnectReadsMemory() {
+        Properties properties = DriverUtils.buildProperties("jdbc:hive2://" + server.getConnectString() + "/default?zkEnabled=true", new Properties());
+
+        assertEquals("first", HiveDriverProperty.HOST_NAME.get(properties));
+        assertEquals(10000, HiveDriverProperty.PORT_NUMBER.getInt(properties));
+
+        long loads = ZookeeperDiscovery.getLoads();
+        long hits = ZookeeperDiscovery.getHits();
+
+        for (int i = 0; i < 10; i++) {
+            DriverUtils.buildProperties("jdbc:hive2://" + server.getConnectString() + "/default?zkEnabled=true", new Properties());
+        }
+
+        assertEquals(loads, ZookeeperDiscovery.getLoads());
+        assertEquals(hits + 10, ZookeeperDiscovery.getHits());
+        assertEquals(1, ZookeeperDiscovery.getClientCount());
+    }
+
+    @Test
+    public void testWatchTracksServers() throws Exception {
+        assertEquals(1, servers().size());
+
+        register("serverUri=second:10001;version=3.1.0;sequence=0000000002", "second", 10001);
+
+        List<String> servers = awaitServers(2);
+
+        assertEquals(2, servers.size());
+        assertTrue(servers.get(0).contains("first") || servers.get(1).contains("first"));
+        assertTrue(ZookeeperDiscovery.getRefreshes() > 0);
+
+        client.delete().forPath(NAMESPACE + "/serverUri=first:10000;version=3.1.0;sequence=0000000001");
+
+        servers = awaitServers(1);
+
+        assertEquals(1, servers.size());
+        assertTrue(servers.get(0).contains("second"));
+    }
+
+    @Test
+    public void testRefreshedAfterReconnect() throws Exception {
+        assertEquals(1, servers().size());
+
+        long refreshes = ZookeeperDiscovery.getRefreshes();
+
+        server.stop();
+
+        // within zkMaxStaleness the last known list is still served
+        assertEquals(1, servers().size());
+
+        server.restart();
+
+        long deadline = System.currentTimeMillis() + 10000;
+
+        while (ZookeeperDiscovery.getRefreshes() == refreshes && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+
+        assertTrue(ZookeeperDiscovery.getRefreshes() > refreshes);
+        assertEquals(1, servers().size());
+    }
+
+    private static int deadPort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private String url() {
+        return "jdbc:hive2://" + server.getConnectString() + "/default?zkEnabled=true";
+    }
+
+    @Test
+    public void testFailoverToLiveServer() throws Exception {
+        ServerSelector.clear();
+
+        client.delete().forPath(NAMESPACE + "/serverUri=first:10000;version=3.1.0;sequence=0000000001");
+
+        int deadPort = deadPort();
+
+        try (MockHiveServer hive = MockHiveServer.builder().build()) {
+
+            register("serverUri=live;sequence=0000000002", hive.getHost(), hive.getPort());
+            register("serverUri=dead;sequence=0000000003", hive.getHost(), deadPort);
+
+            awaitServers(2);
+
+            long failovers = ConnectFailover.getFailovers();
+
+            List<Connection> connections = new ArrayList<>();
+
+            try {
+                // every connect lands on the live server, whether or not the dead one was picked first
+                for (int i = 0; i < 3; i++) {
+                    connections.add(new HiveDriver().connect(url(), new Properties()));
+                }
+
+                assertEquals(3, ServerSelector.getOpenSessions(hive.getHost(), hive.getPort()));
+                assertTrue(ConnectFailover.getFailovers() > failovers);
+                assertTrue(ServerSelector.isBlacklisted(hive.getHost(), deadPort));
+            } finally {
+                for (Connection connection : connections) {
+                    connection.close();
+                }
+            }
+
+            assertEquals(0, ServerSelector.getOpenSessions(hive.getHost(), hive.getPort()));
+
+            // with failover off, the dead server fails the connect once it is picked
+            ServerSelector.clear();
+
+            Properties live = new Properties();
+            HiveDriverProperty.ZOOKEEPER_DISCOVERY_ENABLED.set(live, true);
+            HiveDriverProperty.HOST_NAME.set(live, hive.getHost());
+            HiveDriverProperty.PORT_NUMBER.set(live, hive.getPort());
+
+            ServerSelector.opened(live, 1000);
+
+            Properties properties = new Properties();
+            properties.setProperty(HiveDriverProperty.ZOOKEEPER_DISCOVERY_FAILOVER_ATTEMPTS.getKey(), "1");
+
+            assertThrows(HiveException.class, () -> new HiveDriver().connect(url(), properties));
+
+            ServerSelector.closed(live);
+        }
+    }
+
+    @Test
+    public void testRaceSlowServer() throws Exception {
+        client.delete().forPath(NAMESPACE + "/serverUri=first:10000;version=3.1.0;sequence=0000000001");
+
+        try (MockHiveServer slow = MockHiveServer.builder().service(MockCliService.builder().sessionLatency(3000).build()).build();
+             MockHiveServer fast = MockHiveServer.builder().build()) {
+
+            register("serverUri=slow;sequence=0000000002", slow.getHost(), slow.getPort());
+            register("serverUri=fast;sequence=0000000003", fast.getHost(), fast.getPort());
+
+            awaitServers(2);
+
+            Properties properties = new Properties();
+            properties.setProperty(HiveDriverProperty.ZOOKEEPER_DISCOVERY_SELECTION.getKey(), ServerSelection.RANDOM.name());
+            properties.setProperty(HiveDriverProperty.ZOOKEEPER_DISCOVERY_CONNECT_RACE_DELAY.getKey(), "100");
+
+            for (int i = 0; i < 4; i++) {
+                long start = System.currentTimeMillis();
+
+                try (Connection connection = new HiveDriver().connect(url(), properties)) {
+                    assertTrue(System.currentTimeMillis() - start < 2000, "connect waited on the slow server");
+                }
+            }
+
+            assertEquals(4, fast.getService().getCallCount("OpenSession"));
+        }
+    }
+
+    @Test
+    public void testRejectedSessionFailsFast() throws Exception {
+        ServerSelector.clear();
+
+        client.delete().forPath(NAMESPACE + "/serverUri=first:10000;version=3.1.0;sequence=0000000001");
+
+        MockCliService firstService = MockCliService.builder().sessionFailureRate(1).build();
+        MockCliService secondService = MockCliService.builder().sessionFailureRate(1).build();
+
+        try (MockHiveServer first = MockHiveServer.builder().service(firstService).build();
+             MockHiveServer second = MockHiveServer.builder().service(secondService).build()) {
+
+            register("serverUri=first;sequence=0000000002", first.getHost(), first.getPort());
+            register("serverUri=second;sequence=0000000003", second.getHost(), second.getPort());
+
+            awaitServers(2);
+
+            Properties race = new Properties();
+            race.setProperty(HiveDriverProperty.ZOOKEEPER_DISCOVERY_CONNECT_RACE_DELAY.getKey(), "5000");
+
+            long failovers = ConnectFailover.getFailovers();
+
+            // the server answered; another one would reject the session the same way
+            for (Properties properties : Arrays.asList(new Properties(), race)) {
+                long calls = firstService.getCallCount("OpenSession") + secondService.getCallCount("OpenSession");
+
+                assertThrows(HiveThriftException.class, () -> new HiveDriver().connect(url(), properties));
+                assertEquals(calls + 1, firstService.getCallCount("OpenSession") + secondService.getCallCount("OpenSession"));
+            }
+
+            assertEquals(failovers, ConnectFailover.getFailovers());
+            assertFalse(ServerSelector.isBlacklisted(first.getHost(), first.getPort()));
+            assertFalse(ServerSelector.isBlacklisted(second.getHost(), second.getPort()));
+        }
+    }
+
+    @Test
+    public void testRaceKeepsCallerSubject() {
+        Properties properties = new Properties();
+        HiveDriverProperty.HOST_NAME.set(properties, "first");
+        HiveDriverProperty.PORT_NUMBER.set(properties, 10000);
+        HiveDriverProperty.ZOOKEEPER_DISCOVERY_CONNECT_STRING.set(properties, server.getConnectString());
+        properties.setProperty(HiveDriverProperty.ZOOKEEPER_DISCOVERY_CONNECT_RACE_DELAY.getKey(), "100");
+
+        Subject subject = new Subject(false, Collections.singleton(new KerberosPrincipal("alice@EXAMPLE.COM")), Collections.emptySet(), Collections.emptySet());
+
+        // a PREAUTH connect reads the subject from the access control context on whatever thread opens the session
+        Subject seen = Subject.doAs(subject, (PrivilegedAction<Subject>) () -> ConnectFailover.connect(properties, attempt -> {
+            Subject current = Subject.getSubject(AccessController.getContext());
+
+            return new AutoCloseableSubject(current);
+        }).subject);
+
+        assertSame(subject, seen);
+    }
+
+    private static class AutoCloseableSubject implements AutoCloseable {
+
+        private final Subject subject;
+
+        AutoCloseableSubject(Subject subject) {
+            this.subject = subject;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}